@@ -2,8 +2,11 @@ package main
 
 import (
 	"bytes"
+	"crypto/sha256"
 	"database/sql"
+	"encoding/hex"
 	"encoding/json"
+	"errors"
 	"fmt"
 	"io"
 	"io/ioutil"
@@ -14,10 +17,13 @@ import (
 	"os/exec"
 	"path/filepath"
 	"regexp"
+	"strconv"
 	"strings"
 	"sync"
 	"syscall"
 	"time"
+	"unicode/utf16"
+	"unicode/utf8"
 
 	_ "modernc.org/sqlite"
 )
@@ -38,15 +44,66 @@ type Note struct {
 }
 
 type AppConfig struct {
-	RepoURL         string `json:"repoUrl"`
-	Token           string `json:"token"`
-	Username        string `json:"username"`
-	Email           string `json:"email"`
-	Theme           string `json:"theme"`
-	EditorFontSize  int    `json:"editorFontSize"`
-	ShowLineNumbers bool   `json:"showLineNumbers"`
+	RepoURL               string `json:"repoUrl"`
+	Token                 string `json:"token"`
+	Username              string `json:"username"`
+	Email                 string `json:"email"`
+	Theme                 string `json:"theme"`
+	EditorFontSize        int    `json:"editorFontSize"`
+	ShowLineNumbers       bool   `json:"showLineNumbers"`
+	LargeNotePreviewLines int    `json:"largeNotePreviewLines,omitempty"`
+	ShowPreviewTimings    bool   `json:"showPreviewTimings,omitempty"`
+	CodeHighlighting      bool   `json:"codeHighlighting,omitempty"`
+	UndoHistorySteps      int    `json:"undoHistorySteps,omitempty"`
+	UndoMemoryKb          int    `json:"undoMemoryKb,omitempty"`
+	MaxLiveTabs           int    `json:"maxLiveTabs,omitempty"`
+	TabHibernateMinutes   int    `json:"tabHibernateMinutes,omitempty"`
+	LargeNoteThresholdKb  int    `json:"largeNoteThresholdKb,omitempty"`
 }
 
+// SaveResponse identifies the content on disk after a save or patch.
+type SaveResponse struct {
+	Hash    string `json:"hash"`
+	Created bool   `json:"created"`
+}
+
+// TextPatch removes Delete UTF-16 units at Offset and inserts Insert there.
+// Offsets are UTF-16 based because the editor counts Java chars.
+type TextPatch struct {
+	Offset int    `json:"offset"`
+	Delete int    `json:"delete"`
+	Insert string `json:"insert"`
+}
+
+// SaveBatchEntry is a patch when Patches is set, otherwise a full save of Content.
+type SaveBatchEntry struct {
+	Filename string      `json:"filename"`
+	BaseHash string      `json:"baseHash,omitempty"`
+	Patches  []TextPatch `json:"patches,omitempty"`
+	Content  string      `json:"content,omitempty"`
+}
+
+type SaveBatchRequest struct {
+	Notes []SaveBatchEntry `json:"notes"`
+}
+
+type SaveBatchResult struct {
+	Filename string `json:"filename"`
+	Hash     string `json:"hash,omitempty"`
+	Created  bool   `json:"created"`
+	Conflict bool   `json:"conflict,omitempty"`
+	Error    string `json:"error,omitempty"`
+}
+
+type SaveBatchResponse struct {
+	Results []SaveBatchResult `json:"results"`
+}
+
+var (
+	errBaseMismatch = errors.New("base version does not match")
+	errInvalidPatch = errors.New("invalid patch")
+)
+
 type SyncRequest struct {
 	Message string `json:"message"`
 }
@@ -62,6 +119,44 @@ type MoveRequest struct {
 	NewPath string `json:"newPath"`
 }
 
+// NoteEvent is one line of the /api/events stream. Type is created, modified, deleted
+// (of a note, or of a folder and everything in it) or moved; hello opens every stream with
+// the current Seq, reset tells the client that events since its position are lost, ping
+// keeps the connection alive.
+type NoteEvent struct {
+	Seq     int64  `json:"seq"`
+	Type    string `json:"type"`
+	Path    string `json:"path,omitempty"`
+	OldPath string `json:"oldPath,omitempty"`
+	Hash    string `json:"hash,omitempty"`   // Content after created or modified
+	Stream  string `json:"stream,omitempty"` // On hello; changes when the backend restarts
+}
+
+const (
+	eventLogSize       = 1024 // Events kept for clients that reconnect
+	eventPingInterval  = 20 * time.Second
+	notesWatchInterval = 3 * time.Second
+)
+
+var (
+	eventStreamID = strconv.FormatInt(time.Now().UnixNano(), 36)
+	events        = struct {
+		sync.Mutex
+		seq         int64
+		log         []NoteEvent // Oldest first, at least the last eventLogSize events
+		subscribers map[chan NoteEvent]bool
+	}{subscribers: make(map[chan NoteEvent]bool)}
+)
+
+// fileStamp tells whether a note file changed since the backend last read or wrote it.
+type fileStamp struct {
+	size    int64
+	modTime int64
+}
+
+// Stamps of the note files as of the last sync, save or scan. Guarded by mu.
+var fileStamps = make(map[string]fileStamp)
+
 type GithubDeviceCodeResponse struct {
 	DeviceCode      string `json:"device_code"`
 	UserCode        string `json:"user_code"`
@@ -122,11 +217,14 @@ func main() {
 	}
 
 	syncDatabase()
+	go watchNotes()
 
-	http.HandleFunc("/api/notes", loggingMiddleware(handleNotes))       // GET (list), POST (save)
-	http.HandleFunc("/api/notes/", loggingMiddleware(handleNoteDetail)) // GET (read), DELETE (delete)
+	http.HandleFunc("/api/notes", loggingMiddleware(handleNotes))       // GET (list, ?dir= for one folder level, ?meta=1 with metadata), POST (save)
+	http.HandleFunc("/api/notes/", loggingMiddleware(handleNoteDetail)) // GET (read, ?raw=1 for byte ranges), HEAD (size), DELETE (delete)
 	http.HandleFunc("/api/move", loggingMiddleware(handleMove))         // POST (move/rename)
+	http.HandleFunc("/api/save", loggingMiddleware(handleSaveBatch))    // POST (save several notes)
 	http.HandleFunc("/api/sync", loggingMiddleware(handleSync))         // POST (git sync)
+	http.HandleFunc("/api/events", loggingMiddleware(handleEvents))     // GET (NDJSON change stream, ?since= to resume)
 	http.HandleFunc("/api/config", loggingMiddleware(handleConfig))     // GET, POST (setup)
 	http.HandleFunc("/api/auth/github/start", loggingMiddleware(handleGithubAuthStart))
 	http.HandleFunc("/api/auth/github/poll", loggingMiddleware(handleGithubAuthPoll))
@@ -320,8 +418,17 @@ func handleMove(w http.ResponseWriter, r *http.Request) {
 		return
 	}
 
-	// Sync DB to reflect changes (renames/moves)
-	syncDatabase()
+	// Move the rows of the note, or of every note in the folder, instead of rescanning all notes
+	low, high := folderRange(req.OldPath)
+	_, err := db.Exec("UPDATE notes SET path = ? || substr(path, ?) WHERE path = ? OR (path >= ? AND path < ?)",
+		req.NewPath, utf8.RuneCountInString(req.OldPath)+1, req.OldPath, low, high)
+	if err != nil {
+		log.Println("Error moving notes in DB, rescanning:", err)
+		syncDatabase()
+	} else {
+		moveStamps(req.OldPath, req.NewPath)
+		publishEvent(NoteEvent{Type: "moved", Path: req.NewPath, OldPath: req.OldPath})
+	}
 
 	w.WriteHeader(http.StatusOK)
 }
@@ -331,6 +438,14 @@ func handleNotes(w http.ResponseWriter, r *http.Request) {
 	w.Header().Set("Access-Control-Allow-Origin", "*")
 
 	if r.Method == "GET" {
+		if dir, ok := r.URL.Query()["dir"]; ok {
+			listNoteDir(w, dir[0])
+			return
+		}
+		if r.URL.Query().Get("meta") == "1" {
+			listNoteMeta(w)
+			return
+		}
 		notes := []string{}
 		rows, err := db.Query("SELECT path FROM notes")
 		if err != nil {
@@ -356,38 +471,274 @@ func handleNotes(w http.ResponseWriter, r *http.Request) {
 		mu.Lock()
 		defer mu.Unlock()
 
-		// Güvenlik kontrolü: .. ile üst dizine çıkmayı engelle
-		if strings.Contains(note.Filename, "..") {
+		filename, ok := noteFilename(note.Filename)
+		if !ok {
 			http.Error(w, "Invalid filename", http.StatusBadRequest)
 			return
 		}
 
-		if !strings.HasSuffix(note.Filename, ".md") {
-			note.Filename += ".md"
+		response, err := saveNoteFile(filename, note.Content)
+		if err != nil {
+			http.Error(w, err.Error(), http.StatusInternalServerError)
+			return
 		}
 
-		path := filepath.Join(notesDir, note.Filename)
+		json.NewEncoder(w).Encode(response)
+	}
+}
 
-		// Alt klasör varsa oluştur
-		if err := os.MkdirAll(filepath.Dir(path), 0755); err != nil {
-			http.Error(w, err.Error(), http.StatusInternalServerError)
-			return
+// NoteMeta describes a note without its content.
+type NoteMeta struct {
+	Path    string `json:"path"`
+	Size    int64  `json:"size"`    // Bytes
+	ModTime int64  `json:"modTime"` // Unix milliseconds
+	Hash    string `json:"hash"`
+	Title   string `json:"title,omitempty"` // First heading
+	Tracked bool   `json:"tracked"`         // Committed to the notes repository
+}
+
+// listNoteMeta answers GET /api/notes?meta=1 from the table's metadata columns and one
+// git ls-files, without reading any note.
+func listNoteMeta(w http.ResponseWriter) {
+	tracked := make(map[string]bool)
+	if output, err := runGitCommandOutput("ls-files", "-z"); err == nil {
+		for _, path := range strings.Split(output, "\x00") {
+			tracked[path] = true
 		}
+	}
 
-		err := ioutil.WriteFile(path, []byte(note.Content), 0644)
-		if err != nil {
-			http.Error(w, err.Error(), http.StatusInternalServerError)
-			return
+	rows, err := db.Query("SELECT path, COALESCE(size, 0), COALESCE(mtime, 0), COALESCE(hash, ''), COALESCE(title, '') FROM notes")
+	if err != nil {
+		http.Error(w, err.Error(), http.StatusInternalServerError)
+		return
+	}
+	defer rows.Close()
+
+	notes := []NoteMeta{}
+	for rows.Next() {
+		var note NoteMeta
+		if err := rows.Scan(&note.Path, &note.Size, &note.ModTime, &note.Hash, &note.Title); err == nil {
+			note.Tracked = tracked[note.Path]
+			notes = append(notes, note)
 		}
+	}
+	json.NewEncoder(w).Encode(notes)
+}
 
-		// Update DB
-		_, err = db.Exec("INSERT OR REPLACE INTO notes(path, content) VALUES(?, ?)", note.Filename, note.Content)
-		if err != nil {
-			log.Println("Error updating DB after save:", err)
+// NoteDirEntry is a note or folder directly inside the folder of a directory listing.
+type NoteDirEntry struct {
+	Name  string `json:"name"`
+	IsDir bool   `json:"isDir"`
+}
+
+// folderRange returns the bounds of the paths inside a folder, for "path >= low AND path < high".
+// The comparison is byte-wise and case-sensitive, unlike LIKE, and can use the primary key; '0'
+// is the byte after '/'.
+func folderRange(folder string) (low, high string) {
+	return folder + "/", folder + "0"
+}
+
+// listNoteDir answers GET /api/notes?dir=... with one level of the tree, so a client can load
+// a large vault folder by folder. An empty dir lists the top level.
+func listNoteDir(w http.ResponseWriter, dir string) {
+	folder := strings.Trim(dir, "/")
+	prefix := ""
+	query, args := "SELECT path FROM notes", []interface{}{}
+	if folder != "" {
+		prefix = folder + "/"
+		low, high := folderRange(folder)
+		query, args = "SELECT path FROM notes WHERE path >= ? AND path < ?", []interface{}{low, high}
+	}
+	rows, err := db.Query(query, args...)
+	if err != nil {
+		http.Error(w, err.Error(), http.StatusInternalServerError)
+		return
+	}
+	defer rows.Close()
+
+	entries := []NoteDirEntry{}
+	index := map[string]int{}
+	for rows.Next() {
+		var path string
+		if err := rows.Scan(&path); err != nil {
+			continue
+		}
+		name, _, isDir := strings.Cut(strings.TrimPrefix(path, prefix), "/")
+		if name == "" {
+			continue
+		}
+		if i, ok := index[name]; ok {
+			entries[i].IsDir = entries[i].IsDir || isDir
+			continue
 		}
+		index[name] = len(entries)
+		entries = append(entries, NoteDirEntry{Name: name, IsDir: isDir})
+	}
+	json.NewEncoder(w).Encode(entries)
+}
 
-		w.WriteHeader(http.StatusOK)
+// noteFilename adds the .md extension and rejects paths that leave the notes folder.
+func noteFilename(name string) (string, bool) {
+	// Güvenlik kontrolü: .. ile üst dizine çıkmayı engelle
+	if strings.Contains(name, "..") {
+		return "", false
 	}
+	if !strings.HasSuffix(name, ".md") {
+		name += ".md"
+	}
+	return name, true
+}
+
+// saveNoteFile writes the whole note. The caller holds mu.
+func saveNoteFile(filename, content string) (SaveResponse, error) {
+	path := filepath.Join(notesDir, filename)
+	_, statErr := os.Stat(path)
+	created := os.IsNotExist(statErr)
+
+	if err := writeNote(path, filename, content); err != nil {
+		return SaveResponse{}, err
+	}
+	response := SaveResponse{Hash: contentHash(content), Created: created}
+	publishEvent(NoteEvent{Type: noteEventType(created), Path: filename, Hash: response.Hash})
+	return response, nil
+}
+
+// patchNoteFile applies patches to a note whose content still has baseHash. The caller holds mu.
+func patchNoteFile(filename, baseHash string, patches []TextPatch) (SaveResponse, error) {
+	path := filepath.Join(notesDir, filename)
+	current, err := ioutil.ReadFile(path)
+	if err != nil || contentHash(string(current)) != baseHash {
+		return SaveResponse{}, errBaseMismatch
+	}
+
+	content, err := applyPatches(string(current), patches)
+	if err != nil {
+		return SaveResponse{}, err
+	}
+
+	if err := writeNote(path, filename, content); err != nil {
+		return SaveResponse{}, err
+	}
+	response := SaveResponse{Hash: contentHash(content), Created: false}
+	publishEvent(NoteEvent{Type: "modified", Path: filename, Hash: response.Hash})
+	return response, nil
+}
+
+// writeNote writes a note file, creating its folder if needed, and updates the DB row.
+func writeNote(path, filename, content string) error {
+	// Alt klasör varsa oluştur
+	if err := os.MkdirAll(filepath.Dir(path), 0755); err != nil {
+		return err
+	}
+
+	if err := ioutil.WriteFile(path, []byte(content), 0644); err != nil {
+		return err
+	}
+	stamp := fileStamp{size: int64(len(content)), modTime: time.Now().UnixNano()}
+	if info, err := os.Stat(path); err == nil {
+		stamp = stampOf(info)
+		fileStamps[filename] = stamp
+	}
+
+	// Update DB
+	if _, err := db.Exec(upsertNoteSQL, noteRow(filename, content, contentHash(content), stamp)...); err != nil {
+		log.Println("Error updating DB after save:", err)
+	}
+	return nil
+}
+
+func contentHash(content string) string {
+	sum := sha256.Sum256([]byte(content))
+	return hex.EncodeToString(sum[:])
+}
+
+// handleSaveBatch saves every note of the request under one lock and reports each result.
+// One failing note does not stop the others; a stale patch base is reported as a conflict
+// so the client can resend that note in full.
+func handleSaveBatch(w http.ResponseWriter, r *http.Request) {
+	w.Header().Set("Content-Type", "application/json")
+	w.Header().Set("Access-Control-Allow-Origin", "*")
+
+	if r.Method != "POST" {
+		http.Error(w, "Method not allowed", http.StatusMethodNotAllowed)
+		return
+	}
+
+	var req SaveBatchRequest
+	if err := json.NewDecoder(r.Body).Decode(&req); err != nil {
+		http.Error(w, err.Error(), http.StatusBadRequest)
+		return
+	}
+
+	mu.Lock()
+	defer mu.Unlock()
+
+	results := make([]SaveBatchResult, 0, len(req.Notes))
+	for _, entry := range req.Notes {
+		result := SaveBatchResult{Filename: entry.Filename}
+		filename, ok := noteFilename(entry.Filename)
+		if !ok {
+			result.Error = "Invalid filename"
+			results = append(results, result)
+			continue
+		}
+
+		var response SaveResponse
+		var err error
+		if entry.Patches != nil {
+			response, err = patchNoteFile(filename, entry.BaseHash, entry.Patches)
+		} else {
+			response, err = saveNoteFile(filename, entry.Content)
+		}
+
+		if errors.Is(err, errBaseMismatch) {
+			result.Conflict = true
+		} else if err != nil {
+			result.Error = err.Error()
+		} else {
+			result.Hash = response.Hash
+			result.Created = response.Created
+		}
+		results = append(results, result)
+	}
+
+	json.NewEncoder(w).Encode(SaveBatchResponse{Results: results})
+}
+
+// applyPatches applies the patches in order on the UTF-16 form of the text.
+func applyPatches(content string, patches []TextPatch) (string, error) {
+	text := utf16.Encode([]rune(content))
+	for _, p := range patches {
+		if p.Offset < 0 || p.Delete < 0 || p.Offset+p.Delete > len(text) {
+			return "", fmt.Errorf("%w: offset %d, delete %d, length %d", errInvalidPatch, p.Offset, p.Delete, len(text))
+		}
+		insert := utf16.Encode([]rune(p.Insert))
+		next := make([]uint16, 0, len(text)-p.Delete+len(insert))
+		next = append(next, text[:p.Offset]...)
+		next = append(next, insert...)
+		next = append(next, text[p.Offset+p.Delete:]...)
+		text = next
+	}
+	return string(utf16.Decode(text)), nil
+}
+
+// serveNoteRaw sends the note's bytes as they are instead of inside JSON. HEAD gives just the
+// size, and a Range request just that part of the file, so large notes can be read in pages.
+func serveNoteRaw(w http.ResponseWriter, r *http.Request, path string) {
+	file, err := os.Open(path)
+	if err != nil {
+		http.Error(w, "Not found", http.StatusNotFound)
+		return
+	}
+	defer file.Close()
+
+	info, err := file.Stat()
+	if err != nil || info.IsDir() {
+		http.Error(w, "Not found", http.StatusNotFound)
+		return
+	}
+	w.Header().Set("Content-Type", "text/markdown; charset=utf-8")
+	http.ServeContent(w, r, "", info.ModTime(), file)
 }
 
 func handleNoteDetail(w http.ResponseWriter, r *http.Request) {
@@ -397,7 +748,9 @@ func handleNoteDetail(w http.ResponseWriter, r *http.Request) {
 	filename := strings.TrimPrefix(r.URL.Path, "/api/notes/")
 	path := filepath.Join(notesDir, filename)
 
-	if r.Method == "GET" {
+	if r.Method == "HEAD" || (r.Method == "GET" && r.URL.Query().Get("raw") == "1") {
+		serveNoteRaw(w, r, path)
+	} else if r.Method == "GET" {
 		content, err := ioutil.ReadFile(path)
 		if err != nil {
 			http.Error(w, "Not found", http.StatusNotFound)
@@ -433,10 +786,13 @@ func handleNoteDetail(w http.ResponseWriter, r *http.Request) {
 
 		// Update DB: Delete the item itself and any children (if it's a directory)
 		// Note: path in DB is relative (e.g. "folder/note.md")
-		_, err = db.Exec("DELETE FROM notes WHERE path = ? OR path LIKE ?", filename, filename+"/%")
+		low, high := folderRange(filename)
+		_, err = db.Exec("DELETE FROM notes WHERE path = ? OR (path >= ? AND path < ?)", filename, low, high)
 		if err != nil {
 			log.Println("Error deleting from DB:", err)
 		}
+		dropStamps(filename)
+		publishEvent(NoteEvent{Type: "deleted", Path: filename})
 
 		w.WriteHeader(http.StatusOK)
 	}
@@ -738,37 +1094,75 @@ func initDB() {
 
 	createTableSQL := `CREATE TABLE IF NOT EXISTS notes (
 		"path" TEXT PRIMARY KEY,
-		"content" TEXT
+		"content" TEXT,
+		"hash" TEXT,
+		"title" TEXT,
+		"size" INTEGER,
+		"mtime" INTEGER
 	);`
 
 	_, err = db.Exec(createTableSQL)
 	if err != nil {
 		log.Fatal(err)
 	}
+
+	// Tables of older versions get the metadata columns; the first sync fills them
+	for _, column := range []string{`"hash" TEXT`, `"title" TEXT`, `"size" INTEGER`, `"mtime" INTEGER`} {
+		db.Exec("ALTER TABLE notes ADD COLUMN " + column) // Fails once the column exists
+	}
+}
+
+// upsertNoteSQL writes a note with its metadata; noteRow builds the arguments.
+const upsertNoteSQL = "INSERT OR REPLACE INTO notes(path, content, hash, title, size, mtime) VALUES(?, ?, ?, ?, ?, ?)"
+
+func noteRow(path, content, hash string, stamp fileStamp) []interface{} {
+	return []interface{}{path, content, hash, noteTitle(content), stamp.size, stamp.modTime / int64(time.Millisecond)}
+}
+
+// noteTitle returns the text of the note's first heading outside code blocks, or "".
+func noteTitle(content string) string {
+	inFence := false
+	for content != "" {
+		line := content
+		if i := strings.IndexByte(content, '\n'); i >= 0 {
+			line, content = content[:i], content[i+1:]
+		} else {
+			content = ""
+		}
+		line = strings.TrimSpace(line)
+		if strings.HasPrefix(line, "```") || strings.HasPrefix(line, "~~~") {
+			inFence = !inFence
+			continue
+		}
+		if inFence || !strings.HasPrefix(line, "#") {
+			continue
+		}
+		text := strings.TrimLeft(line, "#")
+		level := len(line) - len(text)
+		if level <= 6 && (text == "" || text[0] == ' ' || text[0] == '\t') {
+			if title := strings.TrimSpace(strings.TrimRight(strings.TrimSpace(text), "#")); title != "" {
+				return title
+			}
+		}
+	}
+	return ""
 }
 
+// syncDatabase brings the notes table in line with the files on disk, e.g. after a git pull,
+// and publishes an event for every note that appeared, changed or disappeared. Unchanged notes
+// are not written again. Once the server runs, the caller holds mu.
 func syncDatabase() {
 	log.Println("Syncing database with filesystem...")
 
 	// Get all files from FS
 	files := make(map[string]string)
-	err := filepath.Walk(notesDir, func(path string, info os.FileInfo, err error) error {
-		if err != nil {
-			return err
-		}
-		if strings.Contains(path, ".git") {
-			return nil
-		}
-		if !info.IsDir() && strings.HasSuffix(info.Name(), ".md") {
-			rel, err := filepath.Rel(notesDir, path)
-			if err == nil {
-				content, err := ioutil.ReadFile(path)
-				if err == nil {
-					files[filepath.ToSlash(rel)] = string(content)
-				}
-			}
+	stamps := make(map[string]fileStamp)
+	err := walkNotes(func(rel, path string, info os.FileInfo) {
+		content, err := ioutil.ReadFile(path)
+		if err == nil {
+			files[rel] = string(content)
+			stamps[rel] = stampOf(info)
 		}
-		return nil
 	})
 	if err != nil {
 		log.Println("Error walking notes dir:", err)
@@ -777,6 +1171,26 @@ func syncDatabase() {
 
 	log.Printf("Found %d files in filesystem.", len(files))
 
+	// Hashes and times of what the table holds now, without reading the contents
+	type storedNote struct {
+		hash  string
+		mtime int64
+	}
+	known := make(map[string]storedNote)
+	rows, err := db.Query("SELECT path, COALESCE(hash, ''), COALESCE(mtime, 0) FROM notes")
+	if err != nil {
+		log.Println("Error reading notes from DB:", err)
+		return
+	}
+	for rows.Next() {
+		var path string
+		var stored storedNote
+		if rows.Scan(&path, &stored.hash, &stored.mtime) == nil {
+			known[path] = stored
+		}
+	}
+	rows.Close()
+
 	tx, err := db.Begin()
 	if err != nil {
 		log.Println("Error beginning transaction:", err)
@@ -784,7 +1198,7 @@ func syncDatabase() {
 	}
 
 	// Insert or Update
-	stmt, err := tx.Prepare("INSERT OR REPLACE INTO notes(path, content) VALUES(?, ?)")
+	stmt, err := tx.Prepare(upsertNoteSQL)
 	if err != nil {
 		log.Println("Error preparing statement:", err)
 		tx.Rollback()
@@ -792,36 +1206,292 @@ func syncDatabase() {
 	}
 	defer stmt.Close()
 
+	var changes []NoteEvent
 	for path, content := range files {
-		_, err = stmt.Exec(path, content)
-		if err != nil {
+		hash := contentHash(content)
+		stored, exists := known[path]
+		if exists && stored.hash == hash {
+			if mtime := stamps[path].modTime / int64(time.Millisecond); mtime != stored.mtime {
+				tx.Exec("UPDATE notes SET mtime = ? WHERE path = ?", mtime, path) // Touched, e.g. by a checkout
+			}
+			continue
+		}
+		if _, err := stmt.Exec(noteRow(path, content, hash, stamps[path])...); err != nil {
 			log.Println("Error inserting note:", path, err)
+			continue
 		}
+		changes = append(changes, NoteEvent{Type: noteEventType(!exists), Path: path, Hash: hash})
 	}
 
 	// Delete removed files
-	rows, err := db.Query("SELECT path FROM notes")
-	if err == nil {
-		defer rows.Close()
-		var dbPath string
-		var toDelete []string
-		for rows.Next() {
-			rows.Scan(&dbPath)
-			if _, exists := files[dbPath]; !exists {
-				toDelete = append(toDelete, dbPath)
+	for path := range known {
+		if _, exists := files[path]; !exists {
+			log.Println("Deleting removed file from DB:", path)
+			tx.Exec("DELETE FROM notes WHERE path = ?", path)
+			changes = append(changes, NoteEvent{Type: "deleted", Path: path})
+		}
+	}
+
+	if err := tx.Commit(); err != nil {
+		log.Println("Error committing transaction:", err)
+		return
+	}
+	fileStamps = stamps
+	for _, event := range changes {
+		publishEvent(event)
+	}
+	log.Printf("Database sync complete, %d notes changed.", len(changes))
+}
+
+// walkNotes calls fn for every note file below notesDir with its slash-separated relative path.
+func walkNotes(fn func(rel, path string, info os.FileInfo)) error {
+	return filepath.Walk(notesDir, func(path string, info os.FileInfo, err error) error {
+		if err != nil {
+			if os.IsNotExist(err) {
+				return nil // Removed while walking
 			}
+			return err
 		}
+		if info.IsDir() && info.Name() == ".git" {
+			return filepath.SkipDir
+		}
+		if strings.Contains(path, ".git") {
+			return nil
+		}
+		if !info.IsDir() && strings.HasSuffix(info.Name(), ".md") {
+			if rel, err := filepath.Rel(notesDir, path); err == nil {
+				fn(filepath.ToSlash(rel), path, info)
+			}
+		}
+		return nil
+	})
+}
 
-		for _, p := range toDelete {
-			log.Println("Deleting removed file from DB:", p)
-			tx.Exec("DELETE FROM notes WHERE path = ?", p)
+func stampOf(info os.FileInfo) fileStamp {
+	return fileStamp{size: info.Size(), modTime: info.ModTime().UnixNano()}
+}
+
+// moveStamps renames the stamps of a note or of every note in a folder. The caller holds mu.
+func moveStamps(oldPath, newPath string) {
+	for path, stamp := range fileStamps {
+		if path == oldPath || strings.HasPrefix(path, oldPath+"/") {
+			delete(fileStamps, path)
+			fileStamps[newPath+strings.TrimPrefix(path, oldPath)] = stamp
 		}
 	}
+}
 
-	if err := tx.Commit(); err != nil {
-		log.Println("Error committing transaction:", err)
-	} else {
-		log.Println("Database sync complete.")
+// dropStamps forgets a deleted note or folder. The caller holds mu.
+func dropStamps(oldPath string) {
+	for path := range fileStamps {
+		if path == oldPath || strings.HasPrefix(path, oldPath+"/") {
+			delete(fileStamps, path)
+		}
+	}
+}
+
+// watchNotes picks up notes changed outside the app, by another editor or a git pull in a
+// terminal. It compares sizes and modification times every few seconds and only reads the
+// files that differ.
+func watchNotes() {
+	ticker := time.NewTicker(notesWatchInterval)
+	defer ticker.Stop()
+	for range ticker.C {
+		current := make(map[string]fileStamp)
+		err := walkNotes(func(rel, _ string, info os.FileInfo) {
+			current[rel] = stampOf(info)
+		})
+		if err != nil {
+			log.Println("Error scanning notes dir:", err)
+			continue
+		}
+		mu.Lock()
+		applyNoteStamps(current)
+		mu.Unlock()
+	}
+}
+
+// applyNoteStamps updates the table for the notes whose stamps differ from the known ones and
+// publishes the changes. The caller holds mu.
+func applyNoteStamps(current map[string]fileStamp) {
+	for rel, stamp := range current {
+		if known, ok := fileStamps[rel]; ok && known == stamp {
+			continue
+		}
+		// Stat again under mu: the app may have saved the note since the scan
+		path := filepath.Join(notesDir, filepath.FromSlash(rel))
+		info, err := os.Stat(path)
+		if err != nil {
+			continue
+		}
+		if known, ok := fileStamps[rel]; ok && known == stampOf(info) {
+			continue
+		}
+		content, err := ioutil.ReadFile(path)
+		if err != nil {
+			continue
+		}
+		stamp = stampOf(info)
+		fileStamps[rel] = stamp
+
+		var oldHash string
+		err = db.QueryRow("SELECT COALESCE(hash, '') FROM notes WHERE path = ?", rel).Scan(&oldHash)
+		created := errors.Is(err, sql.ErrNoRows)
+		hash := contentHash(string(content))
+		if !created && oldHash == hash {
+			// Touched but not changed
+			db.Exec("UPDATE notes SET mtime = ? WHERE path = ?", stamp.modTime/int64(time.Millisecond), rel)
+			continue
+		}
+		if _, err := db.Exec(upsertNoteSQL, noteRow(rel, string(content), hash, stamp)...); err != nil {
+			log.Println("Error updating DB after external change:", rel, err)
+			continue
+		}
+		publishEvent(NoteEvent{Type: noteEventType(created), Path: rel, Hash: hash})
+	}
+
+	for rel := range fileStamps {
+		if _, ok := current[rel]; ok {
+			continue
+		}
+		if _, err := os.Stat(filepath.Join(notesDir, filepath.FromSlash(rel))); err == nil {
+			continue // Saved by the app after the scan
+		}
+		delete(fileStamps, rel)
+		if _, err := db.Exec("DELETE FROM notes WHERE path = ?", rel); err != nil {
+			log.Println("Error deleting from DB after external change:", rel, err)
+		}
+		publishEvent(NoteEvent{Type: "deleted", Path: rel})
+	}
+}
+
+func noteEventType(created bool) string {
+	if created {
+		return "created"
+	}
+	return "modified"
+}
+
+// publishEvent numbers the event, keeps it for reconnecting clients and sends it to the
+// connected ones. A client too slow to take it is disconnected; it resumes with ?since=.
+func publishEvent(event NoteEvent) {
+	events.Lock()
+	defer events.Unlock()
+
+	events.seq++
+	event.Seq = events.seq
+	events.log = append(events.log, event)
+	if len(events.log) >= 2*eventLogSize {
+		events.log = append([]NoteEvent(nil), events.log[len(events.log)-eventLogSize:]...)
+	}
+
+	for ch := range events.subscribers {
+		select {
+		case ch <- event:
+		default:
+			delete(events.subscribers, ch)
+			close(ch)
+		}
+	}
+}
+
+// subscribeEvents registers a client. It returns the current sequence number and the kept
+// events after since, or reset if some of them are gone. A negative since starts at the
+// current position.
+func subscribeEvents(since int64) (ch chan NoteEvent, seq int64, backlog []NoteEvent, reset bool) {
+	events.Lock()
+	defer events.Unlock()
+
+	ch = make(chan NoteEvent, 256)
+	events.subscribers[ch] = true
+	seq = events.seq
+	if since < 0 || since == seq {
+		return ch, seq, nil, false
+	}
+	if since > seq || len(events.log) == 0 || events.log[0].Seq > since+1 {
+		return ch, seq, nil, true
+	}
+	backlog = append([]NoteEvent(nil), events.log[since+1-events.log[0].Seq:]...)
+	return ch, seq, backlog, false
+}
+
+func unsubscribeEvents(ch chan NoteEvent) {
+	events.Lock()
+	defer events.Unlock()
+
+	if events.subscribers[ch] {
+		delete(events.subscribers, ch)
+		close(ch)
+	}
+}
+
+// handleEvents streams note changes as newline-delimited JSON until the client disconnects.
+// A client that passes the seq of the last event it applied and the stream id from hello
+// gets the events it missed first.
+func handleEvents(w http.ResponseWriter, r *http.Request) {
+	w.Header().Set("Access-Control-Allow-Origin", "*")
+
+	if r.Method != "GET" {
+		http.Error(w, "Method not allowed", http.StatusMethodNotAllowed)
+		return
+	}
+	flusher, ok := w.(http.Flusher)
+	if !ok {
+		http.Error(w, "Streaming not supported", http.StatusInternalServerError)
+		return
+	}
+
+	since := int64(-1)
+	if value := r.URL.Query().Get("since"); value != "" {
+		parsed, err := strconv.ParseInt(value, 10, 64)
+		if err != nil {
+			http.Error(w, "Invalid since", http.StatusBadRequest)
+			return
+		}
+		since = parsed
+	}
+	// Sequence numbers of an earlier backend run mean nothing now
+	restarted := since >= 0 && r.URL.Query().Get("stream") != eventStreamID
+	if restarted {
+		since = -1
+	}
+
+	ch, seq, backlog, reset := subscribeEvents(since)
+	defer unsubscribeEvents(ch)
+
+	w.Header().Set("Content-Type", "application/x-ndjson")
+	w.Header().Set("Cache-Control", "no-cache")
+	w.WriteHeader(http.StatusOK)
+
+	encoder := json.NewEncoder(w) // One event per line
+	encoder.Encode(NoteEvent{Seq: seq, Type: "hello", Stream: eventStreamID})
+	if reset || restarted {
+		encoder.Encode(NoteEvent{Seq: seq, Type: "reset"})
+	}
+	for _, event := range backlog {
+		encoder.Encode(event)
+	}
+	flusher.Flush()
+
+	ping := time.NewTicker(eventPingInterval)
+	defer ping.Stop()
+	for {
+		select {
+		case event, open := <-ch:
+			if !open {
+				return
+			}
+			if err := encoder.Encode(event); err != nil {
+				return
+			}
+		case <-ping.C:
+			if err := encoder.Encode(NoteEvent{Type: "ping"}); err != nil {
+				return
+			}
+		case <-r.Context().Done():
+			return
+		}
+		flusher.Flush()
 	}
 }
 
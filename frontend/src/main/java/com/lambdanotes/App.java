@@ -2,14 +2,7 @@ package com.lambdanotes;
 
 import atlantafx.base.theme.PrimerDark;
 import atlantafx.base.theme.PrimerLight;
-import com.vladsch.flexmark.ext.tables.TablesExtension;
-import com.vladsch.flexmark.ext.gfm.strikethrough.StrikethroughExtension;
-import com.vladsch.flexmark.ext.gfm.tasklist.TaskListExtension;
-import com.vladsch.flexmark.ext.autolink.AutolinkExtension;
-import com.vladsch.flexmark.ext.footnotes.FootnoteExtension;
-import com.vladsch.flexmark.ext.anchorlink.AnchorLinkExtension;
-import com.vladsch.flexmark.html.HtmlRenderer;
-import com.vladsch.flexmark.parser.Parser;
+import com.google.gson.Gson;
 import com.vladsch.flexmark.pdf.converter.PdfConverterExtension;
 import javafx.application.Application;
 import javafx.application.Platform;
@@ -47,6 +40,10 @@ import java.util.Optional;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 import javafx.scene.Cursor;
 import javafx.scene.input.MouseEvent;
@@ -64,17 +61,15 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import javafx.scene.text.Font;
 import javafx.scene.shape.SVGPath;
-import javafx.scene.control.ScrollBar;
-import javafx.geometry.Orientation;
-import java.util.Set;
 import javafx.scene.Node;
 import javafx.stage.Modality;
 import javafx.scene.layout.Pane;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import com.lambdanotes.GitHistoryView; // Import GitHistoryView
 import com.lambdanotes.GitCommitDetailView;
 import com.lambdanotes.utils.HtmlPasteUtils;
-import netscape.javascript.JSObject;
+import com.lambdanotes.utils.TextStatistics;
 
 public class App extends Application {
 
@@ -82,12 +77,27 @@ public class App extends Application {
 
     private NoteService noteService;
     private TreeView<String> noteTreeView;
-    private TextArea editorArea;
-    private TextArea lineNumbers;
+    private final NoteTreeModel noteTree = new NoteTreeModel(); // Items of noteTreeView, updated in place
+    private NoteEditor editorArea;
+    private LineNumberGutter lineNumbers;
     private WebView previewArea;
+    private LivePreview livePreview;
+    private final PreviewMetrics previewMetrics = new PreviewMetrics();
+    private boolean showPreviewTimings = false;
+    private SplitScrollSync scrollSync;
+    private final PreviewShell previewShell = new PreviewShell();
+    private PreviewRenderPipeline<RenderedNote> renderPipeline;
+    private volatile RenderedHtmlCache renderedHtmlCache;
+    private volatile IncrementalMarkdownRenderer incrementalRenderer;
+    private boolean codeHighlighting = false;
+    private int largeNotePreviewLines = AppConfig.DEFAULT_LARGE_NOTE_PREVIEW_LINES;
+    private int undoHistorySteps = AppConfig.DEFAULT_UNDO_HISTORY_STEPS;
+    private int undoMemoryKb = AppConfig.DEFAULT_UNDO_MEMORY_KB;
+    private int largeNoteThresholdKb = AppConfig.DEFAULT_LARGE_NOTE_THRESHOLD_KB;
+    private String loadedNoteContent; // Content of the note as last loaded, cached once rendered
+    private volatile String diskCacheCandidate; // Loaded content not yet looked up in the rendered HTML cache
     private TextField titleField;
-    private Parser parser;
-    private HtmlRenderer renderer;
+    private MarkdownEngine markdownEngine;
     private SplitPane splitPane;
     private boolean isPreviewOpen = false;
     private Button btnPreview;
@@ -95,8 +105,8 @@ public class App extends Application {
     private VBox previewPanel;
     private Label editorStatsLabel;
     private Label previewStatusLabel;
+    private Tooltip previewTimingsTooltip;
     private Label viewModeLabel; // New label for footer
-    private PauseTransition autoSaveTimer;
     private BackendManager backendManager;
     private boolean isSynced = true; // Track sync status
     private String currentTheme = "Dark"; // Track current theme
@@ -104,6 +114,8 @@ public class App extends Application {
     private double currentEditorFontSize = 16;
     private String currentFontFamily = "JetBrains Mono";
     private static final double MAX_CONTENT_WIDTH = 900;
+    private static final Duration PREVIEW_THROTTLE = Duration.millis(120);
+    private static final Duration AUTO_SAVE_DELAY = Duration.seconds(1);
     
     // Layout Components
     private BorderPane mainLayout;
@@ -128,8 +140,11 @@ public class App extends Application {
     // Explorer Components
     private TextField searchField;
     private List<String> allNotes = new ArrayList<>(); // Cache for filtering
+    private final Map<String, NoteService.NoteMeta> noteMetas = new HashMap<>(); // From the last listing; dropped once a note changes
+    private final Map<Tab, Integer> pendingLineJumps = new HashMap<>(); // Lines to show once a hibernated tab is restored
     private final List<String> recentFiles = new ArrayList<>(); // Track recent files
     private static final int MAX_RECENT_FILES = 20;
+    private static final Path SESSION_FILE = Paths.get(System.getProperty("user.home"), ".lambdanotes", "session.json"); // Tabs open on exit
     
     // Sidebar & Activity Bar
     private GitHistoryView gitHistoryView;
@@ -151,8 +166,11 @@ public class App extends Application {
     // Tab related fields
     private TabPane editorTabPane;
     private boolean showTabs = false;
-    private java.util.Map<String, Tab> openTabs = new java.util.HashMap<>();
-    private java.util.Map<Tab, VBox> tabEditorPanels = new java.util.HashMap<>();
+    private TabSessionManager tabSessions; // Note, editor and panel of each note tab
+    private NoteSaveBatcher saveBatcher; // Dirty editors of all tabs, saved together
+    private TabHibernator tabHibernator;
+    private NoteEventStream noteEvents; // Changes pushed by the backend
+    private final List<NoteEditor> openEditors = new ArrayList<>(); // The classic editor and one per open tab
 
     // Track title visibility in preview
     private boolean showTitleInPreview = true;
@@ -221,31 +239,55 @@ public class App extends Application {
         stage.initStyle(StageStyle.UNDECORATED); // Remove default OS window decorations
         
         noteService = new NoteService();
-        parser = Parser.builder()
-                .extensions(Arrays.asList(
-                    TablesExtension.create(),
-                    StrikethroughExtension.create(),
-                    TaskListExtension.create(),
-                    AutolinkExtension.create(),
-                    FootnoteExtension.create(),
-                    AnchorLinkExtension.create()
-                ))
-                .build();
-        renderer = HtmlRenderer.builder()
-                .extensions(Arrays.asList(
-                    TablesExtension.create(),
-                    StrikethroughExtension.create(),
-                    TaskListExtension.create(),
-                    AutolinkExtension.create(),
-                    FootnoteExtension.create(),
-                    AnchorLinkExtension.create()
-                ))
-                .softBreak("<br />")
-                .build();
-
-        // Auto-save timer (1 second delay)
-        autoSaveTimer = new PauseTransition(Duration.seconds(1));
-        autoSaveTimer.setOnFinished(e -> saveNote(true));
+        saveBatcher = new NoteSaveBatcher(noteService, new NoteSaveBatcher.Listener() {
+            @Override
+            public void saved(NoteSaveState state, NoteSaveState.Save save, boolean created) {
+                onNoteSaved(state, save, created);
+            }
+
+            @Override
+            public void clean(NoteSaveState state) {
+                Tab tab = showTabs && state.getPath() != null ? tabSessions.getTab(state.getPath()) : null;
+                if (tab != null) updateUnsavedMarker(tab, state);
+            }
+
+            @Override
+            public void failed(NoteSaveState state, String error) {
+                statusLabel.setText(LanguageManager.get("status.save_failed"));
+            }
+        });
+        tabHibernator = new TabHibernator(new TabHibernator.Host() {
+            @Override
+            public TabHibernator.State hibernate(Tab tab) {
+                return hibernateTab(tab);
+            }
+
+            @Override
+            public void restore(Tab tab, TabHibernator.State state) {
+                restoreTab(tab, state);
+            }
+
+            @Override
+            public void unreadable(Tab tab, TabHibernator.State state, Path spillFile) {
+                showAlert(LanguageManager.get("dialog.error"), java.text.MessageFormat.format(
+                        LanguageManager.get("dialog.unsaved_text_unreadable"), state.getPath(), spillFile));
+            }
+        }, AppConfig.DEFAULT_MAX_LIVE_TABS, AppConfig.DEFAULT_TAB_HIBERNATE_MINUTES);
+        configureMarkdownEngine(false);
+        renderPipeline = new PreviewRenderPipeline<>(markdown -> {
+            // Only the first render after a load hashes the note and probes the disk cache,
+            // edits are served from the renderer's in-memory block cache
+            String candidate = diskCacheCandidate;
+            if (candidate != null && candidate.length() == markdown.length() && candidate.equals(markdown)) {
+                diskCacheCandidate = null;
+                List<RenderedBlock> cached = renderedHtmlCache.get(markdown, currentTheme);
+                if (cached != null) {
+                    return new RenderedNote(markdown, cached, true);
+                }
+            }
+            return new RenderedNote(markdown, incrementalRenderer.render(markdown), false);
+        }, previewMetrics);
+        renderPipeline.setOnMeasured(this::updatePreviewStatus);
 
         // Root StackPane for Overlays (Notifications)
         rootStack = new StackPane();
@@ -261,7 +303,7 @@ public class App extends Application {
         mainLayout.setTop(titleBar);
 
         // Sidebar (Note Tree)
-        noteTreeView = new TreeView<>();
+        noteTreeView = new TreeView<>(noteTree.getRoot());
         noteTreeView.setShowRoot(false);
         noteTreeView.setCellFactory(new Callback<TreeView<String>, TreeCell<String>>() {
             @Override
@@ -304,49 +346,22 @@ public class App extends Application {
         splitPane = new SplitPane();
         splitPane.getStyleClass().add("main-split-pane");
         
-        editorArea = new TextArea();
+        editorArea = new NoteEditor();
         editorArea.setPromptText(LanguageManager.get("editor.placeholder"));
         editorArea.getStyleClass().add("editor-area");
-        editorArea.setWrapText(true); // Enable wrap for long links
-        editorArea.textProperty().addListener((obs, oldVal, newVal) -> {
-            if (currentMode == ViewMode.READING || currentMode == ViewMode.SPLIT) updatePreview(newVal);
-            updateEditorStats(newVal);
-            updateLineNumbers();
-            autoSaveTimer.playFromStart(); // Reset timer on change
-        });
+        createChangeBus(editorArea, null);
         
         setupEditorBehavior(editorArea);
 
         // Layout Listeners for Centering
         // We will handle title styling inside updateEditorStyle now since they are together
         editorArea.widthProperty().addListener((obs, oldVal, newVal) -> updateEditorStyle());
-        
-        // Sync Scrollbars after layout
-        Platform.runLater(() -> {
-            Set<Node> nodes = editorArea.lookupAll(".scroll-bar");
-            for (Node node : nodes) {
-                if (node instanceof ScrollBar) {
-                    ScrollBar sb = (ScrollBar) node;
-                    if (sb.getOrientation() == Orientation.VERTICAL) {
-                        sb.valueProperty().addListener((obs, oldVal, newVal) -> {
-                            if (lineNumbers != null) {
-                                lineNumbers.setScrollTop(editorArea.getScrollTop());
-                            }
-                        });
-                    }
-                }
-            }
-        });
 
         previewArea = new WebView();
         previewArea.setPageFill(Color.TRANSPARENT);
         previewArea.setContextMenuEnabled(false);
-        previewArea.getEngine().getLoadWorker().stateProperty().addListener((obs, oldState, newState) -> {
-            if (newState == javafx.concurrent.Worker.State.SUCCEEDED) {
-                JSObject window = (JSObject) previewArea.getEngine().executeScript("window");
-                window.setMember("javaApp", new JavaBridge());
-            }
-        });
+        livePreview = new LivePreview(previewArea, new JavaBridge(), previewMetrics);
+        scrollSync = new SplitScrollSync(livePreview);
 
         editorPanel = createEditorPanel();
         previewPanel = createPreviewPanel();
@@ -355,6 +370,12 @@ public class App extends Application {
         editorTabPane = new TabPane();
         editorTabPane.getStyleClass().add("editor-tab-pane");
         editorTabPane.setTabClosingPolicy(TabPane.TabClosingPolicy.ALL_TABS);
+        // Leaving a tab saves every dirty tab at once; the new one is rebuilt first if it was hibernated
+        tabSessions = new TabSessionManager(editorTabPane, (tab, document) -> {
+            saveBatcher.flush();
+            tabHibernator.selected(document != null ? tab : null);
+            if (document != null) showTabEditor(tab);
+        });
 
         // Default: Only Editor
         splitPane.getItems().add(editorPanel);
@@ -488,8 +509,14 @@ public class App extends Application {
             this.currentConfig = config; // Cache config
             applySettings(config);
             
+            // Listen before listing, so no change falls between the two
+            if (noteEvents == null) {
+                noteEvents = new NoteEventStream(noteService, this::applyNoteEvents);
+                noteEvents.start();
+            }
             // Always load local notes first to ensure UI is not empty
             refreshNoteList();
+            restoreSession();
             updateGitStatus();
             
             if (config != null && config.getRepoUrl() != null && !config.getRepoUrl().isEmpty()) {
@@ -778,6 +805,14 @@ public class App extends Application {
         updateModeSwitcherState();
         updatePreviewStatus();
         updateEditorStyle();
+        updateScrollSync();
+    }
+
+    private void updateScrollSync() {
+        // Editor and preview only scroll together when both are visible
+        if (scrollSync == null) return;
+        scrollSync.attach(editorArea);
+        scrollSync.setEnabled(currentMode == ViewMode.SPLIT);
     }
 
     private void updateTabLayout(Tab tab) {
@@ -808,7 +843,7 @@ public class App extends Application {
             }
         }
         
-        VBox tabEditorPanel = tabEditorPanels.get(tab);
+        VBox tabEditorPanel = tabSessions.getPanel(tab);
         if (tabEditorPanel == null) return; 
         
         tabSplitPane.getItems().clear();
@@ -839,6 +874,9 @@ public class App extends Application {
                 if (viewModeLabel != null) viewModeLabel.setText(LanguageManager.get("mode.split"));
                 break;
         }
+        if (editorTabPane.getSelectionModel().getSelectedItem() == tab) {
+            updateScrollSync();
+        }
     }
 
     private void updateModeSwitcherState() {
@@ -887,7 +925,197 @@ public class App extends Application {
         return modeSwitcher;
     }
 
-    private void setupEditorBehavior(TextArea textArea) {
+    // Edits of one editor reach the status bar, preview and autosave through its bus, batched per frame
+    private DocumentChangeBus createChangeBus(NoteEditor editor, Tab tab) {
+        openEditors.add(editor);
+        editor.setHistoryLimits(undoHistorySteps, undoMemoryKb);
+        saveBatcher.track(editor, () -> tab != null ? (String) tab.getUserData() : titleField.getText());
+        DocumentChangeBus bus = new DocumentChangeBus(editor);
+        bus.subscribe(DocumentChangeBus.Policy.everyFrame(), batch -> {
+            // From the save state, so text replaced by a reload does not count as an edit
+            if (tab != null) updateUnsavedMarker(tab, saveBatcher.get(editor));
+            if (editor == editorArea) updateEditorStats(editor);
+        });
+        bus.subscribe(DocumentChangeBus.Policy.throttle(PREVIEW_THROTTLE), batch -> {
+            // Only the active editor feeds the preview
+            if (editor == editorArea && (currentMode == ViewMode.READING || currentMode == ViewMode.SPLIT)) {
+                updatePreview(editor.getText());
+            }
+        });
+        bus.subscribe(DocumentChangeBus.Policy.debounce(AUTO_SAVE_DELAY), batch -> saveBatcher.flush());
+        return bus;
+    }
+
+    // The "*" after a tab title, shown while its editor has edits that are not saved
+    private void updateUnsavedMarker(Tab tab, NoteSaveState state) {
+        boolean unsaved = state != null && state.hasUnsavedEdits();
+        boolean marked = tab.getText().endsWith("*");
+        if (unsaved && !marked) {
+            tab.setText(tab.getText() + "*");
+        } else if (!unsaved && marked) {
+            tab.setText(tab.getText().substring(0, tab.getText().length() - 1));
+        }
+    }
+
+    // Header (mode switcher) over a split pane that updateTabLayout fills with the editor and/or preview
+    private VBox createTabContent() {
+        SplitPane tabSplitPane = new SplitPane();
+        tabSplitPane.getStyleClass().add("main-split-pane");
+        VBox.setVgrow(tabSplitPane, Priority.ALWAYS);
+
+        AnchorPane tabHeader = new AnchorPane();
+        tabHeader.setMinHeight(40);
+        tabHeader.setPrefHeight(40);
+        tabHeader.setMaxHeight(40);
+        tabHeader.getStyleClass().add("tab-header-pane");
+
+        VBox tabContent = new VBox();
+        tabContent.getStyleClass().add("tab-content");
+        tabContent.getChildren().addAll(tabHeader, tabSplitPane);
+        return tabContent;
+    }
+
+    // A tab for the note at path, without an editor yet
+    private Tab createNoteTab(String path) {
+        Tab tab = new Tab(path);
+        tabSessions.add(tab, path);
+        tab.setContent(createTabContent());
+        tab.setOnClosed(e -> disposeTab(tab, true));
+        return tab;
+    }
+
+    // Reopens the note tabs of the last run; each is only loaded once it gets selected
+    private void restoreSession() {
+        TabSessionManager.Session session = TabSessionManager.loadSession(SESSION_FILE);
+        if (!showTabs || session == null || session.tabs.isEmpty()) return;
+        Tab selected = null;
+        List<Tab> tabs = new ArrayList<>();
+        for (TabSessionManager.SessionTab saved : session.tabs) {
+            if (tabSessions.getTab(saved.path) != null) continue;
+            Tab tab = createNoteTab(saved.path);
+            tabSessions.get(tab).setPosition(saved.caret, saved.scrollTop);
+            tabHibernator.openedHibernated(tab, new TabHibernator.State(saved.path, saved.caret, saved.scrollTop, null, null));
+            tabs.add(tab);
+            if (saved.path.equals(session.selected)) selected = tab;
+        }
+        if (tabs.isEmpty()) return;
+
+        showMainContent();
+        editorTabPane.getTabs().addAll(tabs);
+        editorTabPane.getSelectionModel().select(selected != null ? selected : tabs.get(tabs.size() - 1));
+    }
+
+    // Builds the editor and panel of a tab whose note path is in its user data
+    private NoteEditor attachTabEditor(Tab tab, String content) {
+        NoteEditor tabEditor = new NoteEditor(content);
+        tabEditor.getStyleClass().add("editor-area");
+        VBox tabEditorPanel = createEditorPanelForTab(tabEditor, (String) tab.getUserData());
+
+        // Sync settings to new editor
+        double width = editorArea.getWidth(); // Use main editor width as reference
+        double hPadding = (width - MAX_CONTENT_WIDTH) / 2;
+        if (hPadding < 70) hPadding = 70;
+        tabEditor.setStyle("-fx-font-family: '" + currentFontFamily + "'; -fx-font-size: " + currentEditorFontSize + "px; -fx-padding: 20 " + hPadding + " 20 " + hPadding + ";");
+
+        tabSessions.attach(tab, createChangeBus(tabEditor, tab), tabEditorPanel);
+        return tabEditor;
+    }
+
+    // Drops the editor, panel and undo history of a tab; save it first to keep its edits
+    private void detachTabEditor(Tab tab) {
+        DocumentChangeBus bus = tabSessions.detach(tab);
+        if (bus == null) return;
+        NoteEditor tabEditor = bus.getEditor();
+        bus.dispose();
+        saveBatcher.untrack(tabEditor);
+        openEditors.remove(tabEditor);
+        tabEditor.clearHistory();
+        if (tab.getContent() instanceof VBox) {
+            Node split = ((VBox) tab.getContent()).getChildren().get(1);
+            if (split instanceof SplitPane) ((SplitPane) split).getItems().clear();
+        }
+    }
+
+    // Makes the tab's editor the current one
+    private void showTabEditor(Tab tab) {
+        NoteEditor tabEditor = tabSessions.getEditor(tab);
+        if (tabEditor == null) return; // Still being restored
+        editorArea = tabEditor;
+        titleField.setText(tab.getUserData().toString());
+        updateEditorStats(editorArea);
+        updateTabLayout(tab); // Moves preview & modeSwitcher
+    }
+
+    // Drops everything of a closed tab; keepEdits saves what was not saved yet
+    private void disposeTab(Tab tab, boolean keepEdits) {
+        TabHibernator.State hibernated = tabHibernator.closed(tab);
+        if (keepEdits && hibernated != null && hibernated.getContent() != null) {
+            saveBatcher.saveDetached(hibernated.getPath(), hibernated.getContent());
+        }
+        // The flush takes the text right away, so the editor can go
+        if (keepEdits) saveBatcher.flush();
+        detachTabEditor(tab);
+        tabSessions.remove(tab);
+        pendingLineJumps.remove(tab);
+    }
+
+    private void closeTab(Tab tab, boolean keepEdits) {
+        disposeTab(tab, keepEdits); // First, so the flush on the selection change can't save it
+        editorTabPane.getTabs().remove(tab);
+        if (editorTabPane.getTabs().isEmpty() && rootSplitPane.getItems().size() > 1) {
+            rootSplitPane.getItems().set(1, emptyState);
+        }
+    }
+
+    private TabHibernator.State hibernateTab(Tab tab) {
+        NoteEditor tabEditor = tabSessions.getEditor(tab);
+        NoteSaveState state = tabEditor != null ? saveBatcher.get(tabEditor) : null;
+        if (state == null || state.isSaving()) return null; // Try again on the next sweep
+        String path = (String) tab.getUserData();
+        boolean dirty = state.hasUnsavedEdits() || !path.equals(state.getPath());
+        TabHibernator.State hibernated = new TabHibernator.State(path, tabEditor.getCaretPosition(), tabEditor.getScrollTop(),
+                state.getSavedHash(), dirty ? tabEditor.getText() : null);
+        detachTabEditor(tab);
+        return hibernated;
+    }
+
+    private void restoreTab(Tab tab, TabHibernator.State hibernated) {
+        if (hibernated.getContent() != null) {
+            NoteEditor tabEditor = attachTabEditor(tab, hibernated.getContent());
+            saveBatcher.get(tabEditor).markRestored(hibernated.getPath(), hibernated.getSavedHash());
+            saveBatcher.markDirty(tabEditor);
+            restorePosition(tab, tabEditor, hibernated);
+            return;
+        }
+        // Saved text is read back from the backend rather than kept around
+        noteService.getNoteDetail(hibernated.getPath()).thenAccept(note -> Platform.runLater(() -> {
+            TabSessionManager.Document document = tabSessions.get(tab);
+            if (document == null || document.isAttached()) return;
+            diskCacheCandidate = note.getContent();
+            NoteEditor tabEditor = attachTabEditor(tab, note.getContent());
+            saveBatcher.get(tabEditor).markLoaded(hibernated.getPath());
+            restorePosition(tab, tabEditor, hibernated);
+        })).exceptionally(e -> {
+            // E.g. a note of the saved session that was deleted meanwhile
+            logger.log(Level.WARNING, "Could not restore tab " + hibernated.getPath(), e);
+            Platform.runLater(() -> {
+                TabSessionManager.Document document = tabSessions.get(tab);
+                if (document != null && !document.isAttached()) closeTab(tab, false);
+            });
+            return null;
+        });
+    }
+
+    // Runs in the same FX pass that attached the editor, so editorArea never lags behind the restored tab
+    private void restorePosition(Tab tab, NoteEditor tabEditor, TabHibernator.State hibernated) {
+        if (editorTabPane.getSelectionModel().getSelectedItem() == tab) showTabEditor(tab);
+        tabEditor.positionCaret(Math.min(hibernated.getCaret(), tabEditor.getLength()));
+        tabEditor.setScrollTop(hibernated.getScrollTop());
+        Integer line = pendingLineJumps.remove(tab);
+        if (line != null) moveToLine(tabEditor, line);
+    }
+
+    private void setupEditorBehavior(NoteEditor textArea) {
         // Shift+Enter to insert new line
         textArea.addEventFilter(KeyEvent.KEY_PRESSED, event -> {
             if (event.getCode() == KeyCode.ENTER) {
@@ -962,21 +1190,23 @@ public class App extends Application {
             }
         });
         
+        textArea.selectionProperty().addListener((obs, oldVal, newVal) -> {
+            if (textArea == editorArea && (oldVal.getLength() > 0 || newVal.getLength() > 0)) updateEditorStats(textArea);
+        });
+
         setupEditorContextMenu(textArea);
         setupDragAndDrop(textArea);
     }
 
-    private void handleEnterKey(TextArea textArea, KeyEvent event) {
+    private void handleEnterKey(NoteEditor textArea, KeyEvent event) {
         int caret = textArea.getCaretPosition();
-        String text = textArea.getText();
         
         // Find start of current line
-        int lineStart = text.lastIndexOf('\n', caret - 1);
-        if (lineStart == -1) lineStart = 0;
-        else lineStart++; // skip \n
+        int line = textArea.getLineOfOffset(caret);
+        int lineStart = textArea.getLineStart(line);
         
         // Get current line content up to caret
-        String currentLine = text.substring(lineStart, caret);
+        String currentLine = textArea.getText(lineStart, caret);
         
         // Check indentation
         StringBuilder indent = new StringBuilder();
@@ -1025,8 +1255,7 @@ public class App extends Application {
             // We should clear this line.
             
             // Calculate range to delete
-            int lineEnd = text.indexOf('\n', caret);
-            if (lineEnd == -1) lineEnd = text.length();
+            int lineEnd = textArea.getLineEnd(line);
             
             textArea.deleteText(lineStart, lineEnd);
             // Don't consume event? No, we handled it by clearing. 
@@ -1050,7 +1279,7 @@ public class App extends Application {
         // If no indent and no list, let default behavior happen (insert \n)
     }
 
-    private void indentSelection(TextArea textArea) {
+    private void indentSelection(NoteEditor textArea) {
         String selection = textArea.getSelectedText();
         if (selection == null || selection.isEmpty()) return;
 
@@ -1069,19 +1298,14 @@ public class App extends Application {
         textArea.replaceSelection(sb.toString());
     }
 
-    private void unindentSelectionOrLine(TextArea textArea) {
+    private void unindentSelectionOrLine(NoteEditor textArea) {
         String selection = textArea.getSelectedText();
         if (selection == null || selection.isEmpty()) {
-            int caret = textArea.getCaretPosition();
-            String text = textArea.getText();
-            int lineStart = text.lastIndexOf('\n', caret - 1);
-            if (lineStart == -1) lineStart = 0;
-            else lineStart++; 
+            int line = textArea.getLineOfOffset(textArea.getCaretPosition());
+            int lineStart = textArea.getLineStart(line);
+            int lineEnd = textArea.getLineEnd(line);
             
-            int lineEnd = text.indexOf('\n', caret);
-            if (lineEnd == -1) lineEnd = text.length();
-            
-            String lineText = text.substring(lineStart, lineEnd);
+            String lineText = textArea.getText(lineStart, lineEnd);
             String newLineText = lineText;
             
             if (newLineText.startsWith("  ")) {
@@ -1122,23 +1346,18 @@ public class App extends Application {
         }
     }
 
-    private void cutCurrentLine(TextArea textArea) {
+    private void cutCurrentLine(NoteEditor textArea) {
         copyCurrentLine(textArea);
         deleteCurrentLine(textArea);
     }
 
-    private void copyCurrentLine(TextArea textArea) {
-        int caret = textArea.getCaretPosition();
-        String text = textArea.getText();
-        int lineStart = text.lastIndexOf('\n', caret - 1);
-        if (lineStart == -1) lineStart = 0;
-        else lineStart++; // skip \n
+    private void copyCurrentLine(NoteEditor textArea) {
+        int line = textArea.getLineOfOffset(textArea.getCaretPosition());
+        int lineStart = textArea.getLineStart(line);
+        int lineEnd = textArea.getLineEnd(line);
         
-        int lineEnd = text.indexOf('\n', caret);
-        if (lineEnd == -1) lineEnd = text.length();
-        
-        String lineText = text.substring(lineStart, lineEnd);
-        if (lineEnd < text.length()) {
+        String lineText = textArea.getText(lineStart, lineEnd);
+        if (lineEnd < textArea.getLength()) {
             lineText += "\n";
         }
         
@@ -1147,17 +1366,12 @@ public class App extends Application {
         Clipboard.getSystemClipboard().setContent(content);
     }
 
-    private void deleteCurrentLine(TextArea textArea) {
-        int caret = textArea.getCaretPosition();
-        String text = textArea.getText();
-        int lineStart = text.lastIndexOf('\n', caret - 1);
-        if (lineStart == -1) lineStart = 0;
-        else lineStart++; 
+    private void deleteCurrentLine(NoteEditor textArea) {
+        int line = textArea.getLineOfOffset(textArea.getCaretPosition());
+        int lineStart = textArea.getLineStart(line);
+        int lineEnd = textArea.getLineEnd(line);
         
-        int lineEnd = text.indexOf('\n', caret);
-        if (lineEnd == -1) lineEnd = text.length();
-        
-        if (lineEnd < text.length()) {
+        if (lineEnd < textArea.getLength()) {
             lineEnd++;
         } else if (lineStart > 0) {
             lineStart--;
@@ -1166,7 +1380,7 @@ public class App extends Application {
         textArea.deleteText(lineStart, lineEnd);
     }
 
-    private void duplicateSelectionOrLine(TextArea textArea) {
+    private void duplicateSelectionOrLine(NoteEditor textArea) {
         String selection = textArea.getSelectedText();
         if (selection != null && !selection.isEmpty()) {
             // Duplicate selection to next line
@@ -1174,24 +1388,18 @@ public class App extends Application {
             textArea.insertText(end, "\n" + selection);
         } else {
             // Duplicate current line
-            int caret = textArea.getCaretPosition();
-            String text = textArea.getText();
-            
-            int lineStart = text.lastIndexOf('\n', caret - 1);
-            if (lineStart == -1) lineStart = 0;
-            else lineStart++; // skip the \n
+            int line = textArea.getLineOfOffset(textArea.getCaretPosition());
+            int lineStart = textArea.getLineStart(line);
+            int lineEnd = textArea.getLineEnd(line);
             
-            int lineEnd = text.indexOf('\n', caret);
-            if (lineEnd == -1) lineEnd = text.length();
-            
-            String lineText = text.substring(lineStart, lineEnd);
+            String lineText = textArea.getText(lineStart, lineEnd);
             
             // Insert after the current line
             textArea.insertText(lineEnd, "\n" + lineText);
         }
     }
 
-    private void setupEditorContextMenu(TextArea textArea) {
+    private void setupEditorContextMenu(NoteEditor textArea) {
         ContextMenu contextMenu = new ContextMenu();
         
         MenuItem bold = new MenuItem(LanguageManager.get("context.bold"));
@@ -1226,7 +1434,7 @@ public class App extends Application {
         textArea.setContextMenu(contextMenu);
     }
 
-    private void insertFormatting(String prefix, String suffix, TextArea textArea) {
+    private void insertFormatting(String prefix, String suffix, NoteEditor textArea) {
         String selected = textArea.getSelectedText();
         if (selected == null || selected.isEmpty()) {
             insertTextAtCursor(prefix + suffix, textArea);
@@ -1239,7 +1447,7 @@ public class App extends Application {
         }
     }
 
-    private void insertTextAtCursor(String text, TextArea textArea) {
+    private void insertTextAtCursor(String text, NoteEditor textArea) {
         int caret = textArea.getCaretPosition();
         textArea.insertText(caret, text);
         // Force update preview if in split mode
@@ -1279,7 +1487,11 @@ public class App extends Application {
 
     private void filterNotes(String query) {
         if (query == null || query.isEmpty()) {
-            refreshNoteList();
+            if (noteEvents != null && noteEvents.isConnected()) {
+                buildTreeFromList(allNotes); // Kept current by the change stream
+            } else {
+                refreshNoteList();
+            }
             return;
         }
         
@@ -1289,33 +1501,17 @@ public class App extends Application {
                 .collect(Collectors.toList());
         
         buildTreeFromList(filtered);
+        for (String match : filtered) {
+            noteTree.reveal(match); // Only the folders above matches get their items
+        }
     }
 
+    // Adds and removes only what changed, so expanded folders and the selection stay as they are
     private void buildTreeFromList(List<String> notes) {
-        TreeItem<String> root = new TreeItem<>("root");
-        root.setExpanded(true);
-
-        for (String path : notes) {
-            String[] parts = path.split("/");
-            TreeItem<String> current = root;
-            for (int i = 0; i < parts.length; i++) {
-                String part = parts[i];
-                TreeItem<String> found = null;
-                for (TreeItem<String> child : current.getChildren()) {
-                    if (child.getValue().equals(part)) {
-                        found = child;
-                        break;
-                    }
-                }
-                if (found == null) {
-                    found = new TreeItem<>(part);
-                    current.getChildren().add(found);
-                }
-                current = found;
-                current.setExpanded(true); // Expand filtered results
-            }
+        noteTree.update(notes);
+        if (noteTreeView.getRoot() != noteTree.getRoot()) {
+            noteTreeView.setRoot(noteTree.getRoot()); // After a connection error placeholder
         }
-        noteTreeView.setRoot(root);
     }
 
     private void createNewFolder() {
@@ -1458,6 +1654,18 @@ public class App extends Application {
         });
     }
 
+    // Builds the engine for the given options, with a fresh block renderer and HTML cache keyed by them
+    private void configureMarkdownEngine(boolean highlightCode) {
+        codeHighlighting = highlightCode;
+        markdownEngine = MarkdownEngine.shared(MarkdownEngine.Options.NOTES.withCodeHighlighting(highlightCode));
+        incrementalRenderer = new IncrementalMarkdownRenderer(markdownEngine, previewMetrics);
+        if (renderedHtmlCache != null) {
+            renderedHtmlCache.shutdown();
+        }
+        renderedHtmlCache = new RenderedHtmlCache(
+                Paths.get(System.getProperty("user.home"), ".lambdanotes", "cache", "preview"), markdownEngine.getOptions().key() + ";blocks-v3");
+    }
+
     private void applySettings(AppConfig config) {
         if (config == null) return;
         
@@ -1486,15 +1694,28 @@ public class App extends Application {
             boolean show = config.isShowLineNumbers();
             lineNumbers.setVisible(show);
             lineNumbers.setManaged(show);
-            if (show) {
-                updateLineNumbers();
-            }
             updateEditorStyle(); // Re-align editor and title
         }
         
         // Apply Tab Settings
         this.showTabs = config.isShowTabs();
         this.showTitleInPreview = config.isShowTitleInPreview();
+        this.largeNotePreviewLines = config.getLargeNotePreviewLines();
+        this.undoHistorySteps = config.getUndoHistorySteps();
+        this.undoMemoryKb = config.getUndoMemoryKb();
+        this.largeNoteThresholdKb = config.getLargeNoteThresholdKb();
+        for (NoteEditor editor : openEditors) {
+            editor.setHistoryLimits(undoHistorySteps, undoMemoryKb);
+        }
+        tabHibernator.setLimits(config.getMaxLiveTabs(), config.getTabHibernateMinutes());
+        this.showPreviewTimings = config.isShowPreviewTimings();
+        if (config.isCodeHighlighting() != codeHighlighting) {
+            renderPipeline.cancel();
+            configureMarkdownEngine(config.isCodeHighlighting());
+            if (editorArea != null && (currentMode == ViewMode.READING || currentMode == ViewMode.SPLIT)) {
+                updatePreview(editorArea.getText());
+            }
+        }
         
         if (showTabs) {
             // Remove headerPane from mainContent if it exists (we will move modeSwitcher inside tabs)
@@ -1581,8 +1802,50 @@ public class App extends Application {
     }
 
     private void updatePreview(String markdown) {
-        String html = renderer.render(parser.parse(markdown));
-        
+        // Parse and render happen off the FX thread, only the newest result is shown
+        renderPipeline.submit(markdown, this::showRenderedPreview);
+    }
+
+    private void showRenderedPreview(RenderedNote rendered) {
+        if (!rendered.isFromCache() && rendered.getSource().equals(loadedNoteContent)) {
+            // Freshly opened note, keep its HTML so reopening it paints instantly
+            renderedHtmlCache.put(rendered.getSource(), currentTheme, rendered.getBlocks());
+        }
+
+        String title = titleField != null ? titleField.getText() : "";
+        // Remove extension for display if present
+        if (title.endsWith(".md")) {
+            title = title.substring(0, title.length() - 3);
+        }
+        // If title contains path, take only filename
+        if (title.contains("/")) {
+            title = title.substring(title.lastIndexOf("/") + 1);
+        }
+
+        // Check if title should be shown
+        String titleHtml = "";
+        if (this.showTitleInPreview) {
+             titleHtml = "<div class='note-title'>" + title + "</div><hr class='title-separator'/>";
+        }
+
+        // Shell is only reloaded when theme/font/language changes, otherwise the body is patched in place
+        // Very long notes only get the blocks around the viewport laid out
+        List<RenderedBlock> blocks = rendered.getBlocks();
+        RenderedBlock lastBlock = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+        boolean windowed = lastBlock != null && lastBlock.getStartLine() + lastBlock.getLineCount() > largeNotePreviewLines;
+        livePreview.update(buildPreviewShell(), titleHtml, blocks, windowed);
+        scrollSync.syncPreview(); // Keep the preview on the editor's line while typing
+    }
+
+    private String buildPreviewShell() {
+        String baseUrl = resolvePreviewBaseUrl();
+        // The shell only changes with theme, font, language or notes location, so it is built once per combination
+        String key = currentTheme + "|" + currentFontFamily + "|" + currentEditorFontSize + "|"
+                + LanguageManager.getCurrentLocale() + "|" + baseUrl;
+        return previewShell.get(key, () -> buildPreviewShellVariables(baseUrl));
+    }
+
+    private Map<String, String> buildPreviewShellVariables(String baseUrl) {
         // Get font URL for WebView
         String fontUrl, fontBoldUrl, fontItalicUrl, fontBoldItalicUrl;
         String fontFamilyCss = currentFontFamily;
@@ -1605,16 +1868,6 @@ public class App extends Application {
              fontBoldItalicUrl = getClass().getResource("fonts/JetBrainsMono-BoldItalic.ttf").toExternalForm();
         }
         
-        String title = titleField != null ? titleField.getText() : "";
-        // Remove extension for display if present
-        if (title.endsWith(".md")) {
-            title = title.substring(0, title.length() - 3);
-        }
-        // If title contains path, take only filename
-        if (title.contains("/")) {
-            title = title.substring(title.lastIndexOf("/") + 1);
-        }
-
         // Determine colors based on theme
         String textColor, bgColor, titleColor, codeBg, codeColor, borderColor, linkColor, buttonBg, buttonHover;
         String alertNoteBg, alertNoteColor, alertNoteBorder;
@@ -1685,12 +1938,44 @@ public class App extends Application {
             alertCautionBg = "rgba(248, 81, 73, 0.15)"; alertCautionColor = "#f85149"; alertCautionBorder = "#f85149";
         }
 
-        // Check if title should be shown
-        String titleHtml = "";
-        if (this.showTitleInPreview) {
-             titleHtml = "<div class='note-title'>" + title + "</div><hr class='title-separator'/>";
-        }
-
+        Map<String, String> strings = new HashMap<>();
+        strings.put("copy", LanguageManager.get("preview.copy"));
+        strings.put("copied", LanguageManager.get("preview.copied"));
+
+        Map<String, String> vars = new HashMap<>();
+        vars.put("baseUrl", baseUrl);
+        vars.put("strings", new Gson().toJson(strings));
+        vars.put("fontFamily", fontFamilyCss);
+        vars.put("fontSize", String.valueOf(currentEditorFontSize));
+        vars.put("fontUrl", fontUrl);
+        vars.put("fontBoldUrl", fontBoldUrl);
+        vars.put("fontItalicUrl", fontItalicUrl);
+        vars.put("fontBoldItalicUrl", fontBoldItalicUrl);
+        vars.put("textColor", textColor);
+        vars.put("bgColor", bgColor);
+        vars.put("titleColor", titleColor);
+        vars.put("codeBg", codeBg);
+        vars.put("codeColor", codeColor);
+        vars.put("borderColor", borderColor);
+        vars.put("linkColor", linkColor);
+        vars.put("buttonBg", buttonBg);
+        vars.put("buttonHover", buttonHover);
+        vars.put("alertNoteBg", alertNoteBg);
+        vars.put("alertNoteColor", alertNoteColor);
+        vars.put("alertNoteBorder", alertNoteBorder);
+        vars.put("alertTipBg", alertTipBg);
+        vars.put("alertTipColor", alertTipColor);
+        vars.put("alertTipBorder", alertTipBorder);
+        vars.put("alertWarnBg", alertWarnBg);
+        vars.put("alertWarnColor", alertWarnColor);
+        vars.put("alertWarnBorder", alertWarnBorder);
+        vars.put("alertCautionBg", alertCautionBg);
+        vars.put("alertCautionColor", alertCautionColor);
+        vars.put("alertCautionBorder", alertCautionBorder);
+        return vars;
+    }
+
+    private String resolvePreviewBaseUrl() {
         // Determine Base URL for relative images
         String baseUrl = "";
         try {
@@ -1707,271 +1992,115 @@ public class App extends Application {
         } catch (Exception e) {
             logger.warning("Failed to determine base URL: " + e.getMessage());
         }
-
-        String copyText = LanguageManager.get("preview.copy");
-        String copiedText = LanguageManager.get("preview.copied");
-
-        String styledHtml = "<html><head>" +
-                "<base href=\"" + baseUrl + "\">" +
-                "<link rel=\"stylesheet\" href=\"https://cdnjs.cloudflare.com/ajax/libs/prism/1.29.0/themes/prism-okaidia.min.css\">" +
-                "<script src=\"https://cdnjs.cloudflare.com/ajax/libs/prism/1.29.0/prism.min.js\"></script>" +
-                "<script src=\"https://cdnjs.cloudflare.com/ajax/libs/prism/1.29.0/components/prism-abap.min.js\"></script>" +
-                "<script src=\"https://cdnjs.cloudflare.com/ajax/libs/prism/1.29.0/plugins/autoloader/prism-autoloader.min.js\"></script>" +
-                "<script>Prism.plugins.autoloader.languages_path = 'https://cdnjs.cloudflare.com/ajax/libs/prism/1.29.0/components/';</script>" +
-                "<script>" +
-                "function copyToClipboard(text, button) {" +
-                "  var textArea = document.createElement('textarea');" +
-                "  textArea.value = text;" +
-                "  document.body.appendChild(textArea);" +
-                "  textArea.select();" +
-                "  document.execCommand('copy');" +
-                "  document.body.removeChild(textArea);" +
-                "  var originalText = button.innerText;" +
-                "  button.innerText = '" + copiedText + "';" +
-                "  setTimeout(function() { button.innerText = originalText; }, 2000);" +
-                "}" +
-                "document.addEventListener('click', function(e) {" +
-                "  var target = e.target;" +
-                "  while (target && target.tagName !== 'A') {" +
-                "    target = target.parentNode;" +
-                "  }" +
-                "  if (target && target.href) {" +
-                "    e.preventDefault();" +
-                "    if (window.javaApp) {" +
-                "       window.javaApp.openLink(target.getAttribute('href'));" +
-                "    }" +
-                "  }" +
-                "});" +
-                "document.addEventListener('DOMContentLoaded', function() {" +
-                "  var blocks = document.querySelectorAll('pre');" +
-                "  blocks.forEach(function(block) {" +
-                "    var wrapper = document.createElement('div');" +
-                "    wrapper.className = 'code-wrapper';" +
-                "    block.parentNode.insertBefore(wrapper, block);" +
-                "    wrapper.appendChild(block);" +
-                "    var button = document.createElement('button');" +
-                "    button.className = 'copy-button';" +
-                "    button.innerText = '" + copyText + "';" +
-                "    button.onclick = function() {" +
-                "      var code = block.querySelector('code').innerText;" +
-                "      copyToClipboard(code, button);" +
-                "    };" +
-                "    wrapper.appendChild(button);" +
-                "  });" +
-                "  var blockquotes = document.querySelectorAll('blockquote');" +
-                "  blockquotes.forEach(function(bq) {" +
-                "    var p = bq.querySelector('p');" +
-                "    if (!p) return;" +
-                "    var text = p.textContent.trim();" +
-                "    var match = text.match(/^\\[!(NOTE|TIP|WARNING|CAUTION)\\]/i);" +
-                "    if (match) {" +
-                "      var type = match[1].toLowerCase();" +
-                "      bq.classList.add('markdown-alert', 'markdown-alert-' + type);" +
-                "      var content = p.innerHTML;" +
-                "      var newContent = content.replace(/^\\s*\\[!(NOTE|TIP|WARNING|CAUTION)\\]\\s*(<br\\s*\\/?>)?/i, '');" +
-                "      p.innerHTML = newContent;" +
-                "      var title = document.createElement('div');" +
-                "      title.className = 'markdown-alert-title';" +
-                "      title.innerText = type.charAt(0).toUpperCase() + type.slice(1);" +
-                "      bq.insertBefore(title, p);" +
-                "    }" +
-                "  });" +
-                "});" +
-                "Prism.languages['diff'] = {" +
-                "  'diff-remove': { pattern: /^-.*/m, alias: 'deleted' }," +
-                "  'diff-add': { pattern: /^\\\\+.*/m, alias: 'inserted' }," +
-                "  'diff-orange': { pattern: /^!.*/m, alias: 'important' }," +
-                "  'diff-gray': { pattern: /^#.*/m, alias: 'comment' }" +
-                "};" +
-                "</script>" +
-                "<style>" +
-                "@font-face { font-family: '" + fontFamilyCss + "'; src: url('" + fontUrl + "'); }" +
-                "@font-face { font-family: '" + fontFamilyCss + "'; font-weight: bold; src: url('" + fontBoldUrl + "'); }" +
-                "@font-face { font-family: '" + fontFamilyCss + "'; font-style: italic; src: url('" + fontItalicUrl + "'); }" +
-                "@font-face { font-family: '" + fontFamilyCss + "'; font-weight: bold; font-style: italic; src: url('" + fontBoldItalicUrl + "'); }" +
-                "body { font-family: '" + fontFamilyCss + "', sans-serif; font-size: " + currentEditorFontSize + "px; color: " + textColor + "; background-color: " + bgColor + "; padding: 20px 40px; line-height: 1.6; max-width: 900px; margin: 0 auto; }" +
-                ".note-title { font-size: 1.8em; font-weight: bold; color: " + titleColor + "; margin-bottom: 5px; border-bottom: none; opacity: 0.9; }" +
-                ".title-separator { border: 0; height: 1px; background-image: linear-gradient(to right, " + borderColor + ", rgba(0,0,0,0)); margin-bottom: 20px; }" +
-                "h1, h2, h3 { color: " + linkColor + "; border-bottom: 1px solid " + borderColor + "; padding-bottom: 10px; margin-top: 20px; font-weight: 600; font-family: '" + fontFamilyCss + "', sans-serif; }" +
-                "h1 { font-size: 2.2em; } h2 { font-size: 1.8em; }" +
-                "strong, b { color: " + textColor + "; font-weight: bold; }" +
-                "code { font-family: 'JetBrains Mono', 'Consolas', monospace; font-size: 0.9em; }" +
-                ":not(pre) > code { background-color: " + codeBg + "; padding: 2px 6px; border-radius: 4px; color: " + codeColor + "; }" +
-                ".code-wrapper { position: relative; margin-top: 10px; }" +
-                "pre { background-color: " + codeBg + "; padding: 10px; border-radius: 6px; overflow-x: auto; border: 1px solid " + borderColor + "; margin: 0; }" +
-                "pre code { background-color: transparent; padding: 0; font-family: 'JetBrains Mono', 'Consolas', monospace; }" +
-                "pre[class*=\"language-\"], code[class*=\"language-\"] { background-color: transparent !important; text-shadow: none !important; font-family: 'JetBrains Mono', 'Consolas', monospace !important; }" +
-                ".copy-button { position: absolute; top: 5px; right: 5px; background-color: " + buttonBg + "; color: " + textColor + "; border: none; border-radius: 4px; padding: 4px 8px; font-size: 12px; cursor: pointer; opacity: 0; transition: opacity 0.2s; font-family: '" + fontFamilyCss + "', sans-serif; }" +
-                ".code-wrapper:hover .copy-button { opacity: 1; }" +
-                ".copy-button:hover { background-color: " + buttonHover + "; }" +
-                "blockquote { border-left: 4px solid " + linkColor + "; margin: 0; padding-left: 15px; color: #5c6370; font-style: italic; }" +
-                "a { color: " + linkColor + "; text-decoration: none; }" +
-                "a:hover { text-decoration: underline; }" +
-                "table { border-collapse: collapse; width: 100%; margin: 15px 0; }" +
-                "th, td { border: 1px solid " + borderColor + "; padding: 8px; text-align: left; }" +
-                "th { background-color: " + codeBg + "; color: " + textColor + "; }" +
-                "img { max-width: 100%; border-radius: 5px; }" +
-                "ul, ol { padding-left: 30px; }" +
-                "ul ul, ul ol, ol ul, ol ol { margin-top: 0; margin-bottom: 0; }" +
-                "ul { list-style-type: disc; }" +
-                "ul ul { list-style-type: circle; }" +
-                "ul ul ul { list-style-type: square; }" +
-                "li { margin-bottom: 5px; }" +
-                "li.task-list-item { list-style-type: none; }" +
-                "input[type='checkbox'] { margin-right: 5px; }" +
-                ".markdown-alert { padding: 8px 16px; margin-bottom: 16px; border-left: 4px solid !important; border-radius: 0 4px 4px 0; font-style: normal !important; }" +
-                ".markdown-alert-title { display: flex; align-items: center; font-weight: bold; margin-bottom: 4px; }" +
-                ".markdown-alert-note { background-color: " + alertNoteBg + "; color: " + alertNoteColor + "; border-color: " + alertNoteBorder + " !important; }" +
-                ".markdown-alert-tip { background-color: " + alertTipBg + "; color: " + alertTipColor + "; border-color: " + alertTipBorder + " !important; }" +
-                ".markdown-alert-warning { background-color: " + alertWarnBg + "; color: " + alertWarnColor + "; border-color: " + alertWarnBorder + " !important; }" +
-                ".markdown-alert-caution { background-color: " + alertCautionBg + "; color: " + alertCautionColor + "; border-color: " + alertCautionBorder + " !important; }" +
-                ".token.diff-remove { color: #e06c75 !important; }" +
-                ".token.diff-add { color: #98c379 !important; }" +
-                ".token.diff-orange { color: #d19a66 !important; }" +
-                ".token.diff-gray { color: #5c6370 !important; }" +
-                "</style></head><body style='background-color: " + bgColor + ";'>" +
-                titleHtml +
-                html + "</body></html>";
-        previewArea.getEngine().loadContent(styledHtml);
-        updatePreviewStatus();
+        return baseUrl;
     }
 
+
     private void loadNote(String filename) {
         loadNote(filename, -1);
     }
 
     private void loadNote(String filename, int line) {
         addToRecentFiles(filename);
-        noteService.getNoteDetail(filename).thenAccept(note -> Platform.runLater(() -> {
+        if (showTabs && tabSessions.getTab(filename) != null) {
+            loadNoteContent(filename, line);
+            return;
+        }
+        // The size comes first, so a huge note never goes through the JSON body and the editor
+        NoteService.NoteMeta meta = noteMetas.get(filename);
+        if (meta != null) {
+            openBySize(filename, meta.size, line); // Known from the listing, no request needed
+            return;
+        }
+        noteService.getNoteSize(filename).whenComplete((size, e) -> Platform.runLater(() ->
+                openBySize(filename, size != null ? size : -1, line)));
+    }
+
+    private void openBySize(String filename, long size, int line) {
+        if (size >= largeNoteThresholdKb * 1024L) {
+            openLargeNote(filename, size);
+        } else {
+            loadNoteContent(filename, line);
+        }
+    }
+
+    private void showMainContent() {
+        if (rootSplitPane.getItems().size() > 1) {
+            rootSplitPane.getItems().set(1, mainContent); // Switch to content view inside split pane
+        } else {
+            rootSplitPane.getItems().add(mainContent);
+        }
+    }
+
+    // Shows a note above the large note threshold in the chunked viewer until it is loaded for editing
+    private void openLargeNote(String filename, long size) {
+        if (!showTabs) {
+            LargeNoteViewer viewer = new LargeNoteViewer(noteService, filename, size, path -> loadNoteContent(path, -1));
             if (rootSplitPane.getItems().size() > 1) {
-                rootSplitPane.getItems().set(1, mainContent); // Switch to content view inside split pane
+                rootSplitPane.getItems().set(1, viewer);
             } else {
-                rootSplitPane.getItems().add(mainContent);
+                rootSplitPane.getItems().add(viewer);
+            }
+            return;
+        }
+        for (Tab tab : editorTabPane.getTabs()) {
+            if (tab.getContent() instanceof LargeNoteViewer && ((LargeNoteViewer) tab.getContent()).getPath().equals(filename)) {
+                editorTabPane.getSelectionModel().select(tab);
+                return;
             }
+        }
+        Tab tab = new Tab(filename);
+        tab.setContent(new LargeNoteViewer(noteService, filename, size, path -> {
+            editorTabPane.getTabs().remove(tab);
+            loadNoteContent(path, -1);
+        }));
+        showMainContent();
+        editorTabPane.getTabs().add(tab);
+        editorTabPane.getSelectionModel().select(tab);
+    }
+
+    private void loadNoteContent(String filename, int line) {
+        noteService.getNoteDetail(filename).thenAccept(note -> Platform.runLater(() -> {
+            loadedNoteContent = note.getContent();
+            diskCacheCandidate = loadedNoteContent;
+            showMainContent();
             
             if (showTabs) {
                 // Tab Logic
-                if (openTabs.containsKey(filename)) {
-                    editorTabPane.getSelectionModel().select(openTabs.get(filename));
-                    // If line specified, move to it
-                    if (line > 0) {
-                        VBox panel = tabEditorPanels.get(openTabs.get(filename));
-                        // Need to find the TextArea in the panel... 
-                        // This is getting messy accessing deep children.
-                        // Let's rely on the fact that 'editorArea' is updated to current tab's editor when selected.
-                        // But we just selected it.
-                        // Wait, the listener on selection updates 'editorArea'.
-                        // So we can use 'editorArea' after a small delay or directly find it.
-                        // Let's use a small delay to let the listener fire.
-                        Platform.runLater(() -> moveToLine(editorArea, line));
+                Tab openTab = tabSessions.getTab(filename);
+                if (openTab != null) {
+                    editorTabPane.getSelectionModel().select(openTab); // Restores the editor if the tab was hibernated
+                    NoteEditor openEditor = tabSessions.getEditor(openTab);
+                    if (line > 0 && openEditor != null) {
+                        moveToLine(openEditor, line);
+                    } else if (line > 0) {
+                        pendingLineJumps.put(openTab, line); // Applied by restoreTab once the text is back
                     }
                 } else {
-                    Tab tab = new Tab(note.getFilename());
-                    tab.setUserData(filename); // Store full path
-                    
-                    // Create new editor instance for this tab
-                    TextArea tabEditor = new TextArea(note.getContent());
-                    tabEditor.getStyleClass().add("editor-area");
-                    tabEditor.setWrapText(true);
-                    
-                    // Create Editor Panel for this tab (similar to createEditorPanel but for specific editor)
-                    VBox tabEditorPanel = createEditorPanelForTab(tabEditor, note.getFilename());
-                    tabEditorPanels.put(tab, tabEditorPanel);
-                    
-                    // Sync settings to new editor
-                    double width = editorArea.getWidth(); // Use main editor width as reference
-                    double hPadding = (width - MAX_CONTENT_WIDTH) / 2;
-                    if (hPadding < 70) hPadding = 70;
-                    tabEditor.setStyle("-fx-font-family: '" + currentFontFamily + "'; -fx-font-size: " + currentEditorFontSize + "px; -fx-padding: 20 " + hPadding + " 20 " + hPadding + ";");
-
-                    // Listeners
-                    tabEditor.textProperty().addListener((obs, oldVal, newVal) -> {
-                        if (!tab.getText().endsWith("*")) {
-                            tab.setText(tab.getText() + "*");
-                        }
-                        // If this is the active tab, update preview and stats
-                        if (editorTabPane.getSelectionModel().getSelectedItem() == tab) {
-                             if (currentMode == ViewMode.READING || currentMode == ViewMode.SPLIT) updatePreview(newVal);
-                             updateEditorStats(newVal);
-                        }
-                        autoSaveTimer.playFromStart();
-                    });
-                    
-                    // Handle Tab Close
-                    tab.setOnClosed(e -> {
-                        openTabs.remove(filename);
-                        tabEditorPanels.remove(tab);
-                    });
+                    Tab tab = createNoteTab(filename);
+                    NoteEditor tabEditor = attachTabEditor(tab, note.getContent());
+                    saveBatcher.get(tabEditor).markLoaded(filename);
 
-                    // Create SplitPane for this tab
-                    SplitPane tabSplitPane = new SplitPane();
-                    tabSplitPane.getStyleClass().add("main-split-pane");
-                    VBox.setVgrow(tabSplitPane, Priority.ALWAYS);
-                    
-                    // Create a container for the tab content: Header (ModeSwitcher) + SplitPane
-                    VBox tabContent = new VBox();
-                    tabContent.getStyleClass().add("tab-content");
-                    
-                    // Header container for ModeSwitcher
-                    AnchorPane tabHeader = new AnchorPane();
-                    tabHeader.setMinHeight(40);
-                    tabHeader.setPrefHeight(40);
-                    tabHeader.setMaxHeight(40);
-                    tabHeader.getStyleClass().add("tab-header-pane");
-                    
-                    tabContent.getChildren().addAll(tabHeader, tabSplitPane);
-                    
-                    tab.setContent(tabContent);
-                    
                     editorTabPane.getTabs().add(tab);
-                    editorTabPane.getSelectionModel().select(tab);
-                    openTabs.put(filename, tab);
-                    
-                    // Update global reference when tab changes
-                    editorTabPane.getSelectionModel().selectedItemProperty().addListener((obs, oldTab, newTab) -> {
-                        if (newTab != null) {
-                            // Find the editor for this tab
-                            VBox panel = tabEditorPanels.get(newTab);
-                            
-                            // Find editorArea in panel
-                            if (panel != null && panel.getChildren().size() > 1) {
-                                Node body = panel.getChildren().get(1); // StackPane body
-                                if (body instanceof StackPane) {
-                                    Node stack = ((StackPane) body).getChildren().get(0);
-                                    if (stack instanceof StackPane) {
-                                        Node editor = ((StackPane) stack).getChildren().get(0);
-                                        if (editor instanceof TextArea) {
-                                            editorArea = (TextArea) editor;
-                                            titleField.setText(newTab.getUserData().toString());
-                                            updateEditorStats(editorArea.getText());
-                                            updateTabLayout(newTab); // Ensure layout is correct (moves preview & modeSwitcher)
-                                            return;
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    });
-                    
-                    // Set initial reference
-                    editorArea = tabEditor;
-                    updateTabLayout(tab); // Initial layout
-                    
+                    editorTabPane.getSelectionModel().select(tab); // Makes it the current editor
+                    tabHibernator.opened(tab);
+
                     if (line > 0) {
                         moveToLine(tabEditor, line);
                     }
                 }
             } else {
                 // Classic Mode
+                saveBatcher.flush(); // Keep the edits of the note being replaced
                 titleField.setText(note.getFilename());
                 editorArea.setText(note.getContent());
+                saveBatcher.get(editorArea).markLoaded(note.getFilename());
                 if (line > 0) {
                     moveToLine(editorArea, line);
                 }
             }
             
-            updateLineNumbers();
-            updateEditorStats(note.getContent());
+            updateEditorStats(editorArea);
             if (!showTabs) setViewMode(ViewMode.READING); // Default to Reading mode on load (Classic)
         }));
     }
@@ -1989,20 +2118,10 @@ public class App extends Application {
         dialog.show();
     }
 
-    private void moveToLine(TextArea textArea, int line) {
-        if (line <= 1) return;
-        String[] lines = textArea.getText().split("\n");
-        int offset = 0;
-        for (int i = 0; i < line - 1 && i < lines.length; i++) {
-            offset += lines[i].length() + 1; // +1 for newline
-        }
-        if (offset < textArea.getText().length()) {
-            textArea.positionCaret(offset);
-            // Center the caret
-            // This is a bit hacky in JavaFX TextArea, but selecting helps
-            textArea.selectPositionCaret(offset);
-            textArea.deselect(); 
-        }
+    private void moveToLine(NoteEditor textArea, int line) {
+        if (line <= 1 || line > textArea.getLineCount()) return;
+        // Moving the caret scrolls its line into view
+        textArea.positionCaret(textArea.getLineStart(line - 1));
     }
 
     private void saveNote(boolean silent) {
@@ -2010,34 +2129,42 @@ public class App extends Application {
         // If tabs enabled, use current tab's data
         if (showTabs) {
             Tab currentTab = editorTabPane.getSelectionModel().getSelectedItem();
-            if (currentTab != null) {
-                title = (String) currentTab.getUserData();
-                // Remove * from tab title
-                String tabTitle = currentTab.getText();
-                if (tabTitle.endsWith("*")) {
-                    currentTab.setText(tabTitle.substring(0, tabTitle.length() - 1));
-                }
+            if (currentTab != null && tabSessions.get(currentTab) == null) {
+                // A large note viewer, commit or task tab: nothing of its own to save, but the note tabs may be dirty
+                saveBatcher.flush();
+                return;
+            }
+            if (currentTab != null && !tabSessions.get(currentTab).isAttached()) {
+                // Still being restored, so editorArea belongs to another tab; the restored text is saved already
+                saveBatcher.flush();
+                return;
             }
+            if (currentTab != null) title = (String) currentTab.getUserData();
         }
-        
-        if (title.isEmpty()) {
+
+        if (title == null || title.isEmpty()) {
             if (!silent) showAlert(LanguageManager.get("dialog.error"), LanguageManager.get("dialog.save_title_empty"));
             return;
         }
-        Note note = new Note(title, editorArea.getText());
-        noteService.saveNote(note).thenRun(() -> Platform.runLater(() -> {
-            refreshNoteList();
-            isSynced = false; // Mark as unsaved/unsynced
-            statusLabel.setText(LanguageManager.get("status.saved_unsynced"));
-            if (!silent) showAlert(LanguageManager.get("dialog.success"), LanguageManager.get("dialog.note_saved"));
-        })).exceptionally(e -> {
+        // Saves every dirty tab, not just the current one
+        saveBatcher.markDirty(editorArea);
+        saveBatcher.flush().whenComplete((v, e) -> {
+            if (silent) return;
             Platform.runLater(() -> {
-                statusLabel.setText(LanguageManager.get("status.save_failed"));
-                if (!silent) showAlert(LanguageManager.get("dialog.error"), "Kaydetme başarısız: " + e.getMessage());
+                if (e == null) showAlert(LanguageManager.get("dialog.success"), LanguageManager.get("dialog.note_saved"));
+                else showAlert(LanguageManager.get("dialog.error"), "Kaydetme başarısız: " + e.getMessage());
             });
-            return null;
         });
     }
+
+    private void onNoteSaved(NoteSaveState state, NoteSaveState.Save save, boolean created) {
+        Tab tab = showTabs ? tabSessions.getTab(save.getPath()) : null;
+        if (tab != null) updateUnsavedMarker(tab, state);
+        // The tree only changes when the save created a note
+        if (created) refreshNoteListUnlessStreamed();
+        isSynced = false; // Mark as unsaved/unsynced
+        statusLabel.setText(LanguageManager.get("status.saved_unsynced"));
+    }
     
     private void saveNote() {
         saveNote(false);
@@ -2056,30 +2183,20 @@ public class App extends Application {
         }
 
         noteService.deleteNote(path).thenRun(() -> Platform.runLater(() -> {
-            refreshNoteList();
+            refreshNoteListUnlessStreamed();
             
             if (showTabs) {
                 List<String> tabsToClose = new ArrayList<>();
-                for (String openPath : openTabs.keySet()) {
+                for (String openPath : tabSessions.getPaths()) {
                     if (openPath.equals(path) || openPath.startsWith(path + "/")) {
                         tabsToClose.add(openPath);
                     }
                 }
                 
                 for (String closePath : tabsToClose) {
-                    Tab tab = openTabs.get(closePath);
-                    if (tab != null) {
-                        editorTabPane.getTabs().remove(tab);
-                        openTabs.remove(closePath);
-                        tabEditorPanels.remove(tab);
-                    }
-                }
-                
-                if (editorTabPane.getTabs().isEmpty()) {
-                    if (rootSplitPane.getItems().size() > 1) {
-                        rootSplitPane.getItems().set(1, emptyState);
-                    }
+                    closeTab(tabSessions.getTab(closePath), false); // Saving would bring the note back
                 }
+                closeLargeNoteTabs(path);
             } else {
                 String currentTitle = titleField.getText();
                 if (currentTitle != null) {
@@ -2183,7 +2300,7 @@ public class App extends Application {
             
             if (file != null) {
                 try {
-                    String html = renderer.render(parser.parse(note.getContent()));
+                    String html = markdownEngine.toHtml(note.getContent());
                     // Add basic styling for PDF
                     String styledHtml = "<html><head><style>" +
                         "body { font-family: 'Arial', sans-serif; font-size: 12pt; line-height: 1.5; }" +
@@ -2195,7 +2312,7 @@ public class App extends Application {
                         "th { background-color: #f2f2f2; }" +
                         "</style></head><body>" + html + "</body></html>";
 
-                    PdfConverterExtension.exportToPdf(file.getAbsolutePath(), styledHtml, "", parser.getOptions());
+                    PdfConverterExtension.exportToPdf(file.getAbsolutePath(), styledHtml, "", markdownEngine.getParserOptions());
                     showNotification(LanguageManager.get("dialog.success"), LanguageManager.get("dialog.pdf_success"), NotificationType.SUCCESS, LanguageManager.get("dialog.pdf_open"), () -> getHostServices().showDocument(file.getAbsolutePath()));
                 } catch (Exception e) {
                     showAlert(LanguageManager.get("dialog.error"), java.text.MessageFormat.format(LanguageManager.get("dialog.pdf_error"), e.getMessage()));
@@ -2244,6 +2361,7 @@ public class App extends Application {
         viewModeLabel.getStyleClass().add("status-label");
 
         previewStatusLabel = new Label("");
+        previewTimingsTooltip = new Tooltip();
         previewStatusLabel.getStyleClass().add("status-label"); // Use status-label style
 
         editorStatsLabel = new Label("0 " + LanguageManager.get("status.words") + "  •  0 " + LanguageManager.get("status.chars"));
@@ -2400,7 +2518,7 @@ public class App extends Application {
                              : "https://github.com";
 
             noteService.syncNotes().thenRun(() -> Platform.runLater(() -> {
-                refreshNoteList();
+                refreshNoteList(); // The notes are committed now
                 isSynced = true; // Mark as synced
                 statusLabel.setText(LanguageManager.get("status.ready"));
                 syncSpinner.setVisible(false);
@@ -2439,7 +2557,7 @@ public class App extends Application {
                          Platform.runLater(() -> {
                  // Config fetch failed, try sync anyway
                  noteService.syncNotes().thenRun(() -> Platform.runLater(() -> {
-                    refreshNoteList();
+                    refreshNoteList(); // The notes are committed now
                     isSynced = true; // Mark as synced
                     statusLabel.setText(LanguageManager.get("status.ready"));
                     syncSpinner.setVisible(false);
@@ -2481,8 +2599,14 @@ public class App extends Application {
 
     private void refreshNoteList() {
         logger.info("Refreshing note list...");
-        noteService.getNotes().thenAccept(notes -> Platform.runLater(() -> {
-            logger.info("Notes received: " + (notes != null ? notes.size() : "null"));
+        noteService.getNoteMetas().thenAccept(metas -> Platform.runLater(() -> {
+            logger.info("Notes received: " + metas.size());
+            List<String> notes = new ArrayList<>(metas.size());
+            noteMetas.clear();
+            for (NoteService.NoteMeta meta : metas) {
+                notes.add(meta.path);
+                noteMetas.put(meta.path, meta);
+            }
             allNotes = notes; // Cache for search
             buildTreeFromList(notes);
         })).exceptionally(e -> {
@@ -2497,6 +2621,171 @@ public class App extends Application {
         });
     }
 
+    // After a change made through the app; the change stream brings the same change to the tree
+    private void refreshNoteListUnlessStreamed() {
+        if (noteEvents == null || !noteEvents.isConnected()) refreshNoteList();
+    }
+
+    // Applies changes pushed by the backend, made by this app or on disk, to the note list and
+    // tree, the open notes and the recent files
+    private void applyNoteEvents(List<NoteService.NoteEvent> events) {
+        Set<String> notes = new LinkedHashSet<>(allNotes);
+        boolean filtered = searchField != null && !searchField.getText().isEmpty();
+        for (NoteService.NoteEvent event : events) {
+            if ("reset".equals(event.type)) {
+                refreshNoteList(); // Events were missed
+                continue;
+            }
+            if (event.path == null) continue;
+            switch (event.type) {
+                case "created":
+                    if (notes.add(event.path) && !filtered) noteTree.add(event.path);
+                    noteMetas.remove(event.path);
+                    break;
+                case "modified":
+                    noteMetas.remove(event.path); // Size and title may have changed
+                    reloadChangedNote(event.path, event.hash);
+                    break;
+                case "deleted":
+                    notes.removeIf(note -> isUnder(note, event.path));
+                    noteMetas.keySet().removeIf(note -> isUnder(note, event.path));
+                    if (!filtered) noteTree.remove(event.path);
+                    recentFiles.removeIf(note -> isUnder(note, event.path));
+                    closeDeletedTabs(event.path);
+                    break;
+                case "moved":
+                    if (event.oldPath == null) continue;
+                    List<String> moved = new ArrayList<>();
+                    for (String note : notes) {
+                        if (isUnder(note, event.oldPath)) moved.add(note);
+                    }
+                    notes.removeAll(moved);
+                    noteMetas.keySet().removeAll(moved); // Not tracked under the new path yet
+                    if (!filtered) noteTree.move(event.oldPath, event.path); // No-op if the drop already moved it
+                    for (String note : moved) {
+                        String target = event.path + note.substring(event.oldPath.length());
+                        notes.add(target);
+                        if (!filtered) noteTree.add(target);
+                    }
+                    if (!filtered) noteTree.remove(event.oldPath);
+                    recentFiles.replaceAll(note -> isUnder(note, event.oldPath) ? event.path + note.substring(event.oldPath.length()) : note);
+                    retargetMovedNotes(event.oldPath, event.path);
+                    break;
+                default:
+                    break;
+            }
+        }
+        allNotes = new ArrayList<>(notes);
+        if (filtered) filterNotes(searchField.getText());
+    }
+
+    private static boolean isUnder(String path, String base) {
+        return path.equals(base) || path.startsWith(base + "/");
+    }
+
+    // Tabs of a note deleted outside the app close unless they hold edits; saving those brings the note back
+    private void closeDeletedTabs(String path) {
+        if (!showTabs) return;
+        for (String openPath : new ArrayList<>(tabSessions.getPaths())) {
+            if (!isUnder(openPath, path)) continue;
+            Tab tab = tabSessions.getTab(openPath);
+            NoteEditor tabEditor = tabSessions.getEditor(tab);
+            NoteSaveState state = tabEditor != null ? saveBatcher.get(tabEditor) : null;
+            boolean unsaved = state != null ? state.hasUnsavedEdits() || state.isSaving() : tabHibernator.hasUnsaved(tab);
+            if (!unsaved) closeTab(tab, false);
+        }
+        closeLargeNoteTabs(path);
+    }
+
+    // Viewer tabs have no TabSessionManager entry and nothing to save, so they are just removed
+    private void closeLargeNoteTabs(String path) {
+        boolean removed = editorTabPane.getTabs().removeIf(tab ->
+                tab.getContent() instanceof LargeNoteViewer && isUnder(((LargeNoteViewer) tab.getContent()).getPath(), path));
+        if (removed && editorTabPane.getTabs().isEmpty() && rootSplitPane.getItems().size() > 1) {
+            rootSplitPane.getItems().set(1, emptyState);
+        }
+    }
+
+    // Open notes follow a move, so their next save goes to the new path
+    private void retargetMovedNotes(String oldPath, String newPath) {
+        if (showTabs) {
+            for (String openPath : new ArrayList<>(tabSessions.getPaths())) {
+                if (!isUnder(openPath, oldPath)) continue;
+                String target = newPath + openPath.substring(oldPath.length());
+                Tab tab = tabSessions.getTab(openPath);
+                tabSessions.rename(tab, target);
+                tabHibernator.renamed(tab, target);
+                NoteEditor tabEditor = tabSessions.getEditor(tab);
+                if (tabEditor != null) saveBatcher.get(tabEditor).renamed(target);
+            }
+        } else {
+            NoteSaveState state = saveBatcher.get(editorArea);
+            String current = titleField.getText();
+            if (current != null && isUnder(current, oldPath)) {
+                String target = newPath + current.substring(oldPath.length());
+                titleField.setText(target);
+                if (current.equals(state.getPath())) state.renamed(target);
+            }
+        }
+        for (Tab tab : editorTabPane.getTabs()) {
+            if (!(tab.getContent() instanceof LargeNoteViewer)) continue;
+            LargeNoteViewer viewer = (LargeNoteViewer) tab.getContent();
+            if (!isUnder(viewer.getPath(), oldPath)) continue;
+            viewer.renamed(newPath + viewer.getPath().substring(oldPath.length()));
+            tab.setText(viewer.getPath());
+        }
+        if (rootSplitPane.getItems().size() > 1 && rootSplitPane.getItems().get(1) instanceof LargeNoteViewer) {
+            LargeNoteViewer viewer = (LargeNoteViewer) rootSplitPane.getItems().get(1);
+            if (isUnder(viewer.getPath(), oldPath)) viewer.renamed(newPath + viewer.getPath().substring(oldPath.length()));
+        }
+    }
+
+    // Shows the new content of a note changed outside this editor, unless the editor has edits of its own
+    private void reloadChangedNote(String path, String hash) {
+        for (LargeNoteViewer viewer : largeNoteViewers()) {
+            if (!viewer.getPath().equals(path)) continue;
+            noteService.getNoteSize(path).thenAccept(size -> Platform.runLater(() -> viewer.reload(size)));
+        }
+
+        Tab tab = showTabs ? tabSessions.getTab(path) : null;
+        NoteEditor editor = showTabs ? (tab != null ? tabSessions.getEditor(tab) : null) : editorArea;
+        NoteSaveState state = editor != null ? saveBatcher.get(editor) : null;
+        if (state == null || !isUnchangedCopy(state, path) || hash == null || hash.equals(state.getSavedHash())) return;
+        noteService.getNoteDetail(path).thenAccept(note -> Platform.runLater(() -> {
+            if (!isUnchangedCopy(state, path)) return; // Edited meanwhile
+            if (tab != null && tabSessions.getEditor(tab) != editor) return; // Hibernated meanwhile
+            int caret = editor.getCaretPosition();
+            double scrollTop = editor.getScrollTop();
+            editor.setText(note.getContent());
+            state.markLoaded(path);
+            if (tab != null) updateUnsavedMarker(tab, state);
+            editor.positionCaret(Math.min(caret, editor.getLength()));
+            editor.setScrollTop(scrollTop);
+            if (editor == editorArea) {
+                loadedNoteContent = note.getContent();
+                diskCacheCandidate = loadedNoteContent;
+            }
+        })).exceptionally(e -> {
+            logger.log(Level.WARNING, "Could not reload changed note " + path, e);
+            return null;
+        });
+    }
+
+    private static boolean isUnchangedCopy(NoteSaveState state, String path) {
+        return path.equals(state.getPath()) && !state.isSaving() && !state.hasUnsavedEdits();
+    }
+
+    private List<LargeNoteViewer> largeNoteViewers() {
+        List<LargeNoteViewer> viewers = new ArrayList<>();
+        for (Tab tab : editorTabPane.getTabs()) {
+            if (tab.getContent() instanceof LargeNoteViewer) viewers.add((LargeNoteViewer) tab.getContent());
+        }
+        if (rootSplitPane.getItems().size() > 1 && rootSplitPane.getItems().get(1) instanceof LargeNoteViewer) {
+            viewers.add((LargeNoteViewer) rootSplitPane.getItems().get(1));
+        }
+        return viewers;
+    }
+
     private void clearEditor() {
         if (rootSplitPane.getItems().size() > 1) {
             rootSplitPane.getItems().set(1, mainContent); // Switch to content view inside split pane
@@ -2505,9 +2794,8 @@ public class App extends Application {
         }
         titleField.clear();
         editorArea.clear();
-        updateLineNumbers();
         noteTreeView.getSelectionModel().clearSelection();
-        updateEditorStats("");
+        updateEditorStats(editorArea);
         setViewMode(ViewMode.WRITING); // Default to Writing mode for new note
     }
 
@@ -2515,16 +2803,10 @@ public class App extends Application {
         VBox container = new VBox();
         container.getStyleClass().add("editor-panel");
 
-        lineNumbers = new TextArea("1");
-        lineNumbers.setEditable(false);
-        lineNumbers.getStyleClass().add("line-numbers");
-        lineNumbers.setWrapText(false);
+        lineNumbers = new LineNumberGutter(editorArea);
         lineNumbers.setPrefWidth(50);
         lineNumbers.setMinWidth(50);
         lineNumbers.setMaxWidth(50);
-        // Hide scrollbar for line numbers
-        lineNumbers.setStyle("-fx-overflow-x: hidden; -fx-overflow-y: hidden;");
-        lineNumbers.setMouseTransparent(true); // Allow clicks to pass through to editor
 
         // Use StackPane to overlay line numbers (z-index style)
         StackPane editorStack = new StackPane();
@@ -2541,34 +2823,15 @@ public class App extends Application {
         return container;
     }
 
-    private VBox createEditorPanelForTab(TextArea tabEditor, String filename) {
+    private VBox createEditorPanelForTab(NoteEditor tabEditor, String filename) {
         setupEditorBehavior(tabEditor);
         VBox container = new VBox();
         container.getStyleClass().add("editor-panel");
 
-        TextArea tabLineNumbers = new TextArea("1");
-        tabLineNumbers.setEditable(false);
-        tabLineNumbers.getStyleClass().add("line-numbers");
-        tabLineNumbers.setWrapText(false);
+        LineNumberGutter tabLineNumbers = new LineNumberGutter(tabEditor);
         tabLineNumbers.setPrefWidth(50);
         tabLineNumbers.setMinWidth(50);
         tabLineNumbers.setMaxWidth(50);
-        tabLineNumbers.setStyle("-fx-overflow-x: hidden; -fx-overflow-y: hidden;");
-        tabLineNumbers.setMouseTransparent(true);
-
-        // Sync line numbers
-        tabEditor.scrollTopProperty().addListener((obs, oldVal, newVal) -> tabLineNumbers.setScrollTop(newVal.doubleValue()));
-        tabEditor.textProperty().addListener((obs, oldVal, newVal) -> {
-             int lines = newVal.split("\n", -1).length;
-             StringBuilder sb = new StringBuilder();
-             for (int i = 1; i <= lines; i++) sb.append(i).append("\n");
-             tabLineNumbers.setText(sb.toString());
-        });
-        // Initial line numbers
-        int lines = tabEditor.getText().split("\n", -1).length;
-        StringBuilder sb = new StringBuilder();
-        for (int i = 1; i <= lines; i++) sb.append(i).append("\n");
-        tabLineNumbers.setText(sb.toString());
 
         StackPane editorStack = new StackPane();
         editorStack.getChildren().addAll(tabEditor, tabLineNumbers);
@@ -2589,19 +2852,6 @@ public class App extends Application {
         return container;
     }
 
-    private void updateLineNumbers() {
-        if (lineNumbers == null || editorArea == null) return;
-        String text = editorArea.getText();
-        if (text == null) text = "";
-        int lines = text.split("\n", -1).length;
-        StringBuilder sb = new StringBuilder();
-        for (int i = 1; i <= lines; i++) {
-            sb.append(i).append("\n");
-        }
-        lineNumbers.setText(sb.toString());
-        lineNumbers.setScrollTop(editorArea.getScrollTop());
-    }
-
     private VBox createPreviewPanel() {
         VBox container = new VBox();
         container.getStyleClass().add("preview-panel");
@@ -2614,19 +2864,36 @@ public class App extends Application {
         return container;
     }
 
-    private void updateEditorStats(String text) {
-        if (editorStatsLabel == null) return;
-        String safeText = text == null ? "" : text;
-        String trimmed = safeText.trim();
-        int wordCount = trimmed.isEmpty() ? 0 : trimmed.split("\\s+").length;
-        int charCount = safeText.length();
-        editorStatsLabel.setText(wordCount + " kelime  •  " + charCount + " karakter");
+    private void updateEditorStats(NoteEditor editor) {
+        if (editorStatsLabel == null || editor == null) return;
+        TextStatistics stats = editor.getStatistics();
+        String text = stats.getWords() + " " + LanguageManager.get("status.words") + "  •  "
+                + stats.getCharacters() + " " + LanguageManager.get("status.chars");
+        if (stats.getReadingMinutes() > 0) {
+            text += "  •  " + java.text.MessageFormat.format(LanguageManager.get("status.reading_time"), stats.getReadingMinutes());
+        }
+        IndexRange selection = editor.getSelection();
+        if (selection.getLength() > 0) {
+            // Only the selected range is scanned
+            int selectedWords = TextStatistics.countWords(editor.getDocument(), selection.getStart(), selection.getEnd());
+            text = java.text.MessageFormat.format(LanguageManager.get("status.selection"), selectedWords, selection.getLength()) + "  •  " + text;
+        }
+        editorStatsLabel.setText(text);
     }
 
     private void updatePreviewStatus() {
         if (previewStatusLabel == null) return;
         if (currentMode == ViewMode.READING || currentMode == ViewMode.SPLIT) {
-            previewStatusLabel.setText(LanguageManager.get("status.live") + " • " + LocalTime.now().format(TIME_FORMATTER));
+            String status = LanguageManager.get("status.live") + " • " + LocalTime.now().format(TIME_FORMATTER);
+            long total = previewMetrics.getLast(PreviewMetrics.Stage.TOTAL);
+            if (showPreviewTimings && total >= 0) {
+                status += String.format(" • %.0f ms", PreviewMetrics.millis(total));
+                previewTimingsTooltip.setText(previewMetrics.summary());
+                previewStatusLabel.setTooltip(previewTimingsTooltip);
+            } else {
+                previewStatusLabel.setTooltip(null);
+            }
+            previewStatusLabel.setText(status);
         } else {
             previewStatusLabel.setText(LanguageManager.get("status.off"));
         }
@@ -2791,7 +3058,10 @@ public class App extends Application {
                     String newPath = targetFolderPath.isEmpty() ? fileName : targetFolderPath + "/" + fileName;
 
                     if (!sourcePath.equals(newPath)) {
-                        noteService.moveNote(sourcePath, newPath).thenRun(() -> Platform.runLater(() -> refreshNoteList()));
+                        noteService.moveNote(sourcePath, newPath).thenRun(() -> Platform.runLater(() -> {
+                            noteTree.move(sourcePath, newPath); // Keeps the moved folder's items as they are
+                            refreshNoteListUnlessStreamed();
+                        }));
                         success = true;
                     }
                 }
@@ -2839,6 +3109,11 @@ public class App extends Application {
                     
                     contextMenu.setOnShowing(e -> {
                         String path = buildPath(getTreeItem());
+                        NoteService.NoteMeta meta = noteMetas.get(path);
+                        if (meta != null) {
+                            copyPermalinkItem.setVisible(meta.tracked); // Known from the listing
+                            return;
+                        }
                         noteService.isNoteTracked(path).thenAccept(tracked -> {
                             Platform.runLater(() -> copyPermalinkItem.setVisible(tracked));
                         });
@@ -2986,6 +3261,30 @@ public class App extends Application {
 
     @Override
     public void stop() throws Exception {
+        if (noteEvents != null) {
+            noteEvents.stop();
+        }
+        if (saveBatcher != null) {
+            if (showTabs) tabSessions.saveSession(SESSION_FILE);
+            for (TabHibernator.State state : tabHibernator.unsaved()) {
+                saveBatcher.saveDetached(state.getPath(), state.getContent());
+            }
+            tabHibernator.dispose();
+            // One request for all dirty tabs; wait for it, but not forever
+            try {
+                saveBatcher.flush().get(5, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Saving notes on exit failed", e);
+            }
+        }
+        if (renderPipeline != null) {
+            renderPipeline.shutdown();
+        }
+        if (renderedHtmlCache != null) {
+            logger.info("Preview cache: " + renderedHtmlCache.getStats());
+            logger.info("Preview timings:\n" + previewMetrics.summary());
+            renderedHtmlCache.shutdown();
+        }
         if (backendManager != null) {
             backendManager.stopBackend();
         }
@@ -2993,7 +3292,7 @@ public class App extends Application {
     }
 
     private void requestClose(Stage stage) {
-        if (isSynced) {
+        if (isSynced && !saveBatcher.hasPendingSaves()) {
             stage.close();
         } else {
             showExitConfirmation(stage);
@@ -3083,7 +3382,8 @@ public class App extends Application {
         if (result[0] == 1) { // Exit
             ownerStage.close();
         } else if (result[0] == 2) { // Sync and Exit
-            syncNotes(() -> ownerStage.close());
+            // Sync what the open tabs have, not what was last autosaved
+            saveBatcher.flush().whenComplete((v, e) -> Platform.runLater(() -> syncNotes(() -> ownerStage.close())));
         }
     }
 
@@ -3400,12 +3700,12 @@ public class App extends Application {
         // Restore status bar state
         updatePreviewStatus();
         if (editorArea != null) {
-            updateEditorStats(editorArea.getText());
+            updateEditorStats(editorArea);
         }
         updateGitStatus();
     }
 
-    private void handleImagePaste(javafx.scene.image.Image image, TextArea textArea) {
+    private void handleImagePaste(javafx.scene.image.Image image, NoteEditor textArea) {
         try {
             // Create temp file
             File tempFile = File.createTempFile("paste", ".png");
@@ -3428,7 +3728,7 @@ public class App extends Application {
         handleImageUpload(file, editorArea);
     }
 
-    private void handleImageUpload(File file, TextArea targetEditor) {
+    private void handleImageUpload(File file, NoteEditor targetEditor) {
         // Insert placeholder
         int caret = targetEditor.getCaretPosition();
         String placeholder = "![Uploading " + file.getName() + "...]()";
@@ -3437,7 +3737,6 @@ public class App extends Application {
         // Upload
         noteService.uploadImage(file).thenAccept(response -> Platform.runLater(() -> {
             // Replace placeholder with actual image tag
-            String text = targetEditor.getText();
             String replacement;
             
             String dimensions = "";
@@ -3476,52 +3775,16 @@ public class App extends Application {
         });
     }
 
-    private void setupDragAndDrop(TextArea area) {
+    private void setupDragAndDrop(NoteEditor area) {
         area.setOnDragOver(event -> {
             if (event.getDragboard().hasFiles() || event.getDragboard().hasString()) {
                 event.acceptTransferModes(TransferMode.COPY_OR_MOVE);
                 
                 // Move caret to mouse position
-                javafx.scene.control.skin.TextAreaSkin skin = (javafx.scene.control.skin.TextAreaSkin) area.getSkin();
-                if (skin != null) {
-                    javafx.geometry.Point2D screenPoint = new javafx.geometry.Point2D(event.getScreenX(), event.getScreenY());
-                    javafx.geometry.Point2D localPoint = area.screenToLocal(screenPoint);
-                    
-                    // Hit testing to find character index
-                    // Since TextAreaSkin doesn't expose hitTest directly in a public API easily accessible in all JavaFX versions without reflection or internal usage,
-                    // we might need a workaround or use the public API if available.
-                    // However, for standard TextArea, we can try to approximate or use internal API if we are sure about the environment.
-                    // But a safer way in standard JavaFX 9+ is using the hitTest method of the skin if we cast it.
-                    // Actually, TextAreaSkin has getCharacterIndexAtPoint() but it might be protected or package private depending on version.
-                    // Let's try to use the positionCaret method which is available on TextArea but it doesn't take coordinates.
-                    
-                    // Workaround: We can't easily set caret by coordinates in standard JavaFX TextArea API.
-                    // But we can try to use the skin's hit info if we can access it.
-                    // Note: getCharacterIndexAtPoint is not public in TextAreaSkin.
-                    
-                    // However, we can try to simulate a mouse click or use reflection.
-                    // Reflection is risky.
-                    
-                    // Let's try a simpler approach:
-                    // We can't easily move the caret.
-                    // Wait, `positionCaret` sets the index. We need index from point.
-                    // `skin.getHitInfo(localPoint).getCharIndex()` might work if `getHitInfo` is available.
-                    // It seems `getHitInfo` is not public.
-                    
-                    // Okay, let's look at `InputMethodRequests`.
-                    
-                    // Actually, there is a trick. We can fire a MouseEvent.
-                    // But we are in a DragEvent.
-                    
-                    // Let's try to use reflection to access `getCharacterIndexAtPoint` from `TextAreaSkin`.
-                    try {
-                        java.lang.reflect.Method m = skin.getClass().getDeclaredMethod("getIndex", double.class, double.class);
-                        m.setAccessible(true);
-                        int index = (int) m.invoke(skin, localPoint.getX(), localPoint.getY());
-                        area.positionCaret(index);
-                    } catch (Exception e) {
-                        // Fallback or ignore
-                    }
+                javafx.geometry.Point2D localPoint = area.screenToLocal(event.getScreenX(), event.getScreenY());
+                if (localPoint != null) {
+                    int index = area.getIndexAt(localPoint.getX(), localPoint.getY());
+                    if (index >= 0) area.positionCaret(index);
                 }
             }
             event.consume();
@@ -3605,6 +3868,25 @@ public class App extends Application {
                 }
             });
         }
+
+        // Called from the preview page's scroll handler with the source line at its top
+        public void previewScrolled(double line) {
+            Platform.runLater(() -> scrollSync.onPreviewScrolled(line));
+        }
+
+        // Double click in the preview jumps to the source line in the editor
+        public void jumpToLine(int line) {
+            Platform.runLater(() -> jumpToSourceLine(line));
+        }
+    }
+
+    private void jumpToSourceLine(int line) {
+        if (currentMode == ViewMode.READING) {
+            setViewMode(ViewMode.SPLIT);
+        }
+        int offset = scrollSync.offsetOfLine(line);
+        editorArea.positionCaret(offset);
+        editorArea.requestFocus();
     }
 
     private void handleLocalLink(String path) {
@@ -3621,8 +3903,8 @@ public class App extends Application {
         
         if (isNote) {
             if (showTabs) {
-                if (openTabs.containsKey(path)) {
-                    editorTabPane.getSelectionModel().select(openTabs.get(path));
+                if (tabSessions.getTab(path) != null) {
+                    editorTabPane.getSelectionModel().select(tabSessions.getTab(path));
                 } else {
                     loadNote(path);
                 }
@@ -3637,7 +3919,7 @@ public class App extends Application {
 
     private void selectInTree(String path) {
         if (noteTreeView.getRoot() == null) return;
-        TreeItem<String> found = findTreeItem(noteTreeView.getRoot(), path);
+        TreeItem<String> found = noteTree.reveal(path);
         if (found != null) {
             noteTreeView.getSelectionModel().select(found);
             int row = noteTreeView.getRow(found);
@@ -3646,19 +3928,6 @@ public class App extends Application {
         }
     }
     
-    private TreeItem<String> findTreeItem(TreeItem<String> root, String path) {
-        // Check current item
-        // Note: buildPath might return empty string for root or "root" depending on implementation
-        // My buildPath stops before root.
-        if (root.getParent() != null && buildPath(root).equals(path)) return root;
-        
-        for (TreeItem<String> child : root.getChildren()) {
-            TreeItem<String> result = findTreeItem(child, path);
-            if (result != null) return result;
-        }
-        return null;
-    }
-
     private void createNewNote() {
         TreeItem<String> selectedItem = noteTreeView.getSelectionModel().getSelectedItem();
         String initialPath = "";
@@ -1,6 +1,13 @@
 package com.lambdanotes;
 
 public class AppConfig {
+    public static final int DEFAULT_LARGE_NOTE_PREVIEW_LINES = 5000;
+    public static final int DEFAULT_UNDO_HISTORY_STEPS = 10000;
+    public static final int DEFAULT_UNDO_MEMORY_KB = 1024;
+    public static final int DEFAULT_MAX_LIVE_TABS = 8;
+    public static final int DEFAULT_TAB_HIBERNATE_MINUTES = 15;
+    public static final int DEFAULT_LARGE_NOTE_THRESHOLD_KB = 2048;
+
     private String repoUrl;
     private String token;
     private String username;
@@ -12,6 +19,14 @@ public class AppConfig {
     private boolean showTabs = false; // Default show tabs
     private boolean showTitleInPreview = true; // Default show title in preview
     private String language = "en"; // Default language
+    private int largeNotePreviewLines = DEFAULT_LARGE_NOTE_PREVIEW_LINES; // Notes with more lines get the windowed preview
+    private boolean showPreviewTimings = false; // Default hide render time in status bar
+    private boolean codeHighlighting = false; // Default leave code highlighting to Prism in the preview
+    private int undoHistorySteps = DEFAULT_UNDO_HISTORY_STEPS; // Undo steps kept per open note
+    private int undoMemoryKb = DEFAULT_UNDO_MEMORY_KB; // Memory per note before older undo steps are compressed and spilled to disk
+    private int maxLiveTabs = DEFAULT_MAX_LIVE_TABS; // Tabs that keep their editor; older ones are hibernated
+    private int tabHibernateMinutes = DEFAULT_TAB_HIBERNATE_MINUTES; // Idle time before a background tab is hibernated
+    private int largeNoteThresholdKb = DEFAULT_LARGE_NOTE_THRESHOLD_KB; // Notes from this size on open in the chunked read-only viewer
 
     public AppConfig(String repoUrl, String token, String username, String email) {
         this.repoUrl = repoUrl;
@@ -50,4 +65,30 @@ public class AppConfig {
 
     public String getLanguage() { return language; }
     public void setLanguage(String language) { this.language = language; }
+
+    // Older config files don't have this field, fall back to the default
+    public int getLargeNotePreviewLines() { return largeNotePreviewLines > 0 ? largeNotePreviewLines : DEFAULT_LARGE_NOTE_PREVIEW_LINES; }
+    public void setLargeNotePreviewLines(int largeNotePreviewLines) { this.largeNotePreviewLines = largeNotePreviewLines; }
+
+    public boolean isShowPreviewTimings() { return showPreviewTimings; }
+    public void setShowPreviewTimings(boolean showPreviewTimings) { this.showPreviewTimings = showPreviewTimings; }
+
+    public boolean isCodeHighlighting() { return codeHighlighting; }
+    public void setCodeHighlighting(boolean codeHighlighting) { this.codeHighlighting = codeHighlighting; }
+
+    // Older config files don't have these fields, fall back to the defaults
+    public int getUndoHistorySteps() { return undoHistorySteps > 0 ? undoHistorySteps : DEFAULT_UNDO_HISTORY_STEPS; }
+    public void setUndoHistorySteps(int undoHistorySteps) { this.undoHistorySteps = undoHistorySteps; }
+
+    public int getUndoMemoryKb() { return undoMemoryKb > 0 ? undoMemoryKb : DEFAULT_UNDO_MEMORY_KB; }
+    public void setUndoMemoryKb(int undoMemoryKb) { this.undoMemoryKb = undoMemoryKb; }
+
+    public int getMaxLiveTabs() { return maxLiveTabs > 0 ? maxLiveTabs : DEFAULT_MAX_LIVE_TABS; }
+    public void setMaxLiveTabs(int maxLiveTabs) { this.maxLiveTabs = maxLiveTabs; }
+
+    public int getTabHibernateMinutes() { return tabHibernateMinutes > 0 ? tabHibernateMinutes : DEFAULT_TAB_HIBERNATE_MINUTES; }
+    public void setTabHibernateMinutes(int tabHibernateMinutes) { this.tabHibernateMinutes = tabHibernateMinutes; }
+
+    public int getLargeNoteThresholdKb() { return largeNoteThresholdKb > 0 ? largeNoteThresholdKb : DEFAULT_LARGE_NOTE_THRESHOLD_KB; }
+    public void setLargeNoteThresholdKb(int largeNoteThresholdKb) { this.largeNoteThresholdKb = largeNoteThresholdKb; }
 }
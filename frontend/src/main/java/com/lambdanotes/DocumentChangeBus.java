@@ -0,0 +1,164 @@
+package com.lambdanotes;
+
+import com.lambdanotes.utils.ChangeBatch;
+import com.lambdanotes.utils.TextChange;
+import javafx.animation.Animation;
+import javafx.animation.AnimationTimer;
+import javafx.animation.PauseTransition;
+import javafx.util.Duration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects the edits of one {@link NoteEditor} and hands them out once per frame, so a paste or
+ * a held key costs one notification instead of one per character. Each subscriber adds its own
+ * {@link Policy} on top and receives everything that changed since its last call as one
+ * {@link ChangeBatch}.
+ */
+public class DocumentChangeBus {
+    private static final Logger logger = Logger.getLogger(DocumentChangeBus.class.getName());
+
+    /** When a subscriber is called. */
+    public static final class Policy {
+        private enum Kind { FRAME, DEBOUNCE, THROTTLE }
+
+        private final Kind kind;
+        private final Duration delay;
+
+        private Policy(Kind kind, Duration delay) {
+            this.kind = kind;
+            this.delay = delay;
+        }
+
+        /** At the next frame after any edit; for cheap consumers such as counters. */
+        public static Policy everyFrame() {
+            return new Policy(Kind.FRAME, Duration.ZERO);
+        }
+
+        /** Once edits have paused for the given time, e.g. autosave. */
+        public static Policy debounce(Duration quiet) {
+            return new Policy(Kind.DEBOUNCE, quiet);
+        }
+
+        /** At most once per interval while edits keep coming, e.g. the preview. */
+        public static Policy throttle(Duration interval) {
+            return new Policy(Kind.THROTTLE, interval);
+        }
+    }
+
+    private final NoteEditor editor;
+    private final Consumer<TextChange> changeListener = this::onChange;
+    private final List<Subscription> subscriptions = new ArrayList<>();
+    private final List<TextChange> frameChanges = new ArrayList<>();
+    private final AnimationTimer frameTimer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            stop();
+            dispatchFrame();
+        }
+    };
+
+    public DocumentChangeBus(NoteEditor editor) {
+        this.editor = editor;
+        editor.addChangeListener(changeListener);
+    }
+
+    public NoteEditor getEditor() { return editor; }
+
+    /** Registers a consumer. Run the returned Runnable to unsubscribe. */
+    public Runnable subscribe(Policy policy, Consumer<ChangeBatch> consumer) {
+        Subscription subscription = new Subscription(policy, consumer);
+        subscriptions.add(subscription);
+        return () -> {
+            subscription.timer.stop();
+            subscriptions.remove(subscription);
+        };
+    }
+
+    /** Delivers everything pending right away, e.g. before saving or closing. */
+    public void flush() {
+        frameTimer.stop();
+        dispatchFrame();
+        for (Subscription subscription : new ArrayList<>(subscriptions)) {
+            subscription.timer.stop();
+            subscription.deliver();
+        }
+    }
+
+    /** Detaches from the editor and drops pending changes. */
+    public void dispose() {
+        editor.removeChangeListener(changeListener);
+        frameTimer.stop();
+        frameChanges.clear();
+        for (Subscription subscription : subscriptions) {
+            subscription.timer.stop();
+        }
+        subscriptions.clear();
+    }
+
+    private void onChange(TextChange change) {
+        if (frameChanges.isEmpty()) frameTimer.start();
+        frameChanges.add(change);
+    }
+
+    private void dispatchFrame() {
+        if (frameChanges.isEmpty()) return;
+        List<TextChange> changes = new ArrayList<>(frameChanges);
+        frameChanges.clear();
+        for (Subscription subscription : new ArrayList<>(subscriptions)) {
+            subscription.offer(changes);
+        }
+    }
+
+    private static final class Subscription {
+        private final Policy policy;
+        private final Consumer<ChangeBatch> consumer;
+        private final PauseTransition timer;
+        private final List<TextChange> pending = new ArrayList<>();
+
+        Subscription(Policy policy, Consumer<ChangeBatch> consumer) {
+            this.policy = policy;
+            this.consumer = consumer;
+            this.timer = new PauseTransition(policy.delay);
+            // A throttle window that collected changes ends with a delivery and a new window
+            timer.setOnFinished(e -> {
+                if (deliver() && policy.kind == Policy.Kind.THROTTLE) timer.playFromStart();
+            });
+        }
+
+        void offer(List<TextChange> changes) {
+            pending.addAll(changes);
+            switch (policy.kind) {
+                case FRAME:
+                    deliver();
+                    break;
+                case DEBOUNCE:
+                    timer.playFromStart();
+                    break;
+                case THROTTLE:
+                    // The first edit after a quiet period goes out at once
+                    if (timer.getStatus() != Animation.Status.RUNNING) {
+                        deliver();
+                        timer.playFromStart();
+                    }
+                    break;
+            }
+        }
+
+        boolean deliver() {
+            if (pending.isEmpty()) return false;
+            ChangeBatch batch = ChangeBatch.of(pending);
+            pending.clear();
+            try {
+                consumer.accept(batch);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Change consumer failed", e);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.lambdanotes;
+
+import com.lambdanotes.utils.TextChange;
+import com.lambdanotes.utils.TextChangeCodec;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Undo/redo journal of a {@link NoteEditor}. Entries are the edit deltas themselves, and
+ * consecutive typed characters and backspaces are merged into one entry, like in most text
+ * editors. The newest entries stay as they are; once they outgrow half the memory budget the
+ * oldest ones are deflated in blocks, and blocks beyond the other half go to a temp file.
+ * Undoing past the loose entries unpacks the newest block again. Undone entries wait for redo
+ * as they are; beyond half the budget or the step limit, the ones furthest from the current
+ * text are dropped, the last undone one is always kept.
+ */
+class EditHistory {
+    private static final Logger logger = Logger.getLogger(EditHistory.class.getName());
+
+    static final int DEFAULT_MAX_STEPS = 10000;
+    static final int DEFAULT_MEMORY_KB = 1024;
+    private static final int BLOCK_STEPS = 256;
+    private static final long MERGE_WINDOW_MS = 1000;
+
+    /** Packed run of the oldest entries, in memory or in the spill file. */
+    private static final class Block {
+        final int steps;
+        byte[] data; // null once spilled
+        long fileOffset = -1;
+        int fileLength;
+
+        Block(int steps, byte[] data) {
+            this.steps = steps;
+            this.data = data;
+        }
+    }
+
+    private final Deque<TextChange> undoStack = new ArrayDeque<>();
+    private final Deque<TextChange> redoStack = new ArrayDeque<>();
+    private final Deque<Block> blocks = new ArrayDeque<>(); // Older than undoStack, oldest first
+    private long lastRecorded = 0;
+    private long looseBytes = 0;
+    private long redoBytes = 0;
+    private long packedBytes = 0; // Deflated bytes of the blocks still in memory
+    private int packedSteps = 0;
+    private int maxSteps = DEFAULT_MAX_STEPS;
+    private long memoryBudget = DEFAULT_MEMORY_KB * 1024L;
+    private Path spillPath;
+    private RandomAccessFile spillFile;
+
+    /** How many undo steps are kept and how much memory they may use before being packed. */
+    void setLimits(int maxSteps, int memoryKb) {
+        this.maxSteps = Math.max(1, maxSteps);
+        this.memoryBudget = Math.max(64, memoryKb) * 1024L;
+        trim();
+    }
+
+    void record(TextChange change) {
+        redoStack.clear();
+        redoBytes = 0;
+        long now = System.currentTimeMillis();
+        TextChange last = undoStack.peekLast();
+        TextChange merged = last != null && now - lastRecorded < MERGE_WINDOW_MS ? merge(last, change) : null;
+        if (merged != null) {
+            undoStack.pollLast();
+            looseBytes -= TextChangeCodec.footprint(last);
+            push(merged);
+        } else {
+            push(change);
+        }
+        lastRecorded = now;
+        trim();
+    }
+
+    /** Returns the change to revert, or null if there is nothing to undo. */
+    TextChange undo() {
+        if (undoStack.isEmpty()) unpackNewestBlock();
+        TextChange change = undoStack.pollLast();
+        if (change != null) {
+            looseBytes -= TextChangeCodec.footprint(change);
+            redoStack.addLast(change);
+            redoBytes += TextChangeCodec.footprint(change);
+            trimRedo();
+        }
+        lastRecorded = 0;
+        return change;
+    }
+
+    /** Returns the change to apply again, or null if there is nothing to redo. */
+    TextChange redo() {
+        TextChange change = redoStack.pollLast();
+        if (change != null) {
+            redoBytes -= TextChangeCodec.footprint(change);
+            push(change);
+        }
+        lastRecorded = 0;
+        return change;
+    }
+
+    /** The next change starts a new entry, e.g. after the caret was moved. */
+    void breakMerge() {
+        lastRecorded = 0;
+    }
+
+    /** Drops all entries and the spill file. */
+    void clear() {
+        undoStack.clear();
+        redoStack.clear();
+        blocks.clear();
+        looseBytes = 0;
+        redoBytes = 0;
+        packedBytes = 0;
+        packedSteps = 0;
+        lastRecorded = 0;
+        closeSpillFile();
+    }
+
+    int size() {
+        return undoStack.size() + packedSteps;
+    }
+
+    int redoSize() {
+        return redoStack.size();
+    }
+
+    private void push(TextChange change) {
+        undoStack.addLast(change);
+        looseBytes += TextChangeCodec.footprint(change);
+    }
+
+    private void trim() {
+        while (looseBytes > memoryBudget / 2 && undoStack.size() > BLOCK_STEPS) {
+            packOldest();
+        }
+        while (packedBytes > memoryBudget / 2 && spillOldest()) {
+            // Keep going until the in-memory blocks fit
+        }
+        while (size() > maxSteps) {
+            if (!blocks.isEmpty()) {
+                dropOldestBlock();
+            } else {
+                looseBytes -= TextChangeCodec.footprint(undoStack.pollFirst());
+            }
+        }
+        trimRedo();
+    }
+
+    // Drops the redo entries undone first, they are the last ones a redo would reach
+    private void trimRedo() {
+        while (redoStack.size() > 1 && (redoBytes > memoryBudget / 2 || redoStack.size() > maxSteps)) {
+            redoBytes -= TextChangeCodec.footprint(redoStack.pollFirst());
+        }
+    }
+
+    private void packOldest() {
+        List<TextChange> oldest = new ArrayList<>(BLOCK_STEPS);
+        for (int i = 0; i < BLOCK_STEPS; i++) {
+            TextChange change = undoStack.pollFirst();
+            looseBytes -= TextChangeCodec.footprint(change);
+            oldest.add(change);
+        }
+        Block block = new Block(oldest.size(), TextChangeCodec.encode(oldest));
+        blocks.addLast(block);
+        packedBytes += block.data.length;
+        packedSteps += block.steps;
+    }
+
+    // Moves the oldest block still in memory to the spill file; false if there is none
+    private boolean spillOldest() {
+        for (Block block : blocks) {
+            if (block.data == null) continue;
+            try {
+                RandomAccessFile file = spillFile();
+                block.fileOffset = file.length();
+                block.fileLength = block.data.length;
+                file.seek(block.fileOffset);
+                file.write(block.data);
+            } catch (IOException e) {
+                // Without a spill file the older history has to go
+                logger.log(Level.WARNING, "Could not spill undo history to disk", e);
+                while (blocks.peekFirst() != block) dropOldestBlock();
+                dropOldestBlock();
+                return true;
+            }
+            packedBytes -= block.data.length;
+            block.data = null;
+            return true;
+        }
+        return false;
+    }
+
+    private void unpackNewestBlock() {
+        Block block = blocks.pollLast();
+        if (block == null) return;
+        packedSteps -= block.steps;
+        try {
+            byte[] data = block.data;
+            if (data != null) {
+                packedBytes -= data.length;
+            } else {
+                data = new byte[block.fileLength];
+                spillFile.seek(block.fileOffset);
+                spillFile.readFully(data);
+                spillFile.setLength(block.fileOffset); // The newest block is always at the end
+            }
+            for (TextChange change : TextChangeCodec.decode(data)) {
+                push(change);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not read undo history, dropping the older steps", e);
+            while (!blocks.isEmpty()) dropOldestBlock();
+            closeSpillFile();
+        }
+    }
+
+    private void dropOldestBlock() {
+        Block block = blocks.pollFirst();
+        packedSteps -= block.steps;
+        if (block.data != null) packedBytes -= block.data.length;
+        if (blocks.isEmpty()) closeSpillFile();
+    }
+
+    private RandomAccessFile spillFile() throws IOException {
+        if (spillFile == null) {
+            spillPath = Files.createTempFile("lambdanotes-undo", ".bin");
+            spillFile = new RandomAccessFile(spillPath.toFile(), "rw");
+        }
+        return spillFile;
+    }
+
+    private void closeSpillFile() {
+        if (spillFile == null) return;
+        try {
+            spillFile.close();
+            Files.deleteIfExists(spillPath);
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Could not delete undo spill file", e);
+        }
+        spillFile = null;
+        spillPath = null;
+    }
+
+    private static TextChange merge(TextChange last, TextChange change) {
+        boolean typing = last.getRemoved().isEmpty() && change.getRemoved().isEmpty();
+        if (typing && change.getOffset() == last.getInsertedEnd() && change.getInserted().length() == 1
+                && !"\n".equals(change.getInserted())) {
+            return new TextChange(last.getOffset(), "", last.getInserted() + change.getInserted());
+        }
+        boolean deleting = last.getInserted().isEmpty() && change.getInserted().isEmpty() && change.getRemoved().length() == 1;
+        if (deleting && change.getRemovedEnd() == last.getOffset()) {
+            // Backspace
+            return new TextChange(change.getOffset(), change.getRemoved() + last.getRemoved(), "");
+        }
+        if (deleting && change.getOffset() == last.getOffset()) {
+            // Delete key
+            return new TextChange(last.getOffset(), last.getRemoved() + change.getRemoved(), "");
+        }
+        return null;
+    }
+}
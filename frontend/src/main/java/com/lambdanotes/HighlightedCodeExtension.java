@@ -0,0 +1,66 @@
+package com.lambdanotes;
+
+import com.lambdanotes.utils.CodeHighlighter;
+import com.vladsch.flexmark.ast.FencedCodeBlock;
+import com.vladsch.flexmark.html.HtmlRenderer;
+import com.vladsch.flexmark.html.HtmlWriter;
+import com.vladsch.flexmark.html.renderer.NodeRenderer;
+import com.vladsch.flexmark.html.renderer.NodeRendererContext;
+import com.vladsch.flexmark.html.renderer.NodeRenderingHandler;
+import com.vladsch.flexmark.util.data.MutableDataHolder;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Renders fenced code in languages known to {@link CodeHighlighter} as pre-highlighted
+ * Prism markup. The code element is marked with {@code data-highlighted} so the preview
+ * page skips it; other languages are left to the default renderer and Prism.
+ */
+class HighlightedCodeExtension implements HtmlRenderer.HtmlRendererExtension {
+    private final CodeHighlighter highlighter;
+
+    HighlightedCodeExtension(CodeHighlighter highlighter) {
+        this.highlighter = highlighter;
+    }
+
+    @Override
+    public void rendererOptions(MutableDataHolder options) {
+    }
+
+    @Override
+    public void extend(HtmlRenderer.Builder builder, String rendererType) {
+        if ("HTML".equals(rendererType)) {
+            builder.nodeRendererFactory(options -> new CodeRenderer());
+        }
+    }
+
+    private class CodeRenderer implements NodeRenderer {
+        @Override
+        public Set<NodeRenderingHandler<?>> getNodeRenderingHandlers() {
+            return Collections.singleton(new NodeRenderingHandler<>(FencedCodeBlock.class, this::render));
+        }
+
+        private void render(FencedCodeBlock node, NodeRendererContext context, HtmlWriter html) {
+            String info = node.getInfo().toString().trim();
+            String language = info.isEmpty() ? "" : info.split("\\s+", 2)[0];
+            String highlighted = CodeHighlighter.supports(language)
+                    ? highlighter.highlight(language, node.getContentChars().normalizeEOL())
+                    : null;
+            if (highlighted == null) {
+                context.delegateRender();
+                return;
+            }
+
+            // The language is one of the known names, so it is safe inside the attribute
+            String cssClass = "language-" + language;
+            html.line();
+            html.raw("<pre class=\"" + cssClass + "\"><code class=\"" + cssClass + "\" data-highlighted>");
+            html.openPre();
+            html.raw(highlighted);
+            html.closePre();
+            html.raw("</code></pre>");
+            html.line();
+        }
+    }
+}
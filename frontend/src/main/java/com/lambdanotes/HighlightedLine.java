@@ -0,0 +1,75 @@
+package com.lambdanotes;
+
+import com.lambdanotes.utils.MarkdownLexer;
+import javafx.collections.ObservableList;
+import javafx.scene.Node;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextFlow;
+
+import java.util.List;
+
+/**
+ * One line of a {@link NoteEditor}: a run of Text nodes, one per highlight span, reused when
+ * the line shows other text. Styled runs get the span's style class and their color from the
+ * theme; plain runs use the editor's text fill.
+ */
+class HighlightedLine extends TextFlow {
+    private final NoteEditor editor;
+    private String text = "";
+    private List<MarkdownLexer.Span> spans;
+
+    HighlightedLine(NoteEditor editor) {
+        this.editor = editor;
+        setManaged(false);
+        run(0, null).setText("");
+    }
+
+    String getText() {
+        return text;
+    }
+
+    /** Shows the line; does nothing if it has the same text and spans as before. */
+    void setLine(String line, List<MarkdownLexer.Span> lineSpans) {
+        if (lineSpans == spans && line.equals(text)) return;
+        text = line;
+        spans = lineSpans;
+
+        int used = 0;
+        int position = 0;
+        for (MarkdownLexer.Span span : lineSpans) {
+            if (span.getStart() > position) {
+                run(used++, null).setText(line.substring(position, span.getStart()));
+            }
+            run(used++, span.getStyle()).setText(line.substring(span.getStart(), span.getEnd()));
+            position = span.getEnd();
+        }
+        if (position < line.length() || used == 0) {
+            run(used++, null).setText(line.substring(position));
+        }
+        ObservableList<Node> children = getChildren();
+        if (children.size() > used) children.remove(used, children.size());
+    }
+
+    // The run at the index, created or restyled as needed; a null style means plain text
+    private Text run(int index, String style) {
+        ObservableList<Node> children = getChildren();
+        Text run;
+        if (index < children.size()) {
+            run = (Text) children.get(index);
+        } else {
+            run = new Text();
+            run.fontProperty().bind(editor.fontProperty());
+            children.add(run);
+        }
+        ObservableList<String> styleClass = run.getStyleClass();
+        if (style == null) {
+            if (!styleClass.isEmpty()) styleClass.clear();
+            if (!run.fillProperty().isBound()) run.fillProperty().bind(editor.textFillProperty());
+        } else if (styleClass.size() != 1 || !styleClass.get(0).equals(style)) {
+            run.fillProperty().unbind();
+            run.setFill(editor.textFillProperty().get()); // Plain in themes without a rule for the style
+            styleClass.setAll(style);
+        }
+        return run;
+    }
+}
@@ -0,0 +1,210 @@
+package com.lambdanotes;
+
+import com.lambdanotes.utils.MarkdownBlocks;
+import com.vladsch.flexmark.ast.Heading;
+import com.vladsch.flexmark.ast.Reference;
+import com.vladsch.flexmark.html.renderer.HeaderIdGenerator;
+import com.vladsch.flexmark.util.ast.Document;
+import com.vladsch.flexmark.util.ast.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders a note block by block and keeps the HTML of every block, keyed by its source text.
+ * After an edit only the blocks whose text changed go through flexmark again, the rest of
+ * the note comes from the cache, so the cost of a render follows the size of the edit.
+ *
+ * Reference links are resolved by putting the note's reference definitions, as flexmark parsed
+ * them in each block, in front of blocks that may use them. They go first so that a block
+ * ending in an unclosed fence or HTML block cannot swallow them. Heading ids are made unique across the note the way flexmark does within one
+ * document ({@code intro}, {@code intro-1}). Footnotes are numbered across the whole note, so
+ * notes defining them are rendered in one piece.
+ */
+public class IncrementalMarkdownRenderer {
+    private static final int MAX_CACHED_BLOCKS = 4096;
+
+    private final MarkdownEngine engine;
+    private final PreviewMetrics metrics;
+
+    // Time spent in flexmark during the current render call
+    private long parseNanos;
+    private long renderNanos;
+
+    // Blocks rendered on their own
+    private final Map<String, Fragment> blockCache = createCache();
+    // Blocks rendered together with the reference definitions, only valid for lastDefinitions
+    private final Map<String, Fragment> referenceCache = createCache();
+    // Reference definitions of each block that may contain some
+    private final Map<String, String> definitionCache = createCache();
+    private String lastDefinitions = "";
+    // Heading ids without the numbering flexmark adds to duplicates
+    private final HeaderIdGenerator baseIds;
+
+    public IncrementalMarkdownRenderer(MarkdownEngine engine, PreviewMetrics metrics) {
+        this.engine = engine;
+        this.metrics = metrics;
+        this.baseIds = new HeaderIdGenerator(engine.getParserOptions());
+        this.baseIds.setResolveDupes(false);
+    }
+
+    /** HTML of a block and the ids of its headings, as generated when rendering it alone. */
+    private static class Fragment {
+        final String html;
+        final String[] ids;     // null if the block has no headings
+        final String[] baseIds;
+
+        Fragment(String html, String[] ids, String[] baseIds) {
+            this.html = html;
+            this.ids = ids;
+            this.baseIds = baseIds;
+        }
+    }
+
+    public synchronized List<RenderedBlock> render(String markdown) {
+        parseNanos = 0;
+        renderNanos = 0;
+        try {
+            return renderBlocks(markdown);
+        } finally {
+            metrics.record(PreviewMetrics.Stage.PARSE, parseNanos);
+            metrics.record(PreviewMetrics.Stage.RENDER, renderNanos);
+        }
+    }
+
+    private List<RenderedBlock> renderBlocks(String markdown) {
+        List<MarkdownBlocks.Block> blocks = MarkdownBlocks.split(markdown);
+        if (MarkdownBlocks.hasFootnoteDefinitions(blocks)) {
+            // Footnote numbering and the footnote list depend on the whole note
+            int lines = 1;
+            for (int i = 0; i < markdown.length(); i++) {
+                if (markdown.charAt(i) == '\n') lines++;
+            }
+            return Collections.singletonList(new RenderedBlock(0, lines, renderFragment(markdown).html));
+        }
+
+        String definitions = collectDefinitions(blocks);
+        if (!definitions.equals(lastDefinitions)) {
+            referenceCache.clear();
+            lastDefinitions = definitions;
+        }
+
+        List<RenderedBlock> result = new ArrayList<>(blocks.size());
+        Map<String, Integer> headingCounts = new HashMap<>();
+        for (MarkdownBlocks.Block block : blocks) {
+            String text = block.getText();
+            boolean usesReferences = !definitions.isEmpty() && text.indexOf('[') >= 0;
+            Map<String, Fragment> cache = usesReferences ? referenceCache : blockCache;
+
+            Fragment fragment = cache.get(text);
+            if (fragment == null) {
+                fragment = renderFragment(usesReferences ? definitions + "\n" + text : text);
+                cache.put(text, fragment);
+            }
+            String html = fragment.ids == null ? fragment.html : numberHeadings(fragment, headingCounts);
+            result.add(new RenderedBlock(block.getStartLine(), block.getLineCount(), html));
+        }
+        return result;
+    }
+
+    // Definitions of all blocks in note order, so the first definition of a label wins as in a full render
+    private String collectDefinitions(List<MarkdownBlocks.Block> blocks) {
+        StringBuilder definitions = new StringBuilder();
+        for (MarkdownBlocks.Block block : blocks) {
+            String text = block.getText();
+            if (text.indexOf("]:") < 0) continue;
+            String found = definitionCache.get(text);
+            if (found == null) {
+                found = parseDefinitions(text);
+                definitionCache.put(text, found);
+            }
+            definitions.append(found);
+        }
+        return definitions.toString();
+    }
+
+    // Only what flexmark took as a definition counts, e.g. not a lazy continuation line of a paragraph
+    private String parseDefinitions(String text) {
+        long start = System.nanoTime();
+        Document document = engine.parse(text);
+        parseNanos += System.nanoTime() - start;
+
+        StringBuilder definitions = new StringBuilder();
+        for (Node node : document.getDescendants()) {
+            if (!(node instanceof Reference)) continue;
+            Reference reference = (Reference) node;
+            definitions.append('[').append(reference.getReference()).append("]: ")
+                    .append(reference.getUrlOpeningMarker()).append(reference.getUrl()).append(reference.getUrlClosingMarker());
+            if (reference.getTitleOpeningMarker().isNotNull()) {
+                definitions.append(' ').append(reference.getTitleOpeningMarker()).append(reference.getTitle())
+                        .append(reference.getTitleClosingMarker());
+            }
+            definitions.append('\n');
+        }
+        return definitions.toString();
+    }
+
+    // Gives the block's headings the ids they get in the whole note, e.g. a second "Intro" block gets intro-1
+    private static String numberHeadings(Fragment fragment, Map<String, Integer> headingCounts) {
+        String html = fragment.html;
+        int from = 0;
+        for (int i = 0; i < fragment.ids.length; i++) {
+            String base = fragment.baseIds[i];
+            Integer count = headingCounts.get(base);
+            headingCounts.put(base, count == null ? 0 : count + 1);
+            String id = count == null ? base : base + "-" + (count + 1);
+            String local = fragment.ids[i];
+
+            int at = html.indexOf("id=\"" + local + "\"", from);
+            if (at < 0) break; // Ids are not rendered with these options
+            int tagStart = html.lastIndexOf('<', at);
+            int tagEnd = html.indexOf('>', at);
+            if (!id.equals(local)) {
+                String tag = html.substring(tagStart, tagEnd)
+                        .replace("id=\"" + local + "\"", "id=\"" + id + "\"")
+                        .replace("href=\"#" + local + "\"", "href=\"#" + id + "\"");
+                html = html.substring(0, tagStart) + tag + html.substring(tagEnd);
+                tagEnd = tagStart + tag.length();
+            }
+            from = tagEnd;
+        }
+        return html;
+    }
+
+    private Fragment renderFragment(String markdown) {
+        long start = System.nanoTime();
+        Document document = engine.parse(markdown);
+        long parsed = System.nanoTime();
+        String html = engine.render(document);
+        parseNanos += parsed - start;
+        renderNanos += System.nanoTime() - parsed;
+
+        // Rendering assigned the ids, numbered within this fragment only
+        List<String> ids = new ArrayList<>();
+        List<String> bases = new ArrayList<>();
+        for (Node node : document.getDescendants()) {
+            if (node instanceof Heading) {
+                Heading heading = (Heading) node;
+                String id = heading.getAnchorRefId();
+                if (id == null || id.isEmpty() || heading.isExplicitAnchorRefId()) continue;
+                ids.add(id);
+                bases.add(baseIds.getId(heading.getAnchorRefText()));
+            }
+        }
+        if (ids.isEmpty()) return new Fragment(html, null, null);
+        return new Fragment(html, ids.toArray(new String[0]), bases.toArray(new String[0]));
+    }
+
+    private static <V> Map<String, V> createCache() {
+        return new LinkedHashMap<String, V>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > MAX_CACHED_BLOCKS;
+            }
+        };
+    }
+}
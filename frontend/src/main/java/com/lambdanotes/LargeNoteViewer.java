@@ -0,0 +1,151 @@
+package com.lambdanotes;
+
+import com.lambdanotes.utils.TextChunks;
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Read-only view of a note too large for the editor. The file is fetched in chunks as they
+ * scroll into view and only the last few decoded chunks are kept, so opening it costs about
+ * one screen of text instead of several copies of the whole note. "Load for Editing" hands
+ * the note to the regular editor.
+ */
+public class LargeNoteViewer extends BorderPane {
+    private static final Logger logger = Logger.getLogger(LargeNoteViewer.class.getName());
+    private static final int CHUNK_SIZE = 32 * 1024;
+    private static final int CACHED_CHUNKS = 16;
+
+    private final NoteService noteService;
+    private String path;
+    private TextChunks chunks;
+    private int version; // Bumped by reload, so reads of the old file are dropped
+    private final ListView<Integer> chunkList;
+    private final Set<Integer> loading = new HashSet<>();
+    private final Map<Integer, String> cache = new LinkedHashMap<>(CACHED_CHUNKS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+            return size() > CACHED_CHUNKS;
+        }
+    };
+
+    public LargeNoteViewer(NoteService noteService, String path, long size, Consumer<String> onEdit) {
+        this.noteService = noteService;
+        this.path = path;
+        this.chunks = new TextChunks(size, CHUNK_SIZE);
+        getStyleClass().add("large-note-viewer");
+
+        Label info = new Label(java.text.MessageFormat.format(LanguageManager.get("large_note.info"),
+                path, String.format("%.1f", size / (1024.0 * 1024.0))));
+        info.getStyleClass().add("large-note-info");
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+        Button editButton = new Button(LanguageManager.get("large_note.edit"));
+        editButton.setOnAction(e -> onEdit.accept(this.path));
+        HBox header = new HBox(10, info, spacer, editButton);
+        header.setAlignment(Pos.CENTER_LEFT);
+        header.setPadding(new Insets(8, 15, 8, 15));
+        setTop(header);
+
+        chunkList = new ListView<>();
+        chunkList.getStyleClass().add("large-note-list");
+        chunkList.setCellFactory(list -> new ListCell<>() {
+            private final Label text = new Label();
+
+            {
+                text.getStyleClass().add("large-note-chunk");
+                text.setWrapText(true);
+                text.maxWidthProperty().bind(list.widthProperty().subtract(40));
+            }
+
+            @Override
+            protected void updateItem(Integer index, boolean empty) {
+                super.updateItem(index, empty);
+                if (empty || index == null) {
+                    setGraphic(null);
+                    return;
+                }
+                String chunk = chunk(index);
+                text.setText(chunk != null ? stripTrailingBreak(chunk) : "…");
+                setGraphic(text);
+            }
+        });
+        fillList();
+        setCenter(chunkList);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /** The note was moved or renamed; later reads go to the new path. */
+    public void renamed(String path) {
+        this.path = path;
+    }
+
+    /** The file changed on disk; drops what was read and shows it again at its new size. */
+    public void reload(long size) {
+        version++;
+        chunks = new TextChunks(size, CHUNK_SIZE);
+        cache.clear();
+        loading.clear();
+        fillList();
+    }
+
+    private void fillList() {
+        List<Integer> indexes = new ArrayList<>(chunks.count());
+        for (int i = 0; i < chunks.count(); i++) {
+            indexes.add(i);
+        }
+        chunkList.getItems().setAll(indexes);
+    }
+
+    // Decoded text of the chunk, or null while it is being fetched
+    private String chunk(int index) {
+        String cached = cache.get(index);
+        if (cached != null || !loading.add(index)) return cached;
+        TextChunks current = chunks;
+        int requested = version;
+        noteService.getNoteRange(path, current.readStart(index), current.readEnd(index))
+                .thenAccept(data -> {
+                    String text = current.decode(index, data);
+                    Platform.runLater(() -> {
+                        if (requested != version) return;
+                        loading.remove(index);
+                        cache.put(index, text);
+                        chunkList.refresh();
+                    });
+                })
+                .exceptionally(e -> {
+                    logger.log(Level.WARNING, "Could not read part " + index + " of " + path, e);
+                    Platform.runLater(() -> {
+                        if (requested == version) loading.remove(index);
+                    });
+                    return null;
+                });
+        return null;
+    }
+
+    // Each cell is a block of whole lines; the break after the last one is the cell border
+    private static String stripTrailingBreak(String chunk) {
+        return chunk.endsWith("\n") ? chunk.substring(0, chunk.length() - 1) : chunk;
+    }
+}
@@ -0,0 +1,92 @@
+package com.lambdanotes;
+
+import javafx.css.CssMetaData;
+import javafx.css.Styleable;
+import javafx.css.StyleableObjectProperty;
+import javafx.css.StyleablePropertyFactory;
+import javafx.geometry.VPos;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Text;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Line numbers for a {@link NoteEditor}. Only the numbers of the lines on screen get a Text
+ * node; their positions come from the editor's row index after each editor layout, so the
+ * gutter follows scrolling and soft-wrapped lines without copying the text.
+ */
+public class LineNumberGutter extends Region {
+    private static final StyleablePropertyFactory<LineNumberGutter> FACTORY = new StyleablePropertyFactory<>(Region.getClassCssMetaData());
+
+    private final NoteEditor editor;
+    private final List<Text> numberNodes = new ArrayList<>();
+    private final Rectangle clip = new Rectangle();
+
+    private final StyleableObjectProperty<Paint> textFill =
+            (StyleableObjectProperty<Paint>) FACTORY.createStyleablePaintProperty(this, "textFill", "-fx-text-fill", g -> g.textFill, Color.GRAY);
+
+    public LineNumberGutter(NoteEditor editor) {
+        this.editor = editor;
+        getStyleClass().add("line-numbers");
+        setClip(clip);
+        setMouseTransparent(true); // Clicks go through to the editor
+        setMaxHeight(Double.MAX_VALUE);
+        editor.addLayoutListener(this::requestLayout);
+    }
+
+    @Override
+    protected void layoutChildren() {
+        clip.setWidth(getWidth());
+        clip.setHeight(getHeight());
+
+        double scroll = editor.getScrollTop();
+        double firstLine = editor.getLineAtY(scroll);
+        int used = 0;
+        if (firstLine >= 0 && isVisible()) {
+            int lineCount = editor.getLineCount();
+            double right = getWidth() - snappedRightInset();
+            double height = getHeight();
+            for (int line = (int) firstLine; line < lineCount; line++) {
+                double y = editor.getYOfLine(line) - scroll;
+                if (y >= height) break;
+                Text node = numberNode(used++);
+                node.setText(Integer.toString(line + 1));
+                node.relocate(right - node.getLayoutBounds().getWidth(), y);
+            }
+        }
+        for (int i = used; i < numberNodes.size(); i++) {
+            numberNodes.get(i).setVisible(false);
+        }
+    }
+
+    private Text numberNode(int index) {
+        while (numberNodes.size() <= index) {
+            Text node = new Text();
+            node.setManaged(false);
+            node.setTextOrigin(VPos.TOP);
+            // Same font as the editor so the numbers line up with its rows
+            node.fontProperty().bind(editor.fontProperty());
+            node.fillProperty().bind(textFill);
+            numberNodes.add(node);
+            getChildren().add(node);
+        }
+        Text node = numberNodes.get(index);
+        node.setVisible(true);
+        return node;
+    }
+
+    public StyleableObjectProperty<Paint> textFillProperty() { return textFill; }
+
+    public static List<CssMetaData<? extends Styleable, ?>> getClassCssMetaData() {
+        return FACTORY.getCssMetaData();
+    }
+
+    @Override
+    public List<CssMetaData<? extends Styleable, ?>> getCssMetaData() {
+        return getClassCssMetaData();
+    }
+}
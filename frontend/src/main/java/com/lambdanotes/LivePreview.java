@@ -0,0 +1,204 @@
+package com.lambdanotes;
+
+import javafx.concurrent.Worker;
+import javafx.scene.web.WebEngine;
+import javafx.scene.web.WebView;
+import netscape.javascript.JSException;
+import netscape.javascript.JSObject;
+
+import com.google.gson.Gson;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Drives the preview WebView.
+ * The page shell (styles, fonts, scripts) is loaded once and every later update only
+ * patches the changed top-level blocks of the note body through the JavaScript bridge,
+ * so typing no longer reloads the whole document or loses the scroll position.
+ */
+public class LivePreview {
+    private static final Logger logger = Logger.getLogger(LivePreview.class.getName());
+    private static final Gson gson = new Gson();
+
+    private final WebEngine engine;
+    private final Object bridge; // Strong reference, the WebView only keeps a weak one
+    private final PreviewMetrics metrics;
+    private long loadStartedAt = -1; // When the navigation in progress was scheduled, -1 if none
+
+    private String loadedShell; // Shell currently loaded (or loading) in the WebView
+    private boolean shellReady = false;
+
+    // Latest content waiting for the shell to finish loading
+    private String pendingTitle;
+    private List<RenderedBlock> pendingBlocks;
+    private boolean pendingWindowed;
+    // Block HTML currently shown in the page, in order
+    private List<String> shownBlocks = Collections.emptyList();
+    private boolean shownWindowed = false;
+    private double restoreScrollY = -1;
+    private double pendingScrollLine = -1;
+
+    public LivePreview(WebView webView, Object bridge, PreviewMetrics metrics) {
+        this.engine = webView.getEngine();
+        this.bridge = bridge;
+        this.metrics = metrics;
+
+        engine.getLoadWorker().stateProperty().addListener((obs, oldState, newState) -> {
+            if (newState == Worker.State.SCHEDULED) {
+                // Every navigation is stamped on its own, a superseded load is cancelled first
+                loadStartedAt = System.nanoTime();
+            } else if (newState == Worker.State.CANCELLED || newState == Worker.State.FAILED) {
+                loadStartedAt = -1;
+            } else if (newState == Worker.State.SUCCEEDED) {
+                // A completion without a stamp belongs to a load that was already measured or dropped
+                if (loadStartedAt >= 0) {
+                    metrics.record(PreviewMetrics.Stage.PAGE_READY, System.nanoTime() - loadStartedAt);
+                    loadStartedAt = -1;
+                }
+                JSObject window = (JSObject) engine.executeScript("window");
+                window.setMember("javaApp", bridge);
+                shellReady = true;
+                flush();
+            }
+        });
+    }
+
+    /**
+     * Shows the given blocks in the preview. The shell is only reloaded when it differs
+     * from the one already on screen (theme, font or language changes).
+     * In windowed mode the page only builds the blocks near its viewport and keeps
+     * estimated-height spacers for the rest, for notes too large to lay out in full.
+     */
+    public void update(String shellHtml, String titleHtml, List<RenderedBlock> blocks, boolean windowed) {
+        pendingTitle = titleHtml;
+        pendingBlocks = blocks;
+        pendingWindowed = windowed;
+
+        if (!shellHtml.equals(loadedShell)) {
+            if (shellReady) {
+                restoreScrollY = getScrollY();
+            }
+            loadedShell = shellHtml;
+            shellReady = false;
+            shownBlocks = Collections.emptyList();
+            long start = System.nanoTime();
+            engine.loadContent(shellHtml);
+            metrics.record(PreviewMetrics.Stage.LOAD_CONTENT, System.nanoTime() - start);
+            return;
+        }
+
+        if (shellReady) {
+            flush();
+        }
+    }
+
+    /** Forces the next update to reload the shell, e.g. after the WebView was reused for other content. */
+    public void invalidate() {
+        loadedShell = null;
+        shellReady = false;
+        shownBlocks = Collections.emptyList();
+    }
+
+    private void flush() {
+        if (pendingBlocks == null) return;
+        long wrapStart = System.nanoTime();
+        String title = pendingTitle;
+        List<String> blocks = new ArrayList<>(pendingBlocks.size());
+        int[] starts = new int[pendingBlocks.size()];
+        int[] counts = new int[pendingBlocks.size()];
+        for (int i = 0; i < pendingBlocks.size(); i++) {
+            RenderedBlock block = pendingBlocks.get(i);
+            blocks.add(block.getHtml());
+            starts[i] = block.getStartLine();
+            counts[i] = block.getLineCount();
+        }
+        pendingTitle = null;
+        pendingBlocks = null;
+
+        // Only the changed run of blocks crosses the bridge, unchanged cached blocks are mostly the same instances.
+        // Switching between full and windowed mode replaces everything.
+        boolean windowed = pendingWindowed;
+        List<String> shown = shownBlocks;
+        int prefix = 0;
+        int suffix = 0;
+        if (windowed == shownWindowed) {
+            while (prefix < shown.size() && prefix < blocks.size() && shown.get(prefix).equals(blocks.get(prefix))) {
+                prefix++;
+            }
+            while (suffix < shown.size() - prefix && suffix < blocks.size() - prefix
+                    && shown.get(shown.size() - 1 - suffix).equals(blocks.get(blocks.size() - 1 - suffix))) {
+                suffix++;
+            }
+        }
+        String inserted = gson.toJson(blocks.subList(prefix, blocks.size() - suffix));
+        String startsJson = gson.toJson(starts);
+        String countsJson = gson.toJson(counts);
+        long patchStart = System.nanoTime();
+        metrics.record(PreviewMetrics.Stage.WRAP, patchStart - wrapStart);
+
+        try {
+            JSObject preview = (JSObject) engine.executeScript("window.lambdaPreview");
+            // Line ranges are always sent in full, blocks below an edit keep their HTML but move
+            preview.call("patch", title, prefix, shown.size() - prefix - suffix, inserted,
+                    startsJson, countsJson, windowed);
+            shownBlocks = blocks;
+            shownWindowed = windowed;
+            metrics.record(PreviewMetrics.Stage.PATCH, System.nanoTime() - patchStart);
+        } catch (JSException | ClassCastException e) {
+            // Shell script is broken or missing, fall back to a full reload on the next update
+            logger.warning("Preview patch failed, shell will be reloaded: " + e.getMessage());
+            invalidate();
+            return;
+        }
+
+        if (pendingScrollLine >= 0) {
+            double line = pendingScrollLine;
+            pendingScrollLine = -1;
+            restoreScrollY = -1;
+            scrollToLine(line);
+        } else if (restoreScrollY >= 0) {
+            engine.executeScript("window.scrollTo(0, " + restoreScrollY + ")");
+            restoreScrollY = -1;
+        }
+    }
+
+    /**
+     * Scrolls the preview so the given (fractional, zero-based) source line is at the top.
+     * If the page is still loading the request is applied once the blocks are in place.
+     */
+    public void scrollToLine(double line) {
+        if (!shellReady || pendingBlocks != null) {
+            pendingScrollLine = line;
+            return;
+        }
+        callPreview("scrollToLine", line);
+    }
+
+    /** Scrolls the preview only if the given source line is outside the visible area. */
+    public void revealLine(int line) {
+        if (shellReady && pendingBlocks == null) {
+            callPreview("revealLine", line);
+        }
+    }
+
+    private void callPreview(String function, Object... args) {
+        try {
+            JSObject preview = (JSObject) engine.executeScript("window.lambdaPreview");
+            preview.call(function, args);
+        } catch (JSException | ClassCastException e) {
+            logger.fine("Preview call " + function + " failed: " + e.getMessage());
+        }
+    }
+
+    private double getScrollY() {
+        try {
+            Object y = engine.executeScript("window.pageYOffset || 0");
+            return y instanceof Number ? ((Number) y).doubleValue() : 0;
+        } catch (JSException e) {
+            return 0;
+        }
+    }
+}
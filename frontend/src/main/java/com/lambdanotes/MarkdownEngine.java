@@ -0,0 +1,145 @@
+package com.lambdanotes;
+
+import com.lambdanotes.utils.CodeHighlighter;
+import com.vladsch.flexmark.ext.anchorlink.AnchorLinkExtension;
+import com.vladsch.flexmark.ext.autolink.AutolinkExtension;
+import com.vladsch.flexmark.ext.footnotes.FootnoteExtension;
+import com.vladsch.flexmark.ext.gfm.strikethrough.StrikethroughExtension;
+import com.vladsch.flexmark.ext.gfm.tasklist.TaskListExtension;
+import com.vladsch.flexmark.ext.tables.TablesExtension;
+import com.vladsch.flexmark.html.HtmlRenderer;
+import com.vladsch.flexmark.parser.Parser;
+import com.vladsch.flexmark.util.ast.Document;
+import com.vladsch.flexmark.util.ast.Node;
+import com.vladsch.flexmark.util.data.DataHolder;
+import com.vladsch.flexmark.util.misc.Extension;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * The one place where Markdown is turned into HTML. Built once from immutable {@link Options};
+ * flexmark parsers and renderers keep no state between calls, so one engine per set of options
+ * is shared by the preview, PDF export and background jobs on any thread.
+ */
+public final class MarkdownEngine {
+    private static final String FLEXMARK_VERSION = "flexmark-0.64.8";
+
+    /** Extensions the engine can be built with. */
+    public enum Feature {
+        TABLES("tables", TablesExtension::create),
+        STRIKETHROUGH("strikethrough", StrikethroughExtension::create),
+        TASK_LIST("tasklist", TaskListExtension::create),
+        AUTOLINK("autolink", AutolinkExtension::create),
+        FOOTNOTES("footnotes", FootnoteExtension::create),
+        ANCHOR_LINKS("anchorlink", AnchorLinkExtension::create);
+
+        private final String key;
+        private final Supplier<Extension> factory;
+
+        Feature(String key, Supplier<Extension> factory) {
+            this.key = key;
+            this.factory = factory;
+        }
+    }
+
+    /** Immutable engine configuration. Use the presets or derive a copy with the with* methods. */
+    public static final class Options {
+        /** Everything the note editor supports, soft breaks kept as line breaks. */
+        public static final Options NOTES = new Options(EnumSet.allOf(Feature.class), "<br />", false);
+        /** Plain CommonMark without extensions. */
+        public static final Options COMMONMARK = new Options(EnumSet.noneOf(Feature.class), "\n", false);
+
+        private final Set<Feature> features;
+        private final String softBreak;
+        private final boolean codeHighlighting;
+
+        private Options(Set<Feature> features, String softBreak, boolean codeHighlighting) {
+            this.features = Collections.unmodifiableSet(EnumSet.copyOf(features.isEmpty() ? EnumSet.noneOf(Feature.class) : features));
+            this.softBreak = softBreak;
+            this.codeHighlighting = codeHighlighting;
+        }
+
+        public Set<Feature> getFeatures() { return features; }
+        public String getSoftBreak() { return softBreak; }
+        /** Whether fenced code is highlighted while rendering instead of by Prism in the page. */
+        public boolean isCodeHighlighting() { return codeHighlighting; }
+
+        public Options withFeatures(Set<Feature> newFeatures) {
+            return new Options(newFeatures, softBreak, codeHighlighting);
+        }
+
+        public Options withSoftBreak(String newSoftBreak) {
+            return new Options(features, newSoftBreak, codeHighlighting);
+        }
+
+        public Options withCodeHighlighting(boolean newCodeHighlighting) {
+            return new Options(features, softBreak, newCodeHighlighting);
+        }
+
+        /** Identifies the rendered output of these options, e.g. for cache keys. */
+        public String key() {
+            String names = features.stream().map(f -> f.key).collect(Collectors.joining(","));
+            String breakKey = "<br />".equals(softBreak) ? "br" : softBreak.replace("\n", "nl");
+            return FLEXMARK_VERSION + ";" + names + ";softbreak=" + breakKey + (codeHighlighting ? ";highlight=java" : "");
+        }
+    }
+
+    private static final Map<String, MarkdownEngine> sharedEngines = new ConcurrentHashMap<>();
+
+    private final Options options;
+    private final Parser parser;
+    private final HtmlRenderer renderer;
+
+    public MarkdownEngine(Options options) {
+        this.options = options;
+        List<Extension> extensions = new ArrayList<>();
+        for (Feature feature : options.getFeatures()) {
+            extensions.add(feature.factory.get());
+        }
+        if (options.isCodeHighlighting()) {
+            extensions.add(new HighlightedCodeExtension(new CodeHighlighter()));
+        }
+        this.parser = Parser.builder().extensions(extensions).build();
+        this.renderer = HtmlRenderer.builder()
+                .extensions(extensions)
+                .softBreak(options.getSoftBreak())
+                .build();
+    }
+
+    /** Engine with the {@link Options#NOTES} options, created on first use. */
+    public static MarkdownEngine shared() {
+        return shared(Options.NOTES);
+    }
+
+    /** The shared engine for these options; engines with different options live side by side. */
+    public static MarkdownEngine shared(Options options) {
+        return sharedEngines.computeIfAbsent(options.key(), key -> new MarkdownEngine(options));
+    }
+
+    public Options getOptions() { return options; }
+
+    /** flexmark options of the parser, for extensions that need them such as PDF export. */
+    public DataHolder getParserOptions() {
+        return parser.getOptions();
+    }
+
+    public Document parse(String markdown) {
+        return parser.parse(markdown);
+    }
+
+    public String render(Node document) {
+        return renderer.render(document);
+    }
+
+    public String toHtml(String markdown) {
+        return renderer.render(parser.parse(markdown));
+    }
+}
@@ -0,0 +1,419 @@
+package com.lambdanotes;
+
+import com.lambdanotes.utils.MarkdownHighlighter;
+import com.lambdanotes.utils.MarkdownLexer;
+import com.lambdanotes.utils.TextChange;
+import com.lambdanotes.utils.TextRope;
+import com.lambdanotes.utils.TextStatistics;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+import javafx.css.CssMetaData;
+import javafx.css.Styleable;
+import javafx.css.StyleableObjectProperty;
+import javafx.css.StyleablePropertyFactory;
+import javafx.geometry.Point2D;
+import javafx.scene.AccessibleAction;
+import javafx.scene.AccessibleAttribute;
+import javafx.scene.AccessibleRole;
+import javafx.scene.control.Control;
+import javafx.scene.control.IndexRange;
+import javafx.scene.control.Skin;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Plain text editor for notes. The text lives in a {@link TextRope}, so edits and line
+ * lookups are O(log n), and the skin only lays out the lines inside the viewport.
+ * The editing API follows {@code TextInputControl}; instead of a text property, listeners
+ * receive each {@link TextChange}.
+ */
+public class NoteEditor extends Control {
+    private static final StyleablePropertyFactory<NoteEditor> FACTORY = new StyleablePropertyFactory<>(Control.getClassCssMetaData());
+
+    private final TextRope document = new TextRope();
+    private final EditHistory history = new EditHistory();
+    private final TextStatistics statistics = new TextStatistics();
+    private final MarkdownHighlighter highlighter = new MarkdownHighlighter();
+    private final List<Consumer<TextChange>> changeListeners = new CopyOnWriteArrayList<>();
+    private final List<Runnable> layoutListeners = new CopyOnWriteArrayList<>();
+
+    private final ReadOnlyIntegerWrapper caretPosition = new ReadOnlyIntegerWrapper(this, "caretPosition", 0);
+    private final ReadOnlyIntegerWrapper anchor = new ReadOnlyIntegerWrapper(this, "anchor", 0);
+    private final ReadOnlyObjectWrapper<IndexRange> selection = new ReadOnlyObjectWrapper<>(this, "selection", new IndexRange(0, 0));
+    private final StringProperty promptText = new SimpleStringProperty(this, "promptText", "");
+    private final DoubleProperty scrollTop = new SimpleDoubleProperty(this, "scrollTop", 0);
+
+    private final StyleableObjectProperty<Font> font =
+            (StyleableObjectProperty<Font>) FACTORY.createStyleableFontProperty(this, "font", "-fx-font", e -> e.font, Font.getDefault(), true);
+    private final StyleableObjectProperty<Paint> textFill =
+            (StyleableObjectProperty<Paint>) FACTORY.createStyleablePaintProperty(this, "textFill", "-fx-text-fill", e -> e.textFill, Color.BLACK);
+    private final StyleableObjectProperty<Paint> highlightFill =
+            (StyleableObjectProperty<Paint>) FACTORY.createStyleablePaintProperty(this, "highlightFill", "-fx-highlight-fill", e -> e.highlightFill, Color.web("#3e4451"));
+    private final StyleableObjectProperty<Paint> promptTextFill =
+            (StyleableObjectProperty<Paint>) FACTORY.createStyleablePaintProperty(this, "promptTextFill", "-fx-prompt-text-fill", e -> e.promptTextFill, Color.GRAY);
+
+    public NoteEditor() {
+        this("");
+    }
+
+    public NoteEditor(String text) {
+        getStyleClass().add("note-editor");
+        setFocusTraversable(true);
+        setAccessibleRole(AccessibleRole.TEXT_AREA);
+        document.insert(0, text == null ? "" : text);
+        statistics.reset(document);
+        highlighter.reset(document);
+    }
+
+    @Override
+    protected Skin<?> createDefaultSkin() {
+        return new NoteEditorSkin(this);
+    }
+
+    // --- Text
+
+    /** The whole text. Copies the document once per edit, so keep it off per-keystroke paths. */
+    public String getText() {
+        return document.toString();
+    }
+
+    public String getText(int start, int end) {
+        return document.substring(start, end);
+    }
+
+    public void setText(String text) {
+        replace(0, document.length(), text == null ? "" : text, false);
+        history.clear();
+        selectRange(0, 0);
+        setScrollTop(0);
+    }
+
+    public void clear() {
+        setText("");
+    }
+
+    public int getLength() {
+        return document.length();
+    }
+
+    public int getLineCount() {
+        return document.lineCount();
+    }
+
+    public int getLineStart(int line) {
+        return document.lineStart(line);
+    }
+
+    public int getLineEnd(int line) {
+        return document.lineEnd(line);
+    }
+
+    public int getLineOfOffset(int offset) {
+        return document.lineOfOffset(offset);
+    }
+
+    /** Text of the zero-based line without its line break. */
+    public String getLine(int line) {
+        return document.substring(document.lineStart(line), document.lineEnd(line));
+    }
+
+    int[] getLineLengths() {
+        return document.lineLengths();
+    }
+
+    /** Word, character and line counts, kept current on every edit. */
+    public TextStatistics getStatistics() {
+        return statistics;
+    }
+
+    // Markdown highlighting of a line, cached until the line changes
+    List<MarkdownLexer.Span> getHighlightSpans(int line) {
+        return highlighter.spans(line, document);
+    }
+
+    /** Read-only view of the document, e.g. for scanning without a full copy. */
+    public CharSequence getDocument() {
+        return document;
+    }
+
+    // --- Editing
+
+    public void insertText(int index, String text) {
+        replaceText(index, index, text);
+    }
+
+    public void deleteText(int start, int end) {
+        replaceText(start, end, "");
+    }
+
+    public void deleteText(IndexRange range) {
+        deleteText(range.getStart(), range.getEnd());
+    }
+
+    public void appendText(String text) {
+        insertText(document.length(), text);
+    }
+
+    public void replaceSelection(String text) {
+        IndexRange range = getSelection();
+        replaceText(range.getStart(), range.getEnd(), text);
+    }
+
+    public void replaceText(int start, int end, String text) {
+        if (start > end) throw new IllegalArgumentException("start > end");
+        if (start < 0 || end > document.length()) throw new IndexOutOfBoundsException();
+        replace(start, end, text == null ? "" : text, true);
+    }
+
+    private void replace(int start, int end, String text, boolean recordUndo) {
+        if (start == end && text.isEmpty()) return;
+        TextChange change = new TextChange(start, document.substring(start, end), text);
+        apply(change);
+        if (recordUndo) history.record(change);
+    }
+
+    private void apply(TextChange change) {
+        document.replace(change.getOffset(), change.getRemovedEnd(), change.getInserted());
+        statistics.apply(change, document);
+        highlighter.apply(change, document);
+        int caret = change.getInsertedEnd();
+        setSelection(caret, caret);
+        for (Consumer<TextChange> listener : changeListeners) {
+            listener.accept(change);
+        }
+        notifyAccessibleAttributeChanged(AccessibleAttribute.TEXT);
+    }
+
+    public void addChangeListener(Consumer<TextChange> listener) {
+        changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(Consumer<TextChange> listener) {
+        changeListeners.remove(listener);
+    }
+
+    public void undo() {
+        TextChange change = history.undo();
+        if (change != null) apply(change.inverse());
+    }
+
+    public void redo() {
+        TextChange change = history.redo();
+        if (change != null) apply(change);
+    }
+
+    /**
+     * Caps the undo history: at most {@code maxSteps} steps, of which older ones are compressed
+     * and then moved to a temp file once they use more than {@code memoryKb}.
+     */
+    public void setHistoryLimits(int maxSteps, int memoryKb) {
+        history.setLimits(maxSteps, memoryKb);
+    }
+
+    /** Drops the undo history and its temp file, e.g. when the editor is closed. */
+    public void clearHistory() {
+        history.clear();
+    }
+
+    // --- Caret and selection
+
+    public int getCaretPosition() { return caretPosition.get(); }
+    public ReadOnlyIntegerProperty caretPositionProperty() { return caretPosition.getReadOnlyProperty(); }
+    public int getAnchor() { return anchor.get(); }
+    public IndexRange getSelection() { return selection.get(); }
+    public ReadOnlyObjectProperty<IndexRange> selectionProperty() { return selection.getReadOnlyProperty(); }
+
+    public String getSelectedText() {
+        IndexRange range = getSelection();
+        return document.substring(range.getStart(), range.getEnd());
+    }
+
+    public void positionCaret(int position) {
+        int clamped = clamp(position);
+        selectRange(clamped, clamped);
+    }
+
+    /** Moves the caret and keeps the anchor, extending the selection. */
+    public void selectPositionCaret(int position) {
+        selectRange(getAnchor(), position);
+    }
+
+    public void selectRange(int anchorPosition, int caret) {
+        history.breakMerge();
+        setSelection(clamp(anchorPosition), clamp(caret));
+    }
+
+    public void selectAll() {
+        selectRange(0, document.length());
+    }
+
+    public void deselect() {
+        selectRange(getCaretPosition(), getCaretPosition());
+    }
+
+    private void setSelection(int anchorPosition, int caret) {
+        anchor.set(anchorPosition);
+        int oldCaret = caretPosition.get();
+        caretPosition.set(caret);
+        IndexRange range = new IndexRange(Math.min(anchorPosition, caret), Math.max(anchorPosition, caret));
+        if (!range.equals(selection.get())) {
+            selection.set(range);
+            notifyAccessibleAttributeChanged(AccessibleAttribute.SELECTION_START);
+            notifyAccessibleAttributeChanged(AccessibleAttribute.SELECTION_END);
+        }
+        if (oldCaret != caret) notifyAccessibleAttributeChanged(AccessibleAttribute.CARET_OFFSET);
+    }
+
+    private int clamp(int position) {
+        return Math.max(0, Math.min(position, document.length()));
+    }
+
+    // --- Clipboard
+
+    public void copy() {
+        String selected = getSelectedText();
+        if (selected.isEmpty()) return;
+        ClipboardContent content = new ClipboardContent();
+        content.putString(selected);
+        Clipboard.getSystemClipboard().setContent(content);
+    }
+
+    public void cut() {
+        copy();
+        if (getSelection().getLength() > 0) replaceSelection("");
+    }
+
+    public void paste() {
+        Clipboard clipboard = Clipboard.getSystemClipboard();
+        if (clipboard.hasString()) {
+            String text = clipboard.getString().replace("\r\n", "\n").replace('\r', '\n');
+            replaceSelection(text);
+        }
+    }
+
+    // --- Viewport
+
+    /** Vertical scroll offset in pixels. */
+    public DoubleProperty scrollTopProperty() { return scrollTop; }
+    public double getScrollTop() { return scrollTop.get(); }
+    public void setScrollTop(double value) { scrollTop.set(value); }
+
+    /** Fractional line at the given content y (scroll offset), or -1 before the first layout. */
+    public double getLineAtY(double contentY) {
+        NoteEditorSkin skin = editorSkin();
+        return skin == null ? -1 : skin.lineAtContentY(contentY);
+    }
+
+    /** Content y (scroll offset) where the fractional line starts, or -1 before the first layout. */
+    public double getYOfLine(double line) {
+        NoteEditorSkin skin = editorSkin();
+        return skin == null ? -1 : skin.contentYOfLine(line);
+    }
+
+    /** Text offset at a point in the editor's local coordinates, or -1 before the first layout. */
+    public int getIndexAt(double x, double y) {
+        NoteEditorSkin skin = editorSkin();
+        return skin == null ? -1 : skin.indexAt(x, y);
+    }
+
+    /** Called after the skin has laid out the visible lines, e.g. to keep a gutter in step. */
+    public void addLayoutListener(Runnable listener) {
+        layoutListeners.add(listener);
+    }
+
+    public void removeLayoutListener(Runnable listener) {
+        layoutListeners.remove(listener);
+    }
+
+    void fireLayout() {
+        for (Runnable listener : layoutListeners) {
+            listener.run();
+        }
+    }
+
+    private NoteEditorSkin editorSkin() {
+        return getSkin() instanceof NoteEditorSkin ? (NoteEditorSkin) getSkin() : null;
+    }
+
+    // --- Accessibility
+
+    @Override
+    public Object queryAccessibleAttribute(AccessibleAttribute attribute, Object... parameters) {
+        switch (attribute) {
+            case TEXT:
+                return getText(); // Only copied when an assistive technology asks
+            case EDITABLE:
+                return true;
+            case FONT:
+                return getFont();
+            case CARET_OFFSET:
+                return getCaretPosition();
+            case SELECTION_START:
+                return getSelection().getStart();
+            case SELECTION_END:
+                return getSelection().getEnd();
+            case LINE_FOR_OFFSET:
+                return getLineOfOffset(clamp((Integer) parameters[0]));
+            case LINE_START:
+                return getLineStart(Math.max(0, Math.min((Integer) parameters[0], getLineCount() - 1)));
+            case LINE_END:
+                return getLineEnd(Math.max(0, Math.min((Integer) parameters[0], getLineCount() - 1)));
+            case OFFSET_AT_POINT: {
+                Point2D local = screenToLocal((Point2D) parameters[0]);
+                return local != null ? Math.max(0, getIndexAt(local.getX(), local.getY())) : 0;
+            }
+            default:
+                return super.queryAccessibleAttribute(attribute, parameters);
+        }
+    }
+
+    @Override
+    public void executeAccessibleAction(AccessibleAction action, Object... parameters) {
+        switch (action) {
+            case SET_TEXT:
+                String text = (String) parameters[0];
+                replaceText(0, getLength(), text == null ? "" : text);
+                break;
+            case SET_TEXT_SELECTION:
+                selectRange((Integer) parameters[0], (Integer) parameters[1]);
+                break;
+            default:
+                super.executeAccessibleAction(action, parameters);
+        }
+    }
+
+    // --- Properties
+
+    public StringProperty promptTextProperty() { return promptText; }
+    public String getPromptText() { return promptText.get(); }
+    public void setPromptText(String value) { promptText.set(value); }
+
+    public ObjectProperty<Font> fontProperty() { return font; }
+    public Font getFont() { return font.get(); }
+    public ObjectProperty<Paint> textFillProperty() { return textFill; }
+    public ObjectProperty<Paint> highlightFillProperty() { return highlightFill; }
+    public ObjectProperty<Paint> promptTextFillProperty() { return promptTextFill; }
+
+    public static List<CssMetaData<? extends Styleable, ?>> getClassCssMetaData() {
+        return FACTORY.getCssMetaData();
+    }
+
+    @Override
+    public List<CssMetaData<? extends Styleable, ?>> getControlCssMetaData() {
+        return getClassCssMetaData();
+    }
+}
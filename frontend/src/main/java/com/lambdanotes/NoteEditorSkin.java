@@ -0,0 +1,762 @@
+package com.lambdanotes;
+
+import com.lambdanotes.utils.TextChange;
+import com.lambdanotes.utils.WrappedLineIndex;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.event.EventHandler;
+import javafx.geometry.Orientation;
+import javafx.geometry.Point2D;
+import javafx.geometry.VPos;
+import javafx.scene.control.IndexRange;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.control.SkinBase;
+import javafx.scene.input.InputMethodEvent;
+import javafx.scene.input.InputMethodRequests;
+import javafx.scene.input.InputMethodTextRun;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.shape.ClosePath;
+import javafx.scene.shape.LineTo;
+import javafx.scene.shape.MoveTo;
+import javafx.scene.shape.Path;
+import javafx.scene.shape.PathElement;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import javafx.util.Duration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Virtualized skin of {@link NoteEditor}. Every line is soft-wrapped; the number of visual
+ * rows per line is kept in a {@link WrappedLineIndex} (estimated from the line length,
+ * measured exactly once the line has been on screen), so the first visible line and the
+ * scroll range are found in O(log n). Only the lines inside the viewport get a node, a
+ * {@link HighlightedLine} colored from the editor's incremental Markdown highlighting.
+ */
+class NoteEditorSkin extends SkinBase<NoteEditor> {
+    private static final boolean IS_MAC = System.getProperty("os.name", "").toLowerCase().contains("mac");
+    private static final String WIDTH_SAMPLE = "abcdefghijklmnopqrstuvwxyz ABCDEFGHIJKLMNOPQRSTUVWXYZ 0123456789";
+    // Changes adding more lines than this rebuild the row index in one pass instead of line by line
+    private static final int BULK_CHANGE_LINES = 1000;
+
+    private final NoteEditor editor;
+    private final Pane viewport = new Pane();
+    private final Rectangle clip = new Rectangle();
+    private final Path selectionPath = new Path();
+    private final Path caretPath = new Path();
+    private final Text promptNode = new Text();
+    private final Text measure = new Text();
+    private final ScrollBar scrollBar = new ScrollBar();
+    private final List<HighlightedLine> lineNodes = new ArrayList<>();
+    private final WrappedLineIndex rowIndex = new WrappedLineIndex();
+    private final Timeline caretBlink;
+    private final Consumer<TextChange> changeListener = this::onTextChanged;
+    private final EventHandler<KeyEvent> keyPressedHandler = this::onKeyPressed;
+    private final EventHandler<KeyEvent> keyTypedHandler = this::onKeyTyped;
+    private final EventHandler<ScrollEvent> scrollHandler = this::onScroll;
+
+    private double lineHeight = 16;
+    private double charWidth = 8;
+    private double wrapWidth = -1;
+    private boolean indexValid = false;
+
+    // Lines currently on screen
+    private int firstVisibleLine = 0;
+    private int visibleCount = 0;
+    private int[] visibleStarts = new int[0];
+
+    private double maxScroll = 0;
+    private boolean layingOut = false;
+    private boolean updatingScrollBar = false;
+    private boolean followCaret = false;
+    private boolean caretOn = true;
+    private boolean keepPreferredX = false;
+    private double preferredX = -1; // x the caret returns to when moving up and down
+
+    // Text being composed by an input method (dead keys, CJK), already in the document
+    private int composedStart = -1;
+    private int composedLength = 0;
+    private boolean composing = false; // The input method is editing the document
+    private final InputMethodRequests inputMethodRequests = new InputMethodRequests() {
+        @Override
+        public Point2D getTextLocation(int offset) {
+            // Below the caret, where the candidate window should open
+            double[] caret = caretLocation();
+            Point2D location = caret != null
+                    ? viewport.localToScreen(caret[0], caret[1] + lineHeight)
+                    : editor.localToScreen(editor.snappedLeftInset(), editor.snappedTopInset() + lineHeight);
+            return location != null ? location : new Point2D(0, 0);
+        }
+
+        @Override
+        public int getLocationOffset(int x, int y) {
+            Point2D local = editor.screenToLocal(x, y);
+            int index = local != null ? indexAt(local.getX(), local.getY()) : -1;
+            if (composedStart < 0 || index < 0) return 0;
+            return Math.max(0, Math.min(index - composedStart, composedLength));
+        }
+
+        @Override
+        public void cancelLatestCommittedText() {
+            // Not supported, like in TextInputControl
+        }
+
+        @Override
+        public String getSelectedText() {
+            return editor.getSelectedText();
+        }
+    };
+
+    NoteEditorSkin(NoteEditor editor) {
+        super(editor);
+        this.editor = editor;
+
+        viewport.setClip(clip);
+        viewport.getStyleClass().add("viewport");
+        selectionPath.setStroke(null);
+        selectionPath.setManaged(false);
+        selectionPath.fillProperty().bind(editor.highlightFillProperty());
+        caretPath.setManaged(false);
+        caretPath.setStrokeWidth(1.5);
+        caretPath.strokeProperty().bind(editor.textFillProperty());
+        promptNode.setManaged(false);
+        promptNode.setTextOrigin(VPos.TOP);
+        promptNode.textProperty().bind(editor.promptTextProperty());
+        promptNode.fontProperty().bind(editor.fontProperty());
+        promptNode.fillProperty().bind(editor.promptTextFillProperty());
+        viewport.getChildren().addAll(selectionPath, promptNode, caretPath);
+
+        scrollBar.setOrientation(Orientation.VERTICAL);
+        scrollBar.setVisible(false);
+        scrollBar.valueProperty().addListener((obs, oldVal, newVal) -> {
+            if (!updatingScrollBar) editor.setScrollTop(newVal.doubleValue());
+        });
+        getChildren().addAll(viewport, scrollBar);
+
+        caretBlink = new Timeline(new KeyFrame(Duration.millis(500), e -> {
+            caretOn = !caretOn;
+            updateCaretVisibility();
+        }));
+        caretBlink.setCycleCount(Animation.INDEFINITE);
+
+        editor.addChangeListener(changeListener);
+        registerChangeListener(editor.fontProperty(), obs -> {
+            updateMetrics();
+            editor.requestLayout();
+        });
+        registerChangeListener(editor.scrollTopProperty(), obs -> {
+            if (!layingOut) editor.requestLayout();
+        });
+        registerChangeListener(editor.caretPositionProperty(), obs -> {
+            if (!keepPreferredX) preferredX = -1;
+            followCaret = true;
+            restartBlink();
+            editor.requestLayout();
+        });
+        registerChangeListener(editor.selectionProperty(), obs -> editor.requestLayout());
+        registerChangeListener(editor.focusedProperty(), obs -> {
+            if (editor.isFocused()) restartBlink(); else caretBlink.stop();
+            updateCaretVisibility();
+        });
+
+        editor.addEventHandler(KeyEvent.KEY_PRESSED, keyPressedHandler);
+        editor.addEventHandler(KeyEvent.KEY_TYPED, keyTypedHandler);
+        editor.addEventHandler(ScrollEvent.SCROLL, scrollHandler);
+        // The scene only routes input method events to nodes that set both
+        editor.setInputMethodRequests(inputMethodRequests);
+        editor.setOnInputMethodTextChanged(this::onInputMethodTextChanged);
+        viewport.addEventHandler(MouseEvent.MOUSE_PRESSED, this::onMousePressed);
+        viewport.addEventHandler(MouseEvent.MOUSE_DRAGGED, this::onMouseDragged);
+
+        updateMetrics();
+    }
+
+    @Override
+    public void dispose() {
+        editor.removeChangeListener(changeListener);
+        editor.removeEventHandler(KeyEvent.KEY_PRESSED, keyPressedHandler);
+        editor.removeEventHandler(KeyEvent.KEY_TYPED, keyTypedHandler);
+        editor.removeEventHandler(ScrollEvent.SCROLL, scrollHandler);
+        if (editor.getInputMethodRequests() == inputMethodRequests) editor.setInputMethodRequests(null);
+        editor.setOnInputMethodTextChanged(null);
+        caretBlink.stop();
+        super.dispose();
+    }
+
+    // --- Geometry used by NoteEditor
+
+    double lineAtContentY(double contentY) {
+        if (!indexValid || rowIndex.size() == 0) return -1;
+        double row = (contentY - editor.snappedTopInset()) / lineHeight;
+        if (row <= 0) return 0;
+        int line = rowIndex.lineAtRow((long) row);
+        double fraction = (row - rowIndex.rowsBefore(line)) / rowIndex.getRows(line);
+        return line + Math.max(0, Math.min(1, fraction));
+    }
+
+    double contentYOfLine(double line) {
+        if (!indexValid || rowIndex.size() == 0) return -1;
+        int index = Math.max(0, Math.min((int) line, rowIndex.size() - 1));
+        double fraction = Math.max(0, line - index);
+        double rows = rowIndex.rowsBefore(index) + Math.min(1, fraction) * rowIndex.getRows(index);
+        return editor.snappedTopInset() + rows * lineHeight;
+    }
+
+    int indexAt(double x, double y) {
+        if (!indexValid) return -1;
+        double contentY = y + editor.getScrollTop() - editor.snappedTopInset();
+        if (contentY < 0) return 0;
+        long row = (long) (contentY / lineHeight);
+        if (row >= rowIndex.totalRows()) return editor.getLength();
+        int line = rowIndex.lineAtRow(row);
+        int visible = line - firstVisibleLine;
+        if (visible >= 0 && visible < visibleCount) {
+            HighlightedLine node = lineNodes.get(visible);
+            int hit = node.hitTest(new Point2D(x - node.getLayoutX(), y - node.getLayoutY())).getInsertionIndex();
+            return visibleStarts[visible] + Math.max(0, Math.min(hit, node.getText().length()));
+        }
+        return editor.getLineStart(line);
+    }
+
+    // --- Layout
+
+    @Override
+    protected void layoutChildren(double x, double y, double w, double h) {
+        layingOut = true;
+        try {
+            double width = editor.getWidth();
+            double height = editor.getHeight();
+            double barWidth = scrollBar.prefWidth(-1);
+            scrollBar.resizeRelocate(width - barWidth, 0, barWidth, height);
+            viewport.resizeRelocate(0, 0, width, height);
+            clip.setWidth(width);
+            clip.setHeight(height);
+
+            double newWrapWidth = Math.max(charWidth * 8, Math.min(w, width - barWidth - x));
+            if (!indexValid || newWrapWidth != wrapWidth) {
+                wrapWidth = newWrapWidth;
+                rebuildIndex();
+            }
+
+            double bottomPadding = height - y - h;
+            for (int pass = 0; pass < 3; pass++) {
+                double contentHeight = y + rowIndex.totalRows() * lineHeight + bottomPadding;
+                maxScroll = Math.max(0, contentHeight - height);
+                double scroll = Math.max(0, Math.min(editor.getScrollTop(), maxScroll));
+                if (scroll != editor.getScrollTop()) editor.setScrollTop(scroll);
+
+                layoutLines(x, y, height);
+                if (!followCaret) break;
+                // Measured rows may move the caret, so check again after scrolling to it
+                double target = scrollForCaret(y, height);
+                if (target == editor.getScrollTop()) {
+                    followCaret = false;
+                    break;
+                }
+                editor.setScrollTop(target);
+            }
+            followCaret = false;
+
+            updateSelectionAndCaret();
+            promptNode.setVisible(editor.getLength() == 0);
+            promptNode.relocate(x, y - editor.getScrollTop());
+            updateScrollBar(height, y + rowIndex.totalRows() * lineHeight + bottomPadding);
+        } finally {
+            layingOut = false;
+        }
+        editor.fireLayout();
+    }
+
+    private void layoutLines(double x, double topPadding, double height) {
+        double scroll = editor.getScrollTop();
+        long firstRow = (long) Math.max(0, Math.floor((scroll - topPadding) / lineHeight));
+        int line = rowIndex.lineAtRow(firstRow);
+        double lineY = topPadding + rowIndex.rowsBefore(line) * lineHeight - scroll;
+        int lineCount = rowIndex.size();
+
+        firstVisibleLine = line;
+        int used = 0;
+        while (line < lineCount && lineY < height) {
+            HighlightedLine node = lineNode(used);
+            int start = editor.getLineStart(line);
+            node.setLine(editor.getText(start, editor.getLineEnd(line)), editor.getHighlightSpans(line));
+            double nodeHeight = node.prefHeight(wrapWidth);
+            node.resizeRelocate(x, lineY, wrapWidth, nodeHeight);
+            node.layout();
+            if (visibleStarts.length <= used) {
+                int[] grown = new int[Math.max(64, visibleStarts.length * 2)];
+                System.arraycopy(visibleStarts, 0, grown, 0, visibleStarts.length);
+                visibleStarts = grown;
+            }
+            visibleStarts[used] = start;
+
+            int rows = Math.max(1, (int) Math.round(nodeHeight / lineHeight));
+            rowIndex.setRows(line, rows);
+            lineY += rows * lineHeight;
+            line++;
+            used++;
+        }
+        visibleCount = used;
+        for (int i = used; i < lineNodes.size(); i++) {
+            lineNodes.get(i).setVisible(false);
+        }
+    }
+
+    private HighlightedLine lineNode(int index) {
+        while (lineNodes.size() <= index) {
+            HighlightedLine node = new HighlightedLine(editor);
+            lineNodes.add(node);
+            // Above the selection, below the caret
+            viewport.getChildren().add(viewport.getChildren().indexOf(caretPath), node);
+        }
+        HighlightedLine node = lineNodes.get(index);
+        node.setVisible(true);
+        return node;
+    }
+
+    // Scroll offset that shows the caret row, the current one if it is already visible
+    private double scrollForCaret(double topPadding, double height) {
+        double scroll = editor.getScrollTop();
+        double[] caret = caretLocation();
+        double top;
+        if (caret != null) {
+            top = caret[1] + scroll;
+        } else {
+            int line = Math.min(editor.getLineOfOffset(editor.getCaretPosition()), rowIndex.size() - 1);
+            top = topPadding + rowIndex.rowsBefore(line) * lineHeight;
+        }
+        if (top < scroll) return Math.max(0, top - (scroll - top < lineHeight ? 0 : topPadding));
+        if (top + lineHeight > scroll + height) return Math.min(maxScroll, top + lineHeight - height + lineHeight);
+        return scroll;
+    }
+
+    private void updateSelectionAndCaret() {
+        selectionPath.getElements().clear();
+        caretPath.getElements().clear();
+        IndexRange selection = editor.getSelection();
+        int caret = editor.getCaretPosition();
+
+        for (int i = 0; i < visibleCount; i++) {
+            HighlightedLine node = lineNodes.get(i);
+            int start = visibleStarts[i];
+            int end = start + node.getText().length();
+            if (selection.getLength() > 0 && selection.getStart() <= end && selection.getEnd() >= start) {
+                int from = Math.max(selection.getStart(), start) - start;
+                int to = Math.min(selection.getEnd(), end) - start;
+                if (from < to) {
+                    addTranslated(selectionPath.getElements(), node.rangeShape(from, to), node.getLayoutX(), node.getLayoutY());
+                }
+                if (selection.getEnd() > end) {
+                    // The line break is selected too, show it as a narrow box at the end of the line
+                    PathElement[] endShape = node.caretShape(end - start, true);
+                    if (endShape.length > 0 && endShape[0] instanceof MoveTo) {
+                        MoveTo top = (MoveTo) endShape[0];
+                        double left = node.getLayoutX() + top.getX();
+                        double rowTop = node.getLayoutY() + top.getY();
+                        selectionPath.getElements().addAll(new MoveTo(left, rowTop), new LineTo(left + charWidth / 2, rowTop),
+                                new LineTo(left + charWidth / 2, rowTop + lineHeight), new LineTo(left, rowTop + lineHeight), new ClosePath());
+                    }
+                }
+            }
+            if (caret >= start && caret <= end && caretPath.getElements().isEmpty()) {
+                addTranslated(caretPath.getElements(), node.caretShape(caret - start, true), node.getLayoutX(), node.getLayoutY());
+            }
+        }
+        updateCaretVisibility();
+    }
+
+    private void updateCaretVisibility() {
+        caretPath.setVisible(editor.isFocused() && caretOn);
+    }
+
+    private void restartBlink() {
+        caretOn = true;
+        updateCaretVisibility();
+        if (editor.isFocused()) caretBlink.playFromStart();
+    }
+
+    private void updateScrollBar(double height, double contentHeight) {
+        updatingScrollBar = true;
+        try {
+            scrollBar.setVisible(maxScroll > 0);
+            scrollBar.setMin(0);
+            scrollBar.setMax(maxScroll);
+            scrollBar.setVisibleAmount(contentHeight > 0 ? maxScroll * height / contentHeight : 0);
+            scrollBar.setUnitIncrement(lineHeight * 3);
+            scrollBar.setBlockIncrement(Math.max(lineHeight, height - lineHeight));
+            scrollBar.setValue(editor.getScrollTop());
+        } finally {
+            updatingScrollBar = false;
+        }
+    }
+
+    // Caret position in viewport coordinates {x, top}, or null if its line is not on screen
+    private double[] caretLocation() {
+        int caret = editor.getCaretPosition();
+        for (int i = 0; i < visibleCount; i++) {
+            HighlightedLine node = lineNodes.get(i);
+            int start = visibleStarts[i];
+            if (caret >= start && caret <= start + node.getText().length()) {
+                PathElement[] shape = node.caretShape(caret - start, true);
+                if (shape.length == 0 || !(shape[0] instanceof MoveTo)) return null;
+                MoveTo top = (MoveTo) shape[0];
+                return new double[] {node.getLayoutX() + top.getX(), node.getLayoutY() + top.getY()};
+            }
+        }
+        return null;
+    }
+
+    // --- Index of visual rows
+
+    private void updateMetrics() {
+        Font font = editor.getFont();
+        measure.setFont(font);
+        measure.setText("X");
+        lineHeight = Math.max(1, measure.getLayoutBounds().getHeight());
+        measure.setText(WIDTH_SAMPLE);
+        charWidth = Math.max(1, measure.getLayoutBounds().getWidth() / WIDTH_SAMPLE.length());
+        indexValid = false;
+    }
+
+    private void rebuildIndex() {
+        int[] lengths = editor.getLineLengths();
+        rowIndex.reset(lengths.length, line -> estimateRows(lengths[line]));
+        indexValid = true;
+    }
+
+    private int estimateRows(int length) {
+        if (wrapWidth <= 0 || length == 0) return 1;
+        return Math.max(1, (int) Math.ceil(length * charWidth / wrapWidth));
+    }
+
+    private void onTextChanged(TextChange change) {
+        if (!composing) {
+            // Any other edit ends the composition; the composed text stays as typed
+            composedStart = -1;
+            composedLength = 0;
+        }
+        if (indexValid) {
+            int inserted = change.getInsertedLineBreaks() + 1;
+            if (inserted > BULK_CHANGE_LINES) {
+                indexValid = false;
+            } else {
+                int first = editor.getLineOfOffset(change.getOffset());
+                rowIndex.replaceLines(first, change.getRemovedLineBreaks() + 1, inserted,
+                        line -> estimateRows(editor.getLineEnd(line) - editor.getLineStart(line)));
+            }
+        }
+        followCaret = true;
+        editor.requestLayout();
+    }
+
+    // --- Input
+
+    private void onKeyPressed(KeyEvent event) {
+        boolean shift = event.isShiftDown();
+        boolean shortcut = event.isShortcutDown();
+        boolean word = IS_MAC ? event.isAltDown() : event.isControlDown();
+        int caret = editor.getCaretPosition();
+        IndexRange selection = editor.getSelection();
+
+        switch (event.getCode()) {
+            case LEFT:
+                if (IS_MAC && shortcut) moveCaret(lineStartOf(caret), shift);
+                else if (!shift && selection.getLength() > 0 && !word) moveCaret(selection.getStart(), false);
+                else moveCaret(word ? previousWord(caret) : previousChar(caret), shift);
+                break;
+            case RIGHT:
+                if (IS_MAC && shortcut) moveCaret(lineEndOf(caret), shift);
+                else if (!shift && selection.getLength() > 0 && !word) moveCaret(selection.getEnd(), false);
+                else moveCaret(word ? nextWord(caret) : nextChar(caret), shift);
+                break;
+            case UP:
+                if (IS_MAC && shortcut) moveCaret(0, shift); else moveVertically(-1, shift);
+                break;
+            case DOWN:
+                if (IS_MAC && shortcut) moveCaret(editor.getLength(), shift); else moveVertically(1, shift);
+                break;
+            case PAGE_UP:
+                moveVertically(-pageRows(), shift);
+                break;
+            case PAGE_DOWN:
+                moveVertically(pageRows(), shift);
+                break;
+            case HOME:
+                moveCaret(shortcut ? 0 : lineStartOf(caret), shift);
+                break;
+            case END:
+                moveCaret(shortcut ? editor.getLength() : lineEndOf(caret), shift);
+                break;
+            case BACK_SPACE:
+                if (selection.getLength() > 0) editor.replaceSelection("");
+                else if (caret > 0) editor.deleteText(word ? previousWord(caret) : previousChar(caret), caret);
+                break;
+            case DELETE:
+                if (shift && selection.getLength() > 0) editor.cut();
+                else if (selection.getLength() > 0) editor.replaceSelection("");
+                else if (caret < editor.getLength()) editor.deleteText(caret, word ? nextWord(caret) : nextChar(caret));
+                break;
+            case ENTER:
+                editor.replaceSelection("\n");
+                break;
+            case TAB:
+                if (shortcut) return;
+                editor.replaceSelection("\t");
+                break;
+            case INSERT:
+                if (shortcut) editor.copy(); else if (shift) editor.paste(); else return;
+                break;
+            case A:
+                if (!shortcut) return;
+                editor.selectAll();
+                break;
+            case C:
+                if (!shortcut) return;
+                editor.copy();
+                break;
+            case X:
+                if (!shortcut) return;
+                editor.cut();
+                break;
+            case V:
+                if (!shortcut) return;
+                editor.paste();
+                break;
+            case Z:
+                if (!shortcut) return;
+                if (shift) editor.redo(); else editor.undo();
+                break;
+            case Y:
+                if (!shortcut) return;
+                editor.redo();
+                break;
+            default:
+                return;
+        }
+        event.consume();
+    }
+
+    private void onKeyTyped(KeyEvent event) {
+        String character = event.getCharacter();
+        // Ctrl+Alt is AltGr on Windows keyboards and types characters
+        if (character.isEmpty() || event.isMetaDown() || (event.isControlDown() && !event.isAltDown())) return;
+        char c = character.charAt(0);
+        // Enter, Tab and other control characters are handled on KEY_PRESSED
+        if (c < 0x20 || c == 0x7f) return;
+        editor.replaceSelection(character);
+        event.consume();
+    }
+
+    // Replaces the previous composed text, or the selection, with the committed and the new composed text
+    private void onInputMethodTextChanged(InputMethodEvent event) {
+        int start;
+        int end;
+        if (composedStart >= 0 && composedStart + composedLength <= editor.getLength()) {
+            start = composedStart;
+            end = composedStart + composedLength;
+        } else {
+            IndexRange selection = editor.getSelection();
+            start = selection.getStart();
+            end = selection.getEnd();
+        }
+        StringBuilder composed = new StringBuilder();
+        for (InputMethodTextRun run : event.getComposed()) {
+            composed.append(run.getText());
+        }
+        String committed = event.getCommitted();
+        composing = true;
+        try {
+            editor.replaceText(start, end, committed + composed);
+        } finally {
+            composing = false;
+        }
+
+        if (composed.length() > 0) {
+            composedStart = start + committed.length();
+            composedLength = composed.length();
+            editor.positionCaret(composedStart + Math.max(0, Math.min(event.getCaretPosition(), composedLength)));
+        } else {
+            composedStart = -1;
+            composedLength = 0;
+        }
+        event.consume();
+    }
+
+    private void onScroll(ScrollEvent event) {
+        if (event.getDeltaY() == 0) return;
+        editor.setScrollTop(Math.max(0, Math.min(maxScroll, editor.getScrollTop() - event.getDeltaY())));
+        event.consume();
+    }
+
+    private void onMousePressed(MouseEvent event) {
+        editor.requestFocus();
+        int index = indexAt(event.getX(), event.getY());
+        if (index < 0) return;
+        if (event.getButton() != MouseButton.PRIMARY) {
+            // Right click keeps a selection it lands in, for the context menu
+            IndexRange selection = editor.getSelection();
+            if (index < selection.getStart() || index > selection.getEnd()) editor.positionCaret(index);
+            return;
+        }
+        if (event.getClickCount() == 2) {
+            int start = index;
+            while (start > 0 && isWordChar(editor.getDocument().charAt(start - 1))) start--;
+            int end = index;
+            while (end < editor.getLength() && isWordChar(editor.getDocument().charAt(end))) end++;
+            editor.selectRange(start, end);
+        } else if (event.getClickCount() >= 3) {
+            int line = editor.getLineOfOffset(index);
+            int end = editor.getLineEnd(line);
+            editor.selectRange(editor.getLineStart(line), end < editor.getLength() ? end + 1 : end);
+        } else if (event.isShiftDown()) {
+            editor.selectPositionCaret(index);
+        } else {
+            editor.positionCaret(index);
+        }
+        event.consume();
+    }
+
+    private void onMouseDragged(MouseEvent event) {
+        if (!event.isPrimaryButtonDown()) return;
+        double y = event.getY();
+        if (y < 0 || y > editor.getHeight()) {
+            // Scroll while selecting past the edges
+            double step = y < 0 ? -lineHeight : lineHeight;
+            editor.setScrollTop(Math.max(0, Math.min(maxScroll, editor.getScrollTop() + step)));
+            editor.layout();
+        }
+        int index = indexAt(event.getX(), Math.max(0, Math.min(y, editor.getHeight() - 1)));
+        if (index >= 0) {
+            followCaret = false;
+            editor.selectPositionCaret(index);
+        }
+        event.consume();
+    }
+
+    private void moveCaret(int position, boolean select) {
+        if (select) editor.selectPositionCaret(position); else editor.positionCaret(position);
+    }
+
+    private void moveVertically(int rows, boolean select) {
+        double[] caret = caretLocation();
+        if (caret == null) {
+            followCaret = true;
+            editor.requestLayout();
+            editor.layout();
+            caret = caretLocation();
+            if (caret == null) return;
+        }
+        if (preferredX < 0) preferredX = caret[0];
+
+        double scroll = editor.getScrollTop();
+        double targetY = caret[1] + scroll + rows * lineHeight + lineHeight / 2;
+        double height = editor.getHeight();
+        if (targetY - scroll < 0 || targetY - scroll > height) {
+            // Bring the target row on screen so it can be hit tested
+            double newScroll = targetY - scroll < 0 ? targetY - lineHeight / 2 : targetY - height + lineHeight;
+            editor.setScrollTop(Math.max(0, Math.min(maxScroll, newScroll)));
+            editor.layout();
+        }
+        int index = indexAt(preferredX, targetY - editor.getScrollTop());
+        keepPreferredX = true;
+        try {
+            moveCaret(index, select);
+        } finally {
+            keepPreferredX = false;
+        }
+    }
+
+    private int pageRows() {
+        return Math.max(1, (int) (editor.getHeight() / lineHeight) - 1);
+    }
+
+    private int lineStartOf(int offset) {
+        return editor.getLineStart(editor.getLineOfOffset(offset));
+    }
+
+    private int lineEndOf(int offset) {
+        return editor.getLineEnd(editor.getLineOfOffset(offset));
+    }
+
+    private int previousChar(int offset) {
+        CharSequence text = editor.getDocument();
+        if (offset >= 2 && Character.isLowSurrogate(text.charAt(offset - 1)) && Character.isHighSurrogate(text.charAt(offset - 2))) {
+            return offset - 2;
+        }
+        return Math.max(0, offset - 1);
+    }
+
+    private int nextChar(int offset) {
+        CharSequence text = editor.getDocument();
+        if (offset + 1 < text.length() && Character.isHighSurrogate(text.charAt(offset)) && Character.isLowSurrogate(text.charAt(offset + 1))) {
+            return offset + 2;
+        }
+        return Math.min(text.length(), offset + 1);
+    }
+
+    private int previousWord(int offset) {
+        CharSequence text = editor.getDocument();
+        int i = offset;
+        while (i > 0 && Character.isWhitespace(text.charAt(i - 1))) i--;
+        if (i > 0 && isWordChar(text.charAt(i - 1))) {
+            while (i > 0 && isWordChar(text.charAt(i - 1))) i--;
+        } else if (i > 0) {
+            i--;
+        }
+        return i;
+    }
+
+    private int nextWord(int offset) {
+        CharSequence text = editor.getDocument();
+        int length = text.length();
+        int i = offset;
+        if (i < length && isWordChar(text.charAt(i))) {
+            while (i < length && isWordChar(text.charAt(i))) i++;
+        } else if (i < length && !Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        while (i < length && Character.isWhitespace(text.charAt(i)) && text.charAt(i) != '\n') i++;
+        return i;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private static void addTranslated(List<PathElement> target, PathElement[] elements, double dx, double dy) {
+        for (PathElement element : elements) {
+            if (element instanceof MoveTo) {
+                MoveTo move = (MoveTo) element;
+                target.add(new MoveTo(move.getX() + dx, move.getY() + dy));
+            } else if (element instanceof LineTo) {
+                LineTo line = (LineTo) element;
+                target.add(new LineTo(line.getX() + dx, line.getY() + dy));
+            } else if (element instanceof ClosePath) {
+                target.add(new ClosePath());
+            }
+        }
+    }
+
+    @Override
+    protected double computePrefWidth(double height, double topInset, double rightInset, double bottomInset, double leftInset) {
+        return 400;
+    }
+
+    @Override
+    protected double computePrefHeight(double width, double topInset, double rightInset, double bottomInset, double leftInset) {
+        return 300;
+    }
+
+    @Override
+    protected double computeMinHeight(double width, double topInset, double rightInset, double bottomInset, double leftInset) {
+        return topInset + lineHeight + bottomInset;
+    }
+}
@@ -0,0 +1,127 @@
+package com.lambdanotes;
+
+import javafx.application.Platform;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Follows the backend's change stream on a background thread and hands the events to the FX
+ * thread in batches, in the order they happened. It remembers the last event it read, so after
+ * a dropped connection it resumes from there; if the backend can no longer replay that far or
+ * was restarted, the batch contains a reset event and the whole note list has to be reloaded.
+ */
+public class NoteEventStream {
+    private static final Logger logger = Logger.getLogger(NoteEventStream.class.getName());
+    private static final long MIN_RETRY_MS = 500;
+    private static final long MAX_RETRY_MS = 10_000;
+
+    private final NoteService noteService;
+    private final Consumer<List<NoteService.NoteEvent>> onEvents;
+    private final Queue<NoteService.NoteEvent> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private volatile boolean running;
+    private volatile boolean connected;
+    private Thread thread;
+    private long lastSeq = -1; // Only used by the reader thread
+    private String streamId;
+
+    /** {@code onEvents} is called on the FX thread with created, modified, deleted, moved and reset events. */
+    public NoteEventStream(NoteService noteService, Consumer<List<NoteService.NoteEvent>> onEvents) {
+        this.noteService = noteService;
+        this.onEvents = onEvents;
+    }
+
+    public void start() {
+        if (running) return;
+        running = true;
+        thread = new Thread(this::run, "note-events");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (thread != null) thread.interrupt(); // Unblocks the read
+    }
+
+    /** Whether events are arriving, i.e. the note list does not need reloading after changes. */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    private void run() {
+        long retryMs = MIN_RETRY_MS;
+        while (running) {
+            try {
+                HttpResponse<Stream<String>> response = noteService.openEventStream(lastSeq, streamId).get();
+                try (Stream<String> lines = response.body()) {
+                    if (response.statusCode() != 200) {
+                        throw new IOException("Event stream answered " + response.statusCode());
+                    }
+                    Iterator<String> it = lines.iterator();
+                    while (running && it.hasNext()) {
+                        read(it.next());
+                        connected = true;
+                        retryMs = MIN_RETRY_MS;
+                    }
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                if (running) logger.log(Level.FINE, "Event stream interrupted, reconnecting", e);
+            } finally {
+                connected = false;
+            }
+            try {
+                Thread.sleep(retryMs);
+            } catch (InterruptedException e) {
+                break;
+            }
+            retryMs = Math.min(retryMs * 2, MAX_RETRY_MS);
+        }
+    }
+
+    private void read(String line) {
+        if (line.isBlank()) return;
+        NoteService.NoteEvent event = noteService.parseEvent(line);
+        if (event == null || event.type == null) return;
+        switch (event.type) {
+            case "hello":
+                streamId = event.stream;
+                if (lastSeq < 0) lastSeq = event.seq; // First connection: start from now
+                return;
+            case "ping":
+                return;
+            default:
+                // Reset carries the position to continue from, like any other event
+                lastSeq = event.seq;
+                post(event);
+        }
+    }
+
+    private void post(NoteService.NoteEvent event) {
+        pending.add(event);
+        if (drainScheduled.compareAndSet(false, true)) Platform.runLater(this::drain);
+    }
+
+    // Everything that arrived since the last drain goes out as one batch, e.g. all notes of a git pull
+    private void drain() {
+        drainScheduled.set(false);
+        List<NoteService.NoteEvent> batch = new ArrayList<>();
+        for (NoteService.NoteEvent event = pending.poll(); event != null; event = pending.poll()) {
+            batch.add(event);
+        }
+        if (!batch.isEmpty()) onEvents.accept(batch);
+    }
+}
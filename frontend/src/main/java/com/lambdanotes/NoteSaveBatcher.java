@@ -0,0 +1,215 @@
+package com.lambdanotes;
+
+import com.lambdanotes.utils.TextChange;
+import javafx.application.Platform;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the set of editors edited since their last save and writes all of them in one request.
+ * Called on the FX thread; the future returned by {@link #flush()} completes on the HTTP thread
+ * as soon as the backend has answered, so it can be waited on while the app shuts down.
+ */
+public class NoteSaveBatcher {
+    private static final Logger logger = Logger.getLogger(NoteSaveBatcher.class.getName());
+
+    /** Told about each finished save, on the FX thread. */
+    public interface Listener {
+        void saved(NoteSaveState state, NoteSaveState.Save save, boolean created);
+
+        /** The editor was edited back to its saved text, so there was nothing to send. */
+        void clean(NoteSaveState state);
+
+        /** {@code state} is null for text queued with {@link #saveDetached}. */
+        void failed(NoteSaveState state, String error);
+    }
+
+    private static final class Tracked {
+        final NoteSaveState state;
+        final Supplier<String> path;
+        final Consumer<TextChange> changeListener;
+
+        Tracked(NoteSaveState state, Supplier<String> path, Consumer<TextChange> changeListener) {
+            this.state = state;
+            this.path = path;
+            this.changeListener = changeListener;
+        }
+    }
+
+    private final NoteService noteService;
+    private final Listener listener;
+    private final Map<NoteEditor, Tracked> tracked = new HashMap<>();
+    private final Set<NoteSaveState> dirty = new LinkedHashSet<>();
+    private final Map<String, String> detached = new LinkedHashMap<>(); // Full text to save per path, without an editor
+    private CompletableFuture<Void> running = CompletableFuture.completedFuture(null);
+
+    public NoteSaveBatcher(NoteService noteService, Listener listener) {
+        this.noteService = noteService;
+        this.listener = listener;
+    }
+
+    /** Starts tracking an editor that saves to the path given by {@code path} at flush time. */
+    public NoteSaveState track(NoteEditor editor, Supplier<String> path) {
+        NoteSaveState state = new NoteSaveState(editor);
+        Consumer<TextChange> changeListener = change -> dirty.add(state);
+        editor.addChangeListener(changeListener);
+        tracked.put(editor, new Tracked(state, path, changeListener));
+        return state;
+    }
+
+    /** Stops tracking an editor, e.g. when its tab closes. Flush first to keep its edits. */
+    public void untrack(NoteEditor editor) {
+        Tracked entry = tracked.remove(editor);
+        if (entry == null) return;
+        editor.removeChangeListener(entry.changeListener);
+        dirty.remove(entry.state);
+    }
+
+    public NoteSaveState get(NoteEditor editor) {
+        Tracked entry = tracked.get(editor);
+        return entry != null ? entry.state : null;
+    }
+
+    /** Queues an editor for the next flush even if it was not edited, e.g. for a manual save. */
+    public void markDirty(NoteEditor editor) {
+        Tracked entry = tracked.get(editor);
+        if (entry != null) dirty.add(entry.state);
+    }
+
+    /** Queues the text of a note that has no editor any more, e.g. a closed hibernated tab. */
+    public void saveDetached(String path, String content) {
+        detached.put(path, content);
+    }
+
+    public boolean hasPendingSaves() {
+        return !dirty.isEmpty() || !detached.isEmpty() || !running.isDone();
+    }
+
+    /**
+     * Sends every dirty editor in one request. The future completes once this request and any
+     * still running one are answered, exceptionally if a note could not be saved.
+     */
+    public CompletableFuture<Void> flush() {
+        List<NoteSaveState> states = new ArrayList<>();
+        List<NoteSaveState.Save> saves = new ArrayList<>();
+        List<NoteService.BatchEntry> entries = new ArrayList<>();
+        for (NoteSaveState state : new ArrayList<>(dirty)) {
+            String path = tracked.get(state.getEditor()).path.get();
+            if (path == null || path.isEmpty()) continue; // Stays dirty until the note has a name
+            NoteSaveState.Save save = state.begin(path);
+            if (save == null) {
+                // Unchanged, or saved by the running request and picked up once that is done
+                if (!state.isSaving()) {
+                    dirty.remove(state);
+                    listener.clean(state);
+                }
+                continue;
+            }
+            dirty.remove(state);
+            states.add(state);
+            saves.add(save);
+            entries.add(entry(save, save.getPatches() != null));
+        }
+        Map<String, String> detachedSaves = new LinkedHashMap<>(detached);
+        detached.clear();
+        for (Map.Entry<String, String> note : detachedSaves.entrySet()) {
+            NoteService.BatchEntry entry = new NoteService.BatchEntry();
+            entry.filename = note.getKey();
+            entry.content = note.getValue();
+            entries.add(entry);
+        }
+        if (entries.isEmpty()) return running.isDone() ? CompletableFuture.completedFuture(null) : running;
+
+        CompletableFuture<Void> request = noteService.saveBatch(entries)
+                .thenCompose(results -> retryConflicts(saves, results))
+                .handle((results, error) -> {
+                    Platform.runLater(() -> finish(states, saves, detachedSaves, results, error));
+                    if (error != null) throw new RuntimeException("Save failed", error);
+                    for (NoteService.BatchResult result : results) {
+                        if (result.error != null) throw new RuntimeException("Save of " + result.filename + " failed: " + result.error);
+                    }
+                    return null;
+                });
+        running = CompletableFuture.allOf(running.exceptionally(e -> null), request);
+        return running;
+    }
+
+    private static NoteService.BatchEntry entry(NoteSaveState.Save save, boolean asPatch) {
+        NoteService.BatchEntry entry = new NoteService.BatchEntry();
+        entry.filename = save.getPath();
+        if (asPatch) {
+            entry.baseHash = save.getBaseHash();
+            entry.patches = save.getPatches();
+        } else {
+            entry.content = save.getContent();
+        }
+        return entry;
+    }
+
+    // Notes whose patch base was outdated, e.g. changed outside the app, go again in full
+    private CompletableFuture<List<NoteService.BatchResult>> retryConflicts(List<NoteSaveState.Save> saves, List<NoteService.BatchResult> results) {
+        List<Integer> conflicts = new ArrayList<>();
+        List<NoteService.BatchEntry> retries = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i).conflict) {
+                logger.info("Patch base of " + saves.get(i).getPath() + " is outdated, saving the full note");
+                conflicts.add(i);
+                retries.add(entry(saves.get(i), false));
+            }
+        }
+        if (retries.isEmpty()) return CompletableFuture.completedFuture(results);
+
+        return noteService.saveBatch(retries).thenApply(retried -> {
+            List<NoteService.BatchResult> merged = new ArrayList<>(results);
+            for (int i = 0; i < conflicts.size(); i++) {
+                merged.set(conflicts.get(i), retried.get(i));
+            }
+            return merged;
+        });
+    }
+
+    private void finish(List<NoteSaveState> states, List<NoteSaveState.Save> saves, Map<String, String> detachedSaves,
+                        List<NoteService.BatchResult> results, Throwable error) {
+        boolean again = false;
+        for (int i = 0; i < states.size(); i++) {
+            NoteSaveState state = states.get(i);
+            NoteSaveState.Save save = saves.get(i);
+            NoteService.BatchResult result = results != null ? results.get(i) : null;
+            if (result != null && result.error == null && !result.conflict) {
+                state.succeeded(save, result.hash);
+                listener.saved(state, save, result.created);
+                // Edits made while the request was running
+                if (dirty.contains(state)) again = true;
+            } else {
+                String message = result != null ? result.error : (error != null ? error.getMessage() : "unknown error");
+                logger.log(Level.WARNING, "Saving " + save.getPath() + " failed: " + message);
+                state.failed(save);
+                // Retried with the next flush rather than right away
+                if (tracked.containsKey(state.getEditor())) dirty.add(state);
+                listener.failed(state, message);
+            }
+        }
+        int index = states.size();
+        for (Map.Entry<String, String> note : detachedSaves.entrySet()) {
+            NoteService.BatchResult result = results != null ? results.get(index++) : null;
+            if (result == null || result.error != null) {
+                String message = result != null ? result.error : (error != null ? error.getMessage() : "unknown error");
+                logger.log(Level.WARNING, "Saving " + note.getKey() + " failed: " + message);
+                detached.putIfAbsent(note.getKey(), note.getValue()); // Unless newer text was queued meanwhile
+                listener.failed(null, message);
+            }
+        }
+        if (again) flush();
+    }
+}
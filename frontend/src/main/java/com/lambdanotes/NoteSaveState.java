@@ -0,0 +1,133 @@
+package com.lambdanotes;
+
+import com.lambdanotes.utils.ContentHash;
+import com.lambdanotes.utils.TextChange;
+import com.lambdanotes.utils.TextPatch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What the backend has of one editor's note: the hash of the last saved content and the
+ * edits made since. A save sends those edits as patches against that hash, or nothing at all
+ * if the text is back to what was saved.
+ */
+public class NoteSaveState {
+    private final NoteEditor editor;
+    private String path;
+    private String savedHash; // null until the note is known to be on disk
+    private List<TextChange> unsaved = new ArrayList<>();
+    private Save inFlight;
+
+    /** One save in progress. {@link #getPatches()} is null for a full save. */
+    public static final class Save {
+        private final String path;
+        private final String baseHash;
+        private final String hash;
+        private final String content;
+        private final List<TextPatch> patches;
+        private final List<TextChange> changes;
+
+        private Save(String path, String baseHash, String hash, String content, List<TextPatch> patches, List<TextChange> changes) {
+            this.path = path;
+            this.baseHash = baseHash;
+            this.hash = hash;
+            this.content = content;
+            this.patches = patches;
+            this.changes = changes;
+        }
+
+        public String getPath() { return path; }
+        public String getBaseHash() { return baseHash; }
+        public String getHash() { return hash; }
+        public String getContent() { return content; }
+        public List<TextPatch> getPatches() { return patches; }
+    }
+
+    public NoteSaveState(NoteEditor editor) {
+        this.editor = editor;
+        editor.addChangeListener(change -> {
+            if (path != null) unsaved.add(change);
+        });
+    }
+
+    public NoteEditor getEditor() { return editor; }
+    public String getPath() { return path; }
+    public String getSavedHash() { return savedHash; }
+
+    /** The editor now shows the note as it is on disk, e.g. right after loading it. */
+    public void markLoaded(String notePath) {
+        path = notePath;
+        savedHash = ContentHash.of(editor.getText());
+        unsaved = new ArrayList<>();
+        inFlight = null;
+    }
+
+    /**
+     * The editor shows unsaved text of {@code notePath}, e.g. restored after hibernation, while
+     * the backend still has the content hashing to {@code diskHash}. The next save is a full one.
+     */
+    public void markRestored(String notePath, String diskHash) {
+        path = notePath;
+        savedHash = diskHash;
+        unsaved = new ArrayList<>();
+        inFlight = null;
+    }
+
+    /** The note was moved or renamed on disk; its content and the pending edits stay valid. */
+    public void renamed(String notePath) {
+        path = notePath;
+    }
+
+    /** Whether the editor was edited since the last save, without checking for a net change. */
+    public boolean hasUnsavedEdits() {
+        return !unsaved.isEmpty() || savedHash == null;
+    }
+
+    public boolean isSaving() {
+        return inFlight != null;
+    }
+
+    /**
+     * Starts saving the editor as {@code notePath}. Returns null when there is nothing to send:
+     * another save is still running or the text hashes to the last saved content.
+     */
+    public Save begin(String notePath) {
+        if (inFlight != null) return null;
+        String content = editor.getText();
+        String hash = ContentHash.of(content);
+        boolean samePath = notePath.equals(path);
+        if (samePath && hash.equals(savedHash)) {
+            unsaved = new ArrayList<>(); // Edited back to the saved text
+            return null;
+        }
+
+        if (!samePath) savedHash = null; // Nothing known about the new path yet
+
+        List<TextChange> changes = unsaved;
+        unsaved = new ArrayList<>();
+        List<TextPatch> patches = null;
+        if (samePath && savedHash != null && !changes.isEmpty()) {
+            patches = TextPatch.compact(changes);
+            if (TextPatch.size(patches) >= content.length()) patches = null; // Not worth it
+        }
+        path = notePath;
+        inFlight = new Save(notePath, savedHash, hash, content, patches, changes);
+        return inFlight;
+    }
+
+    public void succeeded(Save save, String hash) {
+        if (save != inFlight) return;
+        inFlight = null;
+        savedHash = hash != null ? hash : save.hash;
+    }
+
+    public void failed(Save save) {
+        if (save != inFlight) return;
+        inFlight = null;
+        // Edits made while saving come after the ones that failed to go out
+        List<TextChange> retry = new ArrayList<>(save.changes);
+        retry.addAll(unsaved);
+        unsaved = retry;
+    }
+}
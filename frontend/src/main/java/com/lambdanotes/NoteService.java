@@ -2,16 +2,21 @@ package com.lambdanotes;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import com.lambdanotes.utils.TextPatch;
 
 import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 public class NoteService {
     private static final Logger logger = Logger.getLogger(NoteService.class.getName());
@@ -41,6 +46,32 @@ public class NoteService {
                 .thenApply(body -> gson.fromJson(body, new TypeToken<List<String>>(){}.getType()));
     }
 
+    /** What the backend knows about a note without reading it. */
+    public static class NoteMeta {
+        public String path;
+        public long size;       // Bytes
+        public long modTime;    // Epoch milliseconds
+        public String hash;     // SHA-256 of the content, as in SaveResponse
+        public String title;    // First heading, null if there is none
+        public boolean tracked; // Committed to the notes repository
+    }
+
+    /** All notes with their metadata, in one request and without their contents. */
+    public CompletableFuture<List<NoteMeta>> getNoteMetas() {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(API_URL + "/notes?meta=1"))
+                .GET()
+                .build();
+
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new RuntimeException("Listing notes failed: " + response.statusCode());
+                    }
+                    return gson.<List<NoteMeta>>fromJson(response.body(), new TypeToken<List<NoteMeta>>(){}.getType());
+                });
+    }
+
     public CompletableFuture<Note> getNoteDetail(String filename) {
         HttpRequest request = HttpRequest.newBuilder()
                 .uri(URI.create(API_URL + "/notes/" + filename))
@@ -52,7 +83,74 @@ public class NoteService {
                 .thenApply(body -> gson.fromJson(body, Note.class));
     }
 
-    public CompletableFuture<Void> saveNote(Note note) {
+    /** Size of the note file in bytes, known before any of it is read. */
+    public CompletableFuture<Long> getNoteSize(String filename) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(API_URL + "/notes/" + filename))
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new RuntimeException("Note not found: " + filename);
+                    }
+                    return response.headers().firstValueAsLong("Content-Length").orElse(-1);
+                });
+    }
+
+    /** Bytes [from, to) of the note file as stored, for reading large notes in parts. */
+    public CompletableFuture<byte[]> getNoteRange(String filename, long from, long to) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(API_URL + "/notes/" + filename + "?raw=1"))
+                .header("Range", "bytes=" + from + "-" + (to - 1))
+                .GET()
+                .build();
+
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> {
+                    if (response.statusCode() == 206) {
+                        return response.body();
+                    }
+                    if (response.statusCode() == 200) {
+                        // The whole file came back
+                        byte[] body = response.body();
+                        return Arrays.copyOfRange(body, (int) Math.min(from, body.length), (int) Math.min(to, body.length));
+                    }
+                    throw new RuntimeException("Reading " + filename + " failed: " + response.statusCode());
+                });
+    }
+
+    public static class SaveResponse {
+        public String hash;     // SHA-256 of the content now on disk
+        public boolean created; // The note did not exist before
+    }
+
+    /** One note of a batched save; a patch against {@code baseHash} when {@code patches} is set. */
+    public static class BatchEntry {
+        public String filename;
+        public String baseHash;
+        public List<TextPatch> patches;
+        public String content;
+    }
+
+    public static class BatchResult {
+        public String filename;
+        public String hash;
+        public boolean created;
+        public boolean conflict; // The patch base was outdated, nothing was written
+        public String error;
+    }
+
+    private static class SaveBatchRequest {
+        List<BatchEntry> notes;
+    }
+
+    private static class SaveBatchResponse {
+        List<BatchResult> results;
+    }
+
+    public CompletableFuture<SaveResponse> saveNote(Note note) {
         String json = gson.toJson(note);
         HttpRequest request = HttpRequest.newBuilder()
                 .uri(URI.create(API_URL + "/notes"))
@@ -61,7 +159,38 @@ public class NoteService {
                 .build();
 
         return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                .thenApply(r -> null);
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new RuntimeException("Save failed: " + response.body());
+                    }
+                    return gson.fromJson(response.body(), SaveResponse.class);
+                });
+    }
+
+    /**
+     * Saves several notes in one request. Results come back in the order of the entries; a
+     * failing note does not keep the others from being written.
+     */
+    public CompletableFuture<List<BatchResult>> saveBatch(List<BatchEntry> entries) {
+        SaveBatchRequest body = new SaveBatchRequest();
+        body.notes = entries;
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(API_URL + "/save"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(body)))
+                .build();
+
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new RuntimeException("Save failed: " + response.body());
+                    }
+                    SaveBatchResponse result = gson.fromJson(response.body(), SaveBatchResponse.class);
+                    if (result == null || result.results == null || result.results.size() != entries.size()) {
+                        throw new RuntimeException("Unexpected save response: " + response.body());
+                    }
+                    return result.results;
+                });
     }
 
     public CompletableFuture<Void> deleteNote(String filename) {
@@ -91,6 +220,37 @@ public class NoteService {
                 });
     }
 
+    /** One change from the backend's event stream; see {@link NoteEventStream}. */
+    public static class NoteEvent {
+        public long seq;
+        public String type;    // created, modified, deleted, moved, reset; hello and ping only on the wire
+        public String path;    // For deleted, a note or a whole folder
+        public String oldPath; // For moved
+        public String hash;    // Content hash after created and modified
+        public String stream;  // On hello; a new value means the backend restarted
+    }
+
+    /**
+     * Opens the change stream, completing once the backend answers. Its lines arrive as the
+     * backend writes them. Pass the seq of the last applied event and the stream id to get
+     * what was missed, or a negative seq to start at the current position.
+     */
+    public CompletableFuture<HttpResponse<Stream<String>>> openEventStream(long since, String stream) {
+        String query = since >= 0 && stream != null
+                ? "?since=" + since + "&stream=" + URLEncoder.encode(stream, StandardCharsets.UTF_8)
+                : "";
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(API_URL + "/events" + query))
+                .GET()
+                .build();
+
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofLines());
+    }
+
+    public NoteEvent parseEvent(String line) {
+        return gson.fromJson(line, NoteEvent.class);
+    }
+
     public CompletableFuture<Void> syncNotes() {
         String json = "{\"message\": \"Manual sync\"}";
         HttpRequest request = HttpRequest.newBuilder()
@@ -0,0 +1,280 @@
+package com.lambdanotes;
+
+import javafx.scene.control.TreeItem;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The sidebar's note tree as a trie of path segments. Each node finds its children by name
+ * through a hash map, so listing n notes costs n path walks instead of a scan of the siblings
+ * per segment. {@link TreeItem}s are only created for the children of folders that were
+ * expanded; the rest of the vault stays in the trie. {@link #update} only adds and removes the
+ * items that changed, which keeps the user's expanded folders and selection across refreshes.
+ * Segments are shared between all paths that contain them.
+ */
+class NoteTreeModel {
+
+    private static final class Node {
+        String name;
+        Map<String, Node> children; // In list order; created with the first child
+        NoteItem item; // Null until the parent folder is expanded
+        boolean materialized; // The children have items
+        int seen; // Generation of the last update that listed this path or one below it
+
+        Node(String name) {
+            this.name = name;
+        }
+
+        Node child(String name) {
+            return children != null ? children.get(name) : null;
+        }
+
+        boolean hasChildren() {
+            return children != null && !children.isEmpty();
+        }
+    }
+
+    /** Shows a folder as one even before its children are created. */
+    private static final class NoteItem extends TreeItem<String> {
+        final Node node;
+
+        NoteItem(Node node) {
+            super(node.name);
+            this.node = node;
+        }
+
+        @Override
+        public boolean isLeaf() {
+            return !node.hasChildren();
+        }
+    }
+
+    private final Node root = new Node("root");
+    private final Map<String, String> segments = new HashMap<>(); // One instance per distinct segment
+    private int generation;
+
+    NoteTreeModel() {
+        root.item = new NoteItem(root);
+        root.item.setExpanded(true);
+        root.materialized = true;
+        // Expanding a folder creates its children; events of all items bubble up to the root
+        root.item.addEventHandler(TreeItem.<String>branchExpandedEvent(), event -> {
+            TreeItem<String> expanded = event.getTreeItem();
+            if (expanded instanceof NoteItem) materialize(((NoteItem) expanded).node);
+        });
+    }
+
+    TreeItem<String> getRoot() {
+        return root.item;
+    }
+
+    /** Makes the tree hold exactly these note paths, in list order for new items. Returns the number of paths added or removed. */
+    int update(Collection<String> notes) {
+        generation++;
+        root.seen = generation;
+        Map<Node, List<TreeItem<String>>> added = new LinkedHashMap<>();
+        int changes = 0;
+        for (String path : notes) {
+            changes += insert(path, added);
+        }
+        attach(added);
+        return changes + sweep(root);
+    }
+
+    /** Adds one note path, e.g. for a note created since the last update. Returns whether it was new. */
+    boolean add(String path) {
+        Map<Node, List<TreeItem<String>>> added = new LinkedHashMap<>();
+        boolean changed = insert(path, added) > 0;
+        attach(added);
+        return changed;
+    }
+
+    /** Removes a note, or a folder with everything in it; folders left empty go too. Returns whether it was there. */
+    boolean remove(String path) {
+        List<Node> nodes = path(path);
+        if (nodes == null || nodes.size() < 2) return false;
+        detach(nodes);
+        return true;
+    }
+
+    /** The item of a note or folder path, created along with its parents if needed; null if the path is not in the tree. */
+    TreeItem<String> find(String path) {
+        List<Node> nodes = path(path);
+        if (nodes == null || nodes.size() < 2) return null;
+        for (int i = 0; i < nodes.size() - 1; i++) {
+            materialize(nodes.get(i));
+        }
+        return nodes.get(nodes.size() - 1).item;
+    }
+
+    /** Expands the folders above a path so its item is shown; returns the item or null. */
+    TreeItem<String> reveal(String path) {
+        TreeItem<String> item = find(path);
+        for (TreeItem<String> parent = item != null ? item.getParent() : null; parent != null; parent = parent.getParent()) {
+            parent.setExpanded(true);
+        }
+        return item;
+    }
+
+    /**
+     * Moves a note or folder, keeping its items and with them the expanded state below it. Does
+     * nothing if {@code from} is not in the tree or {@code to} already is; the next update
+     * takes care of that.
+     */
+    void move(String from, String to) {
+        String parentPath = to.contains("/") ? to.substring(0, to.lastIndexOf('/')) : "";
+        String name = to.substring(to.lastIndexOf('/') + 1);
+        List<Node> nodes = path(from);
+        if (nodes == null || nodes.size() < 2 || path(to) != null || name.isEmpty()) return;
+        if (to.startsWith(from + "/")) return; // Into itself
+
+        Node node = detach(nodes);
+        Node parent = root;
+        for (String segment : parentPath.split("/")) {
+            if (segment.isEmpty()) continue;
+            Node child = parent.child(segment);
+            if (child == null) {
+                child = addChild(parent, segment);
+                if (parent.materialized) {
+                    child.item = new NoteItem(child);
+                    parent.item.getChildren().add(child.item);
+                }
+            }
+            parent = child;
+        }
+
+        node.name = intern(name);
+        if (node.item != null) node.item.setValue(node.name);
+        if (parent.children == null) parent.children = new LinkedHashMap<>();
+        parent.children.put(node.name, node);
+        if (parent.materialized) {
+            if (node.item == null) node.item = new NoteItem(node);
+            parent.item.getChildren().add(node.item);
+        } else {
+            dematerialize(node);
+        }
+    }
+
+    // Walks down the path, creating the missing nodes; new items are collected per parent. Returns the number of nodes created.
+    private int insert(String path, Map<Node, List<TreeItem<String>>> added) {
+        int created = 0;
+        Node node = root;
+        int start = 0;
+        while (start <= path.length()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) end = path.length();
+            if (end > start) {
+                String segment = path.substring(start, end);
+                Node child = node.child(segment);
+                if (child == null) {
+                    child = addChild(node, segment);
+                    if (node.materialized) {
+                        child.item = new NoteItem(child);
+                        added.computeIfAbsent(node, n -> new ArrayList<>()).add(child.item);
+                    }
+                    created++;
+                }
+                child.seen = generation;
+                node = child;
+            }
+            start = end + 1;
+        }
+        return created;
+    }
+
+    // One change event per folder rather than per note
+    private void attach(Map<Node, List<TreeItem<String>>> added) {
+        for (Map.Entry<Node, List<TreeItem<String>>> entry : added.entrySet()) {
+            entry.getKey().item.getChildren().addAll(entry.getValue());
+        }
+    }
+
+    // Nodes from the root to the path, or null if it is not in the tree
+    private List<Node> path(String path) {
+        List<Node> nodes = new ArrayList<>();
+        Node node = root;
+        nodes.add(node);
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty()) continue;
+            node = node.child(segment);
+            if (node == null) return null;
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    private Node addChild(Node parent, String segment) {
+        Node child = new Node(intern(segment));
+        if (parent.children == null) parent.children = new LinkedHashMap<>();
+        parent.children.put(child.name, child);
+        return child;
+    }
+
+    private void materialize(Node node) {
+        if (node.materialized) return;
+        node.materialized = true;
+        if (!node.hasChildren()) return;
+        List<TreeItem<String>> items = new ArrayList<>(node.children.size());
+        for (Node child : node.children.values()) {
+            child.item = new NoteItem(child);
+            items.add(child.item);
+        }
+        node.item.getChildren().setAll(items);
+    }
+
+    // Drops the items below the node and its own, e.g. when it moves into a folder that was never expanded
+    private void dematerialize(Node node) {
+        node.item = null;
+        if (!node.materialized) return;
+        node.materialized = false;
+        for (Node child : node.children != null ? node.children.values() : List.<Node>of()) {
+            dematerialize(child);
+        }
+    }
+
+    // Unlinks the last node of the path and drops folders that are left empty
+    private Node detach(List<Node> nodes) {
+        Node node = nodes.get(nodes.size() - 1);
+        Node child = node;
+        for (int i = nodes.size() - 2; i >= 0; i--) {
+            Node parent = nodes.get(i);
+            parent.children.remove(child.name);
+            if (child.item != null) parent.item.getChildren().remove(child.item);
+            if (parent == root || parent.hasChildren()) break;
+            child = parent;
+        }
+        return node;
+    }
+
+    // Removes the children not listed by the current update, folder by folder
+    private int sweep(Node node) {
+        if (node.children == null) return 0;
+        int removed = 0;
+        Set<TreeItem<String>> gone = new HashSet<>();
+        for (Iterator<Node> it = node.children.values().iterator(); it.hasNext(); ) {
+            Node child = it.next();
+            if (child.seen != generation) {
+                if (child.item != null) gone.add(child.item);
+                it.remove();
+                removed++;
+            } else {
+                removed += sweep(child);
+            }
+        }
+        if (!gone.isEmpty()) node.item.getChildren().removeAll(gone);
+        return removed;
+    }
+
+    private String intern(String segment) {
+        String shared = segments.putIfAbsent(segment, segment);
+        return shared != null ? shared : segment;
+    }
+}
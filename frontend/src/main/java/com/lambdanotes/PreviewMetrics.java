@@ -0,0 +1,116 @@
+package com.lambdanotes;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Latency of each preview pipeline stage over the last samples, with p50/p95/p99.
+ * Every sample is also emitted as a {@link PreviewStageEvent} so JFR recordings of
+ * real sessions show where preview time goes.
+ */
+public class PreviewMetrics {
+    private static final Logger logger = Logger.getLogger(PreviewMetrics.class.getName());
+    private static final int WINDOW = 512;
+    private static final boolean JFR_AVAILABLE = isJfrAvailable();
+
+    public enum Stage {
+        PARSE("parse"),
+        RENDER("render"),
+        WRAP("wrap"),
+        PATCH("patch"),
+        LOAD_CONTENT("loadContent"),
+        PAGE_READY("pageReady"), // loadContent until Worker.State.SUCCEEDED
+        TOTAL("total"); // Edit submitted until the preview shows it
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() { return label; }
+    }
+
+    // Ring buffer of the last samples of one stage, in nanoseconds
+    private static class Window {
+        private final long[] samples = new long[WINDOW];
+        private int count = 0;
+        private int next = 0;
+        private long last = -1;
+
+        synchronized void add(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % WINDOW;
+            if (count < WINDOW) count++;
+            last = nanos;
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(samples, count);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+
+    private final Map<Stage, Window> windows = new EnumMap<>(Stage.class);
+
+    public PreviewMetrics() {
+        for (Stage stage : Stage.values()) {
+            windows.put(stage, new Window());
+        }
+    }
+
+    /** Records one sample. Safe to call from any thread. */
+    public void record(Stage stage, long nanos) {
+        windows.get(stage).add(nanos);
+        if (JFR_AVAILABLE) {
+            PreviewStageEvent.emit(stage.getLabel(), nanos);
+        }
+    }
+
+    /** Last sample of the stage in nanoseconds, or -1 if none was recorded yet. */
+    public long getLast(Stage stage) {
+        Window window = windows.get(stage);
+        synchronized (window) {
+            return window.last;
+        }
+    }
+
+    /** Percentile (0-100) of the recent samples in nanoseconds, or -1 if there are none. */
+    public long getPercentile(Stage stage, double percentile) {
+        long[] sorted = windows.get(stage).sorted();
+        if (sorted.length == 0) return -1;
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    /** One line per stage with p50/p95/p99 in milliseconds, for logs and tooltips. */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            long[] sorted = windows.get(stage).sorted();
+            if (sorted.length == 0) continue;
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(String.format("%s: p50 %.1f ms, p95 %.1f ms, p99 %.1f ms (%d samples)",
+                    stage.getLabel(), millis(getPercentile(stage, 50)), millis(getPercentile(stage, 95)),
+                    millis(getPercentile(stage, 99)), sorted.length));
+        }
+        return sb.toString();
+    }
+
+    public static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            logger.info("JFR not available, preview timings are not emitted as events");
+            return false;
+        }
+    }
+}
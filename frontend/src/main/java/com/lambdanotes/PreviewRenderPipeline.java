@@ -0,0 +1,82 @@
+package com.lambdanotes;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Renders Markdown on a background thread so the FX thread never waits on flexmark.
+ * Requests are coalesced latest-wins: when newer text arrives, older renders that have not
+ * started are skipped and results of superseded renders are dropped before reaching the UI.
+ */
+public class PreviewRenderPipeline<R> {
+    private static final Logger logger = Logger.getLogger(PreviewRenderPipeline.class.getName());
+
+    private final Function<String, R> renderFunction;
+    private final PreviewMetrics metrics;
+    private final ExecutorService executor;
+    private final AtomicLong latestRequest = new AtomicLong();
+    private Runnable onMeasured;
+
+    public PreviewRenderPipeline(Function<String, R> renderFunction, PreviewMetrics metrics) {
+        this.renderFunction = renderFunction;
+        this.metrics = metrics;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "preview-render");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Called on the FX thread after a render reached the screen and its total time was recorded. */
+    public void setOnMeasured(Runnable onMeasured) {
+        this.onMeasured = onMeasured;
+    }
+
+    /**
+     * Queues a render of the given text snapshot. {@code onRendered} is called on the FX thread,
+     * and only if no newer request was submitted in the meantime.
+     */
+    public void submit(String markdown, Consumer<R> onRendered) {
+        long request = latestRequest.incrementAndGet();
+        long submittedAt = System.nanoTime();
+        String snapshot = markdown == null ? "" : markdown;
+
+        executor.execute(() -> {
+            if (request != latestRequest.get()) return; // Superseded before it started
+
+            R rendered;
+            try {
+                rendered = renderFunction.apply(snapshot);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Preview render failed", e);
+                return;
+            }
+
+            if (request != latestRequest.get()) return; // Superseded while rendering
+            Platform.runLater(() -> {
+                if (request == latestRequest.get()) {
+                    onRendered.accept(rendered);
+                    metrics.record(PreviewMetrics.Stage.TOTAL, System.nanoTime() - submittedAt);
+                    if (onMeasured != null) onMeasured.run();
+                }
+            });
+        });
+    }
+
+    /** Drops any queued or in-flight render, e.g. when the preview is hidden. */
+    public void cancel() {
+        latestRequest.incrementAndGet();
+    }
+
+    public void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+}
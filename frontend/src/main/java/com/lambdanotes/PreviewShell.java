@@ -0,0 +1,94 @@
+package com.lambdanotes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Builds the preview page shell from the bundled {@code preview/shell.html} template.
+ * A shell is built once per theme/font/language combination and then reused, and Prism is
+ * served from the bundled WebJar so the preview works offline. Language grammars are still
+ * loaded lazily by the Prism autoloader, from the same local bundle.
+ */
+public class PreviewShell {
+    private static final Logger logger = Logger.getLogger(PreviewShell.class.getName());
+
+    private static final String PRISM_VERSION = "1.29.0";
+    private static final String PRISM_BUNDLE = "/META-INF/resources/webjars/prismjs/" + PRISM_VERSION + "/";
+    private static final String PRISM_CDN = "https://cdnjs.cloudflare.com/ajax/libs/prism/" + PRISM_VERSION + "/";
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{(\\w+)}");
+
+    private final String template;
+    private final Map<String, String> prismUrls = new HashMap<>();
+    private final Map<String, String> shells = new HashMap<>();
+
+    public PreviewShell() {
+        this.template = readResource("preview/shell.html");
+
+        URL core = PreviewShell.class.getResource(PRISM_BUNDLE + "prism.js");
+        if (core != null) {
+            String base = core.toExternalForm();
+            base = base.substring(0, base.length() - "prism.js".length());
+            prismUrls.put("prismJs", base + "prism.js");
+            prismUrls.put("prismCss", base + "themes/prism-okaidia.css");
+            prismUrls.put("prismAutoloader", base + "plugins/autoloader/prism-autoloader.min.js");
+            prismUrls.put("prismComponents", base + "components/");
+        } else {
+            // Bundle missing (e.g. running from a stripped build), keep highlighting working online
+            logger.warning("Bundled Prism not found, falling back to CDN");
+            prismUrls.put("prismJs", PRISM_CDN + "prism.min.js");
+            prismUrls.put("prismCss", PRISM_CDN + "themes/prism-okaidia.min.css");
+            prismUrls.put("prismAutoloader", PRISM_CDN + "plugins/autoloader/prism-autoloader.min.js");
+            prismUrls.put("prismComponents", PRISM_CDN + "components/");
+        }
+        prismUrls.put("previewScript", PreviewShell.class.getResource("preview/preview.js").toExternalForm());
+    }
+
+    /**
+     * Returns the shell for the given key, building it from {@code variables} only the first time.
+     * The key must cover everything the variables depend on.
+     */
+    public synchronized String get(String key, Supplier<Map<String, String>> variables) {
+        String shell = shells.get(key);
+        if (shell == null) {
+            Map<String, String> values = new HashMap<>(prismUrls);
+            values.putAll(variables.get());
+            shell = fill(template, values);
+            shells.put(key, shell);
+        }
+        return shell;
+    }
+
+    private static String fill(String template, Map<String, String> values) {
+        Matcher matcher = PLACEHOLDER.matcher(template);
+        StringBuilder result = new StringBuilder(template.length() + 1024);
+        while (matcher.find()) {
+            String value = values.get(matcher.group(1));
+            if (value == null) {
+                logger.warning("Preview shell variable missing: " + matcher.group(1));
+                value = "";
+            }
+            matcher.appendReplacement(result, Matcher.quoteReplacement(value));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    private static String readResource(String name) {
+        try (InputStream in = PreviewShell.class.getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing resource: " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read resource: " + name, e);
+        }
+    }
+}
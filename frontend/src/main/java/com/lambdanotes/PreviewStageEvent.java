@@ -0,0 +1,34 @@
+package com.lambdanotes;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for one measured stage of the preview pipeline, see {@link PreviewMetrics}.
+ */
+@Name("com.lambdanotes.PreviewStage")
+@Label("Preview Stage")
+@Category({"LambdaNotes", "Preview"})
+@Description("Duration of one stage of the Markdown preview pipeline")
+class PreviewStageEvent extends Event {
+    @Label("Stage")
+    String stage;
+
+    // Not "duration", every JFR event already has a field of that name
+    @Label("Stage Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long stageDuration;
+
+    static void emit(String stage, long nanos) {
+        PreviewStageEvent event = new PreviewStageEvent();
+        if (event.isEnabled()) {
+            event.stage = stage;
+            event.stageDuration = nanos;
+            event.commit();
+        }
+    }
+}
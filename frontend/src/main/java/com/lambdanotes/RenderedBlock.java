@@ -0,0 +1,20 @@
+package com.lambdanotes;
+
+/**
+ * HTML of one top-level Markdown block together with its position in the source note.
+ */
+public class RenderedBlock {
+    private final int startLine;
+    private final int lineCount;
+    private final String html;
+
+    public RenderedBlock(int startLine, int lineCount, String html) {
+        this.startLine = startLine;
+        this.lineCount = lineCount;
+        this.html = html;
+    }
+
+    public int getStartLine() { return startLine; }
+    public int getLineCount() { return lineCount; }
+    public String getHtml() { return html; }
+}
@@ -0,0 +1,189 @@
+package com.lambdanotes;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.lambdanotes.utils.ContentHash;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Cache of rendered note HTML keyed by a SHA-256 of (content, renderer options, theme).
+ * An in-memory LRU, bounded by the size of the HTML it holds, sits in front of a directory of
+ * JSON files, so reopening a note, even after a restart, paints without going through flexmark.
+ * Entries are only added for notes as they were loaded, never for edited versions.
+ */
+public class RenderedHtmlCache {
+    private static final Logger logger = Logger.getLogger(RenderedHtmlCache.class.getName());
+    private static final Gson gson = new Gson();
+
+    private static final long MAX_MEMORY_CHARS = 8L * 1024 * 1024;
+    private static final int MAX_DISK_ENTRIES = 512;
+
+    private final Path directory;
+    private final String optionsKey;
+    private final LinkedHashMap<String, List<RenderedBlock>> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryChars = 0; // Guarded by memory
+    private final ExecutorService diskWriter = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "preview-cache-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param directory  directory of the persistent tier, created on first write
+     * @param optionsKey identifies the renderer configuration, change it whenever rendered output would change
+     */
+    public RenderedHtmlCache(Path directory, String optionsKey) {
+        this.directory = directory;
+        this.optionsKey = optionsKey;
+    }
+
+    /** Returns the cached blocks for the content, or null. Safe to call from any thread. */
+    public List<RenderedBlock> get(String content, String theme) {
+        if (content.isEmpty()) return null;
+        String key = key(content, theme);
+
+        synchronized (memory) {
+            List<RenderedBlock> blocks = memory.get(key);
+            if (blocks != null) {
+                memoryHits.incrementAndGet();
+                return blocks;
+            }
+        }
+
+        Path file = directory.resolve(key + ".json");
+        if (Files.isRegularFile(file)) {
+            try {
+                RenderedBlock[] stored = gson.fromJson(Files.readString(file, StandardCharsets.UTF_8), RenderedBlock[].class);
+                if (stored != null) {
+                    List<RenderedBlock> blocks = Arrays.asList(stored);
+                    remember(key, blocks);
+                    Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+                    diskHits.incrementAndGet();
+                    return blocks;
+                }
+            } catch (IOException | JsonParseException e) {
+                logger.log(Level.FINE, "Dropping unreadable preview cache entry " + file, e);
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException ignored) {
+                    // Will be overwritten on the next put
+                }
+            }
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /** Stores the rendered blocks in memory and on disk. Hashing and writing happen in the background. */
+    public void put(String content, String theme, List<RenderedBlock> blocks) {
+        if (content.isEmpty()) return;
+        diskWriter.execute(() -> {
+            String key = key(content, theme);
+            synchronized (memory) {
+                if (memory.containsKey(key)) return;
+            }
+            remember(key, blocks);
+            try {
+                Files.createDirectories(directory);
+                Path file = directory.resolve(key + ".json");
+                Path temp = directory.resolve(key + ".tmp");
+                Files.writeString(temp, gson.toJson(blocks), StandardCharsets.UTF_8);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                prune();
+            } catch (IOException e) {
+                logger.warning("Failed to write preview cache entry: " + e.getMessage());
+            }
+        });
+    }
+
+    public long getMemoryHits() { return memoryHits.get(); }
+    public long getDiskHits() { return diskHits.get(); }
+    public long getMisses() { return misses.get(); }
+
+    public String getStats() {
+        return "memory hits=" + memoryHits.get() + ", disk hits=" + diskHits.get() + ", misses=" + misses.get();
+    }
+
+    public void shutdown() {
+        diskWriter.shutdown();
+    }
+
+    // Adds an entry to the memory tier and drops the least recently used ones beyond its size
+    private void remember(String key, List<RenderedBlock> blocks) {
+        long size = size(blocks);
+        if (size > MAX_MEMORY_CHARS / 4) return; // Served from disk, a huge note would push out everything else
+        synchronized (memory) {
+            List<RenderedBlock> previous = memory.put(key, blocks);
+            if (previous != null) memoryChars -= size(previous);
+            memoryChars += size;
+            Iterator<List<RenderedBlock>> eldest = memory.values().iterator();
+            while (memoryChars > MAX_MEMORY_CHARS && eldest.hasNext()) {
+                memoryChars -= size(eldest.next());
+                eldest.remove();
+            }
+        }
+    }
+
+    private static long size(List<RenderedBlock> blocks) {
+        long size = 0;
+        for (RenderedBlock block : blocks) {
+            size += block.getHtml().length();
+        }
+        return size;
+    }
+
+    // Keeps the disk tier bounded by dropping the least recently used files
+    private void prune() throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(p -> p.getFileName().toString().endsWith(".json")).toList();
+        }
+        if (files.size() <= MAX_DISK_ENTRIES) return;
+
+        files.stream()
+                .sorted(Comparator.comparing(RenderedHtmlCache::lastModified))
+                .limit(files.size() - MAX_DISK_ENTRIES)
+                .forEach(p -> {
+                    try {
+                        Files.deleteIfExists(p);
+                    } catch (IOException ignored) {
+                        // Retried on the next prune
+                    }
+                });
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private String key(String content, String theme) {
+        return ContentHash.of(optionsKey + '\u0000' + theme + '\u0000' + content);
+    }
+}
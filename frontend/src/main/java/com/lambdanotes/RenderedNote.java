@@ -0,0 +1,23 @@
+package com.lambdanotes;
+
+import java.util.List;
+
+/**
+ * Result of one preview render: the source it was rendered from and its blocks.
+ */
+public class RenderedNote {
+    private final String source;
+    private final List<RenderedBlock> blocks;
+    private final boolean fromCache;
+
+    public RenderedNote(String source, List<RenderedBlock> blocks, boolean fromCache) {
+        this.source = source;
+        this.blocks = blocks;
+        this.fromCache = fromCache;
+    }
+
+    public String getSource() { return source; }
+    public List<RenderedBlock> getBlocks() { return blocks; }
+    /** True if the blocks came from {@link RenderedHtmlCache} instead of the renderer. */
+    public boolean isFromCache() { return fromCache; }
+}
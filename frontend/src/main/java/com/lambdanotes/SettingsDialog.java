@@ -53,6 +53,8 @@ public class SettingsDialog extends Stage {
     private CheckBox showLineNumbersCheckBox;
     private CheckBox showTabsCheckBox;
     private CheckBox showTitleInPreviewCheckBox;
+    private CheckBox showPreviewTimingsCheckBox;
+    private CheckBox codeHighlightingCheckBox;
     
     // General Settings Components
     private ComboBox<String> languageComboBox;
@@ -278,7 +280,19 @@ public class SettingsDialog extends Stage {
             showTitleInPreviewCheckBox.setSelected(true);
         }
         
-        previewSection.getChildren().addAll(previewLabel, showTitleInPreviewCheckBox);
+        showPreviewTimingsCheckBox = new CheckBox(LanguageManager.get("settings.appearance.show_render_time"));
+        showPreviewTimingsCheckBox.setStyle("-fx-text-fill: #dfe1e5;");
+        if (currentConfig != null) {
+            showPreviewTimingsCheckBox.setSelected(currentConfig.isShowPreviewTimings());
+        }
+
+        codeHighlightingCheckBox = new CheckBox(LanguageManager.get("settings.appearance.code_highlighting"));
+        codeHighlightingCheckBox.setStyle("-fx-text-fill: #dfe1e5;");
+        if (currentConfig != null) {
+            codeHighlightingCheckBox.setSelected(currentConfig.isCodeHighlighting());
+        }
+
+        previewSection.getChildren().addAll(previewLabel, showTitleInPreviewCheckBox, showPreviewTimingsCheckBox, codeHighlightingCheckBox);
 
         themeSection.getChildren().addAll(themeLabel, themeComboBox, themeHint);
 
@@ -628,6 +642,21 @@ public class SettingsDialog extends Stage {
         result.setShowTitleInPreview(showTitleInPreview);
         result.setTheme(theme);
         result.setLanguage(language);
+        if (showPreviewTimingsCheckBox != null) {
+            result.setShowPreviewTimings(showPreviewTimingsCheckBox.isSelected());
+        }
+        if (codeHighlightingCheckBox != null) {
+            result.setCodeHighlighting(codeHighlightingCheckBox.isSelected());
+        }
+        if (currentConfig != null) {
+            // Not editable in the dialog, keep the stored value
+            result.setLargeNotePreviewLines(currentConfig.getLargeNotePreviewLines());
+            result.setUndoHistorySteps(currentConfig.getUndoHistorySteps());
+            result.setUndoMemoryKb(currentConfig.getUndoMemoryKb());
+            result.setMaxLiveTabs(currentConfig.getMaxLiveTabs());
+            result.setTabHibernateMinutes(currentConfig.getTabHibernateMinutes());
+            result.setLargeNoteThresholdKb(currentConfig.getLargeNoteThresholdKb());
+        }
         
         saved = true;
         close();
@@ -955,6 +984,20 @@ public class SettingsDialog extends Stage {
         configToExport.setShowTitleInPreview(showTitleInPreview);
         configToExport.setTheme(theme);
         configToExport.setLanguage(language);
+        if (showPreviewTimingsCheckBox != null) {
+            configToExport.setShowPreviewTimings(showPreviewTimingsCheckBox.isSelected());
+        }
+        if (codeHighlightingCheckBox != null) {
+            configToExport.setCodeHighlighting(codeHighlightingCheckBox.isSelected());
+        }
+        if (currentConfig != null) {
+            configToExport.setLargeNotePreviewLines(currentConfig.getLargeNotePreviewLines());
+            configToExport.setUndoHistorySteps(currentConfig.getUndoHistorySteps());
+            configToExport.setUndoMemoryKb(currentConfig.getUndoMemoryKb());
+            configToExport.setMaxLiveTabs(currentConfig.getMaxLiveTabs());
+            configToExport.setTabHibernateMinutes(currentConfig.getTabHibernateMinutes());
+            configToExport.setLargeNoteThresholdKb(currentConfig.getLargeNoteThresholdKb());
+        }
 
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle(LanguageManager.get("settings.general.export"));
@@ -0,0 +1,84 @@
+package com.lambdanotes;
+
+import javafx.beans.value.ChangeListener;
+
+/**
+ * Keeps the editor and the preview scrolled to the same source line in SPLIT mode.
+ * The preview side works on the line ranges emitted with every rendered block, the editor
+ * side asks the editor's row index where a line is, so neither side has to re-scan the other.
+ */
+public class SplitScrollSync {
+    private final LivePreview preview;
+
+    private NoteEditor editor;
+    private boolean enabled = false;
+    private boolean applyingPreviewScroll = false;
+
+    private final ChangeListener<Number> scrollListener;
+    private final ChangeListener<Number> caretListener;
+
+    public SplitScrollSync(LivePreview preview) {
+        this.preview = preview;
+        this.scrollListener = (obs, oldVal, newVal) -> {
+            if (!applyingPreviewScroll) syncPreview();
+        };
+        this.caretListener = (obs, oldVal, newVal) -> {
+            if (enabled && editor != null) preview.revealLine(editor.getLineOfOffset(newVal.intValue()));
+        };
+    }
+
+    /** Follows the given editor, e.g. after switching tabs. */
+    public void attach(NoteEditor newEditor) {
+        if (editor == newEditor) return;
+        if (editor != null) {
+            editor.scrollTopProperty().removeListener(scrollListener);
+            editor.caretPositionProperty().removeListener(caretListener);
+        }
+        editor = newEditor;
+        if (editor != null) {
+            editor.scrollTopProperty().addListener(scrollListener);
+            editor.caretPositionProperty().addListener(caretListener);
+        }
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (enabled) syncPreview();
+    }
+
+    /** Scrolls the preview to the line at the top of the editor. */
+    public void syncPreview() {
+        if (!enabled || editor == null) return;
+        double line = topVisibleLine();
+        if (line >= 0) preview.scrollToLine(line);
+    }
+
+    /** Called from the preview when the user scrolls it. */
+    public void onPreviewScrolled(double line) {
+        if (!enabled || editor == null) return;
+        double y = contentYOfLine(line);
+        if (y < 0) return;
+        applyingPreviewScroll = true;
+        try {
+            editor.setScrollTop(y);
+        } finally {
+            applyingPreviewScroll = false;
+        }
+    }
+
+    /** Text offset of the start of the given zero-based line, clamped to the text. */
+    public int offsetOfLine(int line) {
+        if (editor == null) return 0;
+        return editor.getLineStart(Math.max(0, line));
+    }
+
+    // Fractional line at the top edge of the editor viewport
+    private double topVisibleLine() {
+        return editor.getLineAtY(editor.getScrollTop());
+    }
+
+    // Scroll offset that puts the given fractional line at the top of the viewport
+    private double contentYOfLine(double line) {
+        return editor.getYOfLine(line);
+    }
+}
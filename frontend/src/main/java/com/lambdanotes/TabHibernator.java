@@ -0,0 +1,226 @@
+package com.lambdanotes;
+
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.scene.control.Tab;
+import javafx.util.Duration;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Unloads the editors of tabs that were not used for a while, or the least recently used ones
+ * beyond a limit. A hibernated tab keeps its place in the tab bar but no editor or panel; what
+ * is needed to rebuild it is kept in a {@link State}, with unsaved text moved to a temp file.
+ * Selecting the tab restores it. The selected tab is never hibernated.
+ */
+public class TabHibernator {
+    private static final Logger logger = Logger.getLogger(TabHibernator.class.getName());
+    private static final Duration SWEEP_INTERVAL = Duration.seconds(30);
+
+    /** Builds and tears down the UI of a tab; implemented by the app. */
+    public interface Host {
+        /** Drops the tab's editor and returns what is needed to rebuild it, or null if it has to stay, e.g. while saving. */
+        State hibernate(Tab tab);
+
+        /** Rebuilds the tab's editor from the state. */
+        void restore(Tab tab, State state);
+
+        /** The unsaved text of the tab could not be read back; it stays in {@code spillFile}. */
+        void unreadable(Tab tab, State state, Path spillFile);
+    }
+
+    /** What is left of a hibernated tab. {@link #getContent()} is null unless the note had unsaved edits. */
+    public static final class State {
+        private String path;
+        private final int caret;
+        private final double scrollTop;
+        private final String savedHash;
+        private String content;
+        private Path spillFile;
+        private boolean spillUnreadable; // Reading spillFile failed, it is kept for the user
+
+        public State(String path, int caret, double scrollTop, String savedHash, String content) {
+            this.path = path;
+            this.caret = caret;
+            this.scrollTop = scrollTop;
+            this.savedHash = savedHash;
+            this.content = content;
+        }
+
+        public String getPath() { return path; }
+        public int getCaret() { return caret; }
+        public double getScrollTop() { return scrollTop; }
+        public String getSavedHash() { return savedHash; }
+        public String getContent() { return content; }
+    }
+
+    private final Host host;
+    private final Map<Tab, Long> live = new LinkedHashMap<>(16, 0.75f, true); // Last use per tab, least recent first
+    private final Map<Tab, State> hibernated = new HashMap<>();
+    private final Timeline sweep;
+    private Tab selected;
+    private int maxLiveTabs;
+    private long idleMillis;
+
+    public TabHibernator(Host host, int maxLiveTabs, int idleMinutes) {
+        this.host = host;
+        setLimits(maxLiveTabs, idleMinutes);
+        sweep = new Timeline(new KeyFrame(SWEEP_INTERVAL, e -> enforce()));
+        sweep.setCycleCount(Animation.INDEFINITE);
+        sweep.play();
+    }
+
+    public void setLimits(int maxLiveTabs, int idleMinutes) {
+        this.maxLiveTabs = Math.max(1, maxLiveTabs);
+        this.idleMillis = Math.max(1, idleMinutes) * 60_000L;
+        enforce();
+    }
+
+    /** A tab with a live editor was opened. */
+    public void opened(Tab tab) {
+        live.put(tab, System.currentTimeMillis());
+        enforce();
+    }
+
+    /** A tab was opened without an editor, e.g. from the saved session; it is built when first selected. */
+    public void openedHibernated(Tab tab, State state) {
+        hibernated.put(tab, state);
+    }
+
+    /** The tab was selected; restores it first if it is hibernated. */
+    public void selected(Tab tab) {
+        long now = System.currentTimeMillis();
+        if (selected != null && live.containsKey(selected)) live.put(selected, now); // Idle from now on
+        selected = tab;
+        if (tab == null) return;
+        State state = hibernated.get(tab);
+        if (state != null) {
+            if (!unspill(state)) {
+                // Restoring it as clean would lose the edits, so it stays hibernated with its file
+                host.unreadable(tab, state, state.spillFile);
+                return;
+            }
+            hibernated.remove(tab);
+            host.restore(tab, state);
+        }
+        live.put(tab, now);
+        enforce();
+    }
+
+    /**
+     * The tab was closed; forgets it. Returns its state if it was hibernated, with the unsaved
+     * text read back so it can still be saved. Text that cannot be read is left in its file.
+     */
+    public State closed(Tab tab) {
+        live.remove(tab);
+        if (selected == tab) selected = null;
+        State state = hibernated.remove(tab);
+        if (state != null && !unspill(state)) host.unreadable(tab, state, state.spillFile);
+        return state;
+    }
+
+    /** States of the hibernated tabs with unsaved text, read back, e.g. to save them on exit. */
+    public List<State> unsaved() {
+        List<State> states = new ArrayList<>();
+        for (State state : hibernated.values()) {
+            unspill(state);
+            if (state.content != null) states.add(state);
+        }
+        return states;
+    }
+
+    /** The note of a hibernated tab was moved or renamed. */
+    public void renamed(Tab tab, String path) {
+        State state = hibernated.get(tab);
+        if (state != null) state.path = path;
+    }
+
+    /** Whether the tab is hibernated with unsaved text, in memory or spilled. */
+    public boolean hasUnsaved(Tab tab) {
+        State state = hibernated.get(tab);
+        return state != null && (state.content != null || state.spillFile != null);
+    }
+
+    public boolean isHibernated(Tab tab) {
+        return hibernated.containsKey(tab);
+    }
+
+    /** Stops the periodic check and deletes the spilled text; call {@link #unsaved()} first to keep it. */
+    public void dispose() {
+        sweep.stop();
+        for (State state : hibernated.values()) {
+            if (!state.spillUnreadable) deleteSpill(state);
+        }
+        hibernated.clear();
+        live.clear();
+    }
+
+    private void enforce() {
+        long now = System.currentTimeMillis();
+        int excess = live.size() - maxLiveTabs;
+        for (Map.Entry<Tab, Long> entry : new ArrayList<>(live.entrySet())) {
+            Tab tab = entry.getKey();
+            if (tab == selected) continue;
+            boolean idle = now - entry.getValue() >= idleMillis;
+            if ((excess > 0 || idle) && hibernate(tab)) excess--;
+        }
+    }
+
+    private boolean hibernate(Tab tab) {
+        State state = host.hibernate(tab);
+        if (state == null) return false;
+        live.remove(tab);
+        spill(state);
+        hibernated.put(tab, state);
+        logger.fine("Hibernated tab " + state.getPath());
+        return true;
+    }
+
+    // Unsaved text waits on disk instead of in the heap
+    private static void spill(State state) {
+        if (state.content == null) return;
+        try {
+            Path file = Files.createTempFile("lambdanotes-tab", ".md");
+            Files.write(file, state.content.getBytes(StandardCharsets.UTF_8));
+            state.spillFile = file;
+            state.content = null;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not spill unsaved text of " + state.getPath() + ", keeping it in memory", e);
+        }
+    }
+
+    // False if the text could not be read; the spill file is kept then
+    private static boolean unspill(State state) {
+        if (state.spillFile == null) return true;
+        try {
+            state.content = new String(Files.readAllBytes(state.spillFile), StandardCharsets.UTF_8);
+            deleteSpill(state);
+            return true;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Could not read unsaved text of " + state.getPath() + " from " + state.spillFile, e);
+            state.spillUnreadable = true;
+            return false;
+        }
+    }
+
+    private static void deleteSpill(State state) {
+        if (state.spillFile == null) return;
+        try {
+            Files.deleteIfExists(state.spillFile);
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Could not delete " + state.spillFile, e);
+        }
+        state.spillFile = null;
+    }
+}
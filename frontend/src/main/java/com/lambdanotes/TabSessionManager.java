@@ -0,0 +1,202 @@
+package com.lambdanotes;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TabPane;
+import javafx.scene.layout.VBox;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps track of the note tabs: which note each one shows and its editor, panel and change bus,
+ * looked up by tab or by path without walking the scene graph. One selection listener on the tab
+ * pane reports tab switches. The open tabs and their carets are saved as the session, so the next
+ * start can reopen them.
+ */
+public class TabSessionManager {
+    private static final Logger logger = Logger.getLogger(TabSessionManager.class.getName());
+    private static final Gson gson = new Gson();
+
+    /** The note shown by a tab. Editor, bus and panel are null while the tab has no editor, e.g. when hibernated. */
+    public static final class Document {
+        private String path;
+        private DocumentChangeBus bus;
+        private VBox panel;
+        private int caret;
+        private double scrollTop;
+
+        private Document(String path) {
+            this.path = path;
+        }
+
+        public String getPath() { return path; }
+        public DocumentChangeBus getBus() { return bus; }
+        public NoteEditor getEditor() { return bus != null ? bus.getEditor() : null; }
+        public VBox getPanel() { return panel; }
+        public boolean isAttached() { return bus != null; }
+
+        /** Where the caret goes once an editor is attached, e.g. as saved in the session. */
+        public void setPosition(int caret, double scrollTop) {
+            this.caret = caret;
+            this.scrollTop = scrollTop;
+        }
+    }
+
+    /** What is written to the session file. */
+    public static class Session {
+        public List<SessionTab> tabs = new ArrayList<>();
+        public String selected;
+    }
+
+    public static class SessionTab {
+        public String path;
+        public int caret;
+        public double scrollTop;
+
+        public SessionTab() {
+        }
+
+        public SessionTab(String path, int caret, double scrollTop) {
+            this.path = path;
+            this.caret = caret;
+            this.scrollTop = scrollTop;
+        }
+    }
+
+    private final TabPane tabPane;
+    private final Map<Tab, Document> documents = new HashMap<>();
+    private final Map<String, Tab> tabsByPath = new HashMap<>();
+
+    /** {@code onSelected} gets the newly selected tab and its document, which is null for tabs that show no note. */
+    public TabSessionManager(TabPane tabPane, BiConsumer<Tab, Document> onSelected) {
+        this.tabPane = tabPane;
+        tabPane.getSelectionModel().selectedItemProperty().addListener((obs, oldTab, newTab) ->
+                onSelected.accept(newTab, newTab != null ? documents.get(newTab) : null));
+    }
+
+    /** Registers a tab that shows the note at {@code path}. The tab's user data is set to the path. */
+    public Document add(Tab tab, String path) {
+        Document document = new Document(path);
+        tab.setUserData(path);
+        documents.put(tab, document);
+        tabsByPath.put(path, tab);
+        return document;
+    }
+
+    /** Forgets a tab once it is closed; returns its document, or null if it showed no note. */
+    public Document remove(Tab tab) {
+        Document document = documents.remove(tab);
+        if (document != null && tabsByPath.get(document.path) == tab) tabsByPath.remove(document.path);
+        return document;
+    }
+
+    /** The tab now shows its note in this editor and panel. */
+    public void attach(Tab tab, DocumentChangeBus bus, VBox panel) {
+        Document document = documents.get(tab);
+        document.bus = bus;
+        document.panel = panel;
+    }
+
+    /** Drops the editor of a tab, remembering where its caret was. Returns the bus that was attached, or null. */
+    public DocumentChangeBus detach(Tab tab) {
+        Document document = documents.get(tab);
+        if (document == null || document.bus == null) return null;
+        DocumentChangeBus bus = document.bus;
+        document.caret = bus.getEditor().getCaretPosition();
+        document.scrollTop = bus.getEditor().getScrollTop();
+        document.bus = null;
+        document.panel = null;
+        return bus;
+    }
+
+    /** The tab's note was moved or renamed to {@code path}; the tab title and user data follow. */
+    public void rename(Tab tab, String path) {
+        Document document = documents.get(tab);
+        if (document == null) return;
+        if (tabsByPath.get(document.path) == tab) tabsByPath.remove(document.path);
+        document.path = path;
+        tabsByPath.put(path, tab);
+        tab.setUserData(path);
+        tab.setText(tab.getText().endsWith("*") ? path + "*" : path);
+    }
+
+    public Document get(Tab tab) {
+        return documents.get(tab);
+    }
+
+    public Tab getTab(String path) {
+        return tabsByPath.get(path);
+    }
+
+    public NoteEditor getEditor(Tab tab) {
+        Document document = documents.get(tab);
+        return document != null ? document.getEditor() : null;
+    }
+
+    public VBox getPanel(Tab tab) {
+        Document document = documents.get(tab);
+        return document != null ? document.panel : null;
+    }
+
+    /** Paths of all open notes, read-only. */
+    public Set<String> getPaths() {
+        return Collections.unmodifiableSet(tabsByPath.keySet());
+    }
+
+    /** The open note tabs in tab bar order with their carets, and the selected one. */
+    public Session snapshot() {
+        Session session = new Session();
+        for (Tab tab : tabPane.getTabs()) {
+            Document document = documents.get(tab);
+            if (document == null) continue;
+            NoteEditor editor = document.getEditor();
+            session.tabs.add(editor != null
+                    ? new SessionTab(document.path, editor.getCaretPosition(), editor.getScrollTop())
+                    : new SessionTab(document.path, document.caret, document.scrollTop));
+        }
+        Document selected = documents.get(tabPane.getSelectionModel().getSelectedItem());
+        if (selected != null) session.selected = selected.path;
+        return session;
+    }
+
+    public void saveSession(Path file) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(temp, gson.toJson(snapshot()), StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to save tab session", e);
+        }
+    }
+
+    /** Reads a session saved by {@link #saveSession}; null if there is none or it is unreadable. */
+    public static Session loadSession(Path file) {
+        try {
+            Session session = gson.fromJson(Files.readString(file, StandardCharsets.UTF_8), Session.class);
+            if (session == null || session.tabs == null) return null;
+            session.tabs.removeIf(tab -> tab == null || tab.path == null || tab.path.isEmpty());
+            return session;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | JsonParseException e) {
+            logger.log(Level.WARNING, "Failed to read tab session", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.lambdanotes.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Consecutive {@link TextChange}s delivered together, with the range of the final text they
+ * touched. Consumers that only care about "something changed around here" use the range,
+ * incremental ones replay the changes in order.
+ */
+public final class ChangeBatch {
+    private final List<TextChange> changes;
+    private final int start;
+    private final int end;
+    private final int characterDelta;
+    private final int lineDelta;
+
+    private ChangeBatch(List<TextChange> changes, int start, int end, int characterDelta, int lineDelta) {
+        this.changes = changes;
+        this.start = start;
+        this.end = end;
+        this.characterDelta = characterDelta;
+        this.lineDelta = lineDelta;
+    }
+
+    /** Batch of the given changes, in the order they were applied. */
+    public static ChangeBatch of(List<TextChange> changes) {
+        int start = -1;
+        int end = -1;
+        int characterDelta = 0;
+        int lineDelta = 0;
+        for (TextChange change : changes) {
+            int offset = change.getOffset();
+            int removedEnd = change.getRemovedEnd();
+            int insertedEnd = change.getInsertedEnd();
+            if (start < 0) {
+                start = offset;
+                end = insertedEnd;
+            } else {
+                // Map the range so far into the text after this change, then add the change
+                int mappedEnd = end >= removedEnd ? end + insertedEnd - removedEnd : Math.min(end, offset);
+                start = Math.min(start >= removedEnd ? start + insertedEnd - removedEnd : Math.min(start, offset), offset);
+                end = Math.max(mappedEnd, insertedEnd);
+            }
+            characterDelta += change.getInserted().length() - change.getRemoved().length();
+            lineDelta += change.getInsertedLineBreaks() - change.getRemovedLineBreaks();
+        }
+        return new ChangeBatch(Collections.unmodifiableList(new ArrayList<>(changes)),
+                Math.max(0, start), Math.max(0, end), characterDelta, lineDelta);
+    }
+
+    public List<TextChange> getChanges() { return changes; }
+    public int size() { return changes.size(); }
+
+    /** Start of the touched range in the text after the batch. */
+    public int getStart() { return start; }
+
+    /** End of the touched range in the text after the batch. */
+    public int getEnd() { return end; }
+
+    public int getCharacterDelta() { return characterDelta; }
+    public int getLineDelta() { return lineDelta; }
+}
@@ -0,0 +1,341 @@
+package com.lambdanotes.utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Small single-pass tokenizer for the languages that show up in notes. It emits the same
+ * {@code <span class="token ...">} markup as Prism, so the preview themes apply unchanged,
+ * and caches the result per (language, hash of the code) so unchanged blocks are never
+ * tokenized twice. The cache is bounded by the size of the HTML it holds.
+ */
+public class CodeHighlighter {
+    private static final long MAX_CACHED_CHARS = 4L * 1024 * 1024;
+    private static final String OPERATORS = "+-*/%=<>!&|^~?:";
+    private static final String PUNCTUATION = "(){}[];,.";
+
+    private static final class Language {
+        final Set<String> keywords;
+        final Set<String> literals;
+        final String[] lineComments;
+        final String blockCommentStart;
+        final String blockCommentEnd;
+        final String quotes;
+        final String multilineQuotes; // Quotes whose strings may span lines, e.g. backticks
+        final boolean tripleQuotes;
+        final boolean backslashEscapes;
+        final boolean ignoreCase;
+        final String extraWordChars;
+        final boolean starLineComments; // ABAP: '*' in the first column
+
+        Language(String keywords, String literals, String[] lineComments, String blockCommentStart, String blockCommentEnd,
+                 String quotes, String multilineQuotes, boolean tripleQuotes, boolean backslashEscapes,
+                 boolean ignoreCase, String extraWordChars, boolean starLineComments) {
+            this.keywords = words(keywords, ignoreCase);
+            this.literals = words(literals, ignoreCase);
+            this.lineComments = lineComments;
+            this.blockCommentStart = blockCommentStart;
+            this.blockCommentEnd = blockCommentEnd;
+            this.quotes = quotes;
+            this.multilineQuotes = multilineQuotes;
+            this.tripleQuotes = tripleQuotes;
+            this.backslashEscapes = backslashEscapes;
+            this.ignoreCase = ignoreCase;
+            this.extraWordChars = extraWordChars;
+            this.starLineComments = starLineComments;
+        }
+
+        private static Set<String> words(String list, boolean ignoreCase) {
+            Set<String> set = new HashSet<>(Arrays.asList(list.trim().split("\\s+")));
+            if (!ignoreCase) return set;
+            Set<String> upper = new HashSet<>();
+            for (String word : set) upper.add(word.toUpperCase(Locale.ROOT));
+            return upper;
+        }
+    }
+
+    private static final Map<String, Language> LANGUAGES = new HashMap<>();
+
+    static {
+        String[] slashes = {"//"};
+        String[] hash = {"#"};
+
+        Language java = new Language(
+                "abstract assert break case catch class const continue default do else enum extends final finally for goto if "
+                        + "implements import instanceof interface native new package private protected public record return "
+                        + "sealed static strictfp super switch synchronized this throw throws transient try var void volatile "
+                        + "while yield boolean byte char double float int long short permits",
+                "true false null", slashes, "/*", "*/", "\"'", "", true, true, false, "", false);
+        register(java, "java");
+
+        Language kotlin = new Language(
+                "as break class continue do else for fun if in interface is object package return super this throw try "
+                        + "typealias val var when while by catch constructor finally get import init override private "
+                        + "protected public internal open data sealed suspend companion lateinit",
+                "true false null", slashes, "/*", "*/", "\"'", "", true, true, false, "", false);
+        register(kotlin, "kotlin", "kt");
+
+        Language javascript = new Language(
+                "async await break case catch class const continue debugger default delete do else export extends finally "
+                        + "for from function if import in instanceof let new of return static super switch this throw try "
+                        + "typeof var void while with yield interface type enum implements private protected public readonly "
+                        + "declare namespace abstract as",
+                "true false null undefined NaN", slashes, "/*", "*/", "\"'`", "`", false, true, false, "$", false);
+        register(javascript, "javascript", "js", "typescript", "ts", "jsx", "tsx");
+
+        Language python = new Language(
+                "and as assert async await break class continue def del elif else except finally for from global if import "
+                        + "in is lambda nonlocal not or pass raise return try while with yield print self",
+                "True False None", hash, null, null, "\"'", "", true, true, false, "", false);
+        register(python, "python", "py");
+
+        Language go = new Language(
+                "break case chan const continue default defer else fallthrough for func go goto if import interface map "
+                        + "package range return select struct switch type var",
+                "true false nil iota", slashes, "/*", "*/", "\"'`", "`", false, true, false, "", false);
+        register(go, "go", "golang");
+
+        Language c = new Language(
+                "auto break case char const continue default do double else enum extern float for goto if inline int long "
+                        + "register return short signed sizeof static struct switch typedef union unsigned void volatile while "
+                        + "class namespace template typename public private protected virtual override new delete this using "
+                        + "try catch throw operator friend bool string var foreach in out ref readonly async await",
+                "true false null nullptr NULL", slashes, "/*", "*/", "\"'", "", false, true, false, "", false);
+        register(c, "c", "cpp", "c++", "h", "hpp", "csharp", "cs", "c#");
+
+        Language sql = new Language(
+                "select from where and or not insert into values update set delete create table alter drop index view join "
+                        + "inner left right outer full on as group by order having limit offset union all distinct case when "
+                        + "then else end in is like between exists primary key foreign references default constraint begin "
+                        + "commit rollback transaction with returning count sum avg min max cast asc desc unique",
+                "null true false", new String[] {"--"}, "/*", "*/", "'\"", "", false, false, true, "", false);
+        register(sql, "sql", "mysql", "postgresql", "plsql", "tsql");
+
+        Language abap = new Language(
+                "data types type ref to begin of end like value constants field-symbols assign assigning loop at endloop "
+                        + "if elseif else endif case when others endcase do enddo while endwhile select endselect from into "
+                        + "table where single up rows order by append insert modify delete update read key with clear free "
+                        + "refresh move call method function endfunction form endform perform using changing exporting "
+                        + "importing tables returning raising exceptions class endclass definition implementation public "
+                        + "private protected section methods class-methods create object new try catch endtry cleanup raise "
+                        + "exception check exit continue return write report program include parameters select-options "
+                        + "start-of-selection end-of-selection initialization and or not is initial bound eq ne lt gt le ge "
+                        + "standard sorted hashed line lines corresponding conv cond switch",
+                "abap_true abap_false space", new String[] {"\""}, null, null, "'`|", "", false, false, true, "-", true);
+        register(abap, "abap");
+
+        Language bash = new Language(
+                "if then else elif fi for while until do done case esac in function return exit export local readonly "
+                        + "echo cd source alias unset shift break continue",
+                "true false", hash, null, null, "\"'", "", false, true, false, "-", false);
+        register(bash, "bash", "sh", "shell", "zsh");
+
+        Language json = new Language("", "true false null", new String[0], null, null, "\"", "", false, true, false, "", false);
+        register(json, "json");
+    }
+
+    private static void register(Language language, String... names) {
+        for (String name : names) LANGUAGES.put(name, language);
+    }
+
+    private final LinkedHashMap<String, String> cache = new LinkedHashMap<>(256, 0.75f, true);
+    private long cachedChars = 0; // Guarded by cache
+
+    /** True if fenced code with the given info string language is highlighted here. */
+    public static boolean supports(String language) {
+        return language != null && LANGUAGES.containsKey(language.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Returns the escaped, highlighted HTML of the code (without pre/code tags), or null if
+     * the language is not supported. Safe to call from any thread.
+     */
+    public String highlight(String language, String code) {
+        if (language == null) return null;
+        String name = language.toLowerCase(Locale.ROOT);
+        Language definition = LANGUAGES.get(name);
+        if (definition == null) return null;
+
+        String key = name + '\u0000' + ContentHash.of(code);
+        synchronized (cache) {
+            String cached = cache.get(key);
+            if (cached != null) return cached;
+        }
+        String html = tokenize(definition, code);
+        long size = key.length() + html.length();
+        if (size > MAX_CACHED_CHARS / 4) return html; // A huge block would push out everything else
+        synchronized (cache) {
+            String previous = cache.put(key, html);
+            if (previous != null) cachedChars -= key.length() + previous.length();
+            cachedChars += size;
+            Iterator<Map.Entry<String, String>> eldest = cache.entrySet().iterator();
+            while (cachedChars > MAX_CACHED_CHARS && eldest.hasNext()) {
+                Map.Entry<String, String> entry = eldest.next();
+                cachedChars -= entry.getKey().length() + entry.getValue().length();
+                eldest.remove();
+            }
+        }
+        return html;
+    }
+
+    /** Characters of keys and HTML currently cached. */
+    long cachedChars() {
+        synchronized (cache) {
+            return cachedChars;
+        }
+    }
+
+    private static String tokenize(Language lang, String code) {
+        StringBuilder out = new StringBuilder(code.length() * 2);
+        int length = code.length();
+        int i = 0;
+        while (i < length) {
+            char ch = code.charAt(i);
+            boolean lineStart = i == 0 || code.charAt(i - 1) == '\n';
+
+            if (lang.starLineComments && lineStart && ch == '*') {
+                i = span(out, "comment", code, i, lineEnd(code, i));
+                continue;
+            }
+            String lineComment = startsWithAny(code, i, lang.lineComments);
+            if (lineComment != null) {
+                i = span(out, "comment", code, i, lineEnd(code, i));
+                continue;
+            }
+            if (lang.blockCommentStart != null && code.startsWith(lang.blockCommentStart, i)) {
+                int end = code.indexOf(lang.blockCommentEnd, i + lang.blockCommentStart.length());
+                end = end < 0 ? length : end + lang.blockCommentEnd.length();
+                i = span(out, "comment", code, i, end);
+                continue;
+            }
+            if (lang.quotes.indexOf(ch) >= 0) {
+                i = span(out, "string", code, i, stringEnd(lang, code, i));
+                continue;
+            }
+            if (Character.isDigit(ch)) {
+                int end = i + 1;
+                while (end < length) {
+                    char c = code.charAt(end);
+                    if (Character.isLetterOrDigit(c) || c == '_'
+                            || (c == '.' && end + 1 < length && Character.isDigit(code.charAt(end + 1)))) {
+                        end++;
+                    } else {
+                        break;
+                    }
+                }
+                i = span(out, "number", code, i, end);
+                continue;
+            }
+            if (isWordStart(ch)) {
+                int end = i + 1;
+                while (end < length && isWordPart(lang, code.charAt(end))) end++;
+                // A trailing '-' belongs to an operator, not to the word
+                while (end > i + 1 && code.charAt(end - 1) == '-') end--;
+                String word = code.substring(i, end);
+                String lookup = lang.ignoreCase ? word.toUpperCase(Locale.ROOT) : word;
+                if (lang.keywords.contains(lookup)) {
+                    span(out, "keyword", code, i, end);
+                } else if (lang.literals.contains(lookup)) {
+                    span(out, "boolean", code, i, end);
+                } else if (end < length && code.charAt(end) == '(') {
+                    span(out, "function", code, i, end);
+                } else {
+                    escape(out, code, i, end);
+                }
+                i = end;
+                continue;
+            }
+            if (OPERATORS.indexOf(ch) >= 0) {
+                int end = i + 1;
+                while (end < length && OPERATORS.indexOf(code.charAt(end)) >= 0
+                        && startsWithAny(code, end, lang.lineComments) == null
+                        && (lang.blockCommentStart == null || !code.startsWith(lang.blockCommentStart, end))) {
+                    end++;
+                }
+                i = span(out, "operator", code, i, end);
+                continue;
+            }
+            if (PUNCTUATION.indexOf(ch) >= 0) {
+                i = span(out, "punctuation", code, i, i + 1);
+                continue;
+            }
+            escape(out, code, i, i + 1);
+            i++;
+        }
+        return out.toString();
+    }
+
+    private static int stringEnd(Language lang, String code, int start) {
+        int length = code.length();
+        char quote = code.charAt(start);
+        if (lang.tripleQuotes && code.startsWith(String.valueOf(quote).repeat(3), start)) {
+            int end = code.indexOf(String.valueOf(quote).repeat(3), start + 3);
+            return end < 0 ? length : end + 3;
+        }
+        boolean multiline = lang.multilineQuotes.indexOf(quote) >= 0;
+        int i = start + 1;
+        while (i < length) {
+            char c = code.charAt(i);
+            if (c == '\\' && lang.backslashEscapes) {
+                i += 2;
+                continue;
+            }
+            if (c == quote) {
+                // SQL and ABAP escape a quote by doubling it
+                if (!lang.backslashEscapes && i + 1 < length && code.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            if (c == '\n' && !multiline) return i;
+            i++;
+        }
+        return length;
+    }
+
+    private static int lineEnd(String code, int from) {
+        int end = code.indexOf('\n', from);
+        return end < 0 ? code.length() : end;
+    }
+
+    private static String startsWithAny(String code, int index, String[] prefixes) {
+        for (String prefix : prefixes) {
+            if (code.startsWith(prefix, index)) return prefix;
+        }
+        return null;
+    }
+
+    private static boolean isWordStart(char c) {
+        return Character.isLetter(c) || c == '_' || c == '$';
+    }
+
+    private static boolean isWordPart(Language lang, char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || lang.extraWordChars.indexOf(c) >= 0;
+    }
+
+    private static int span(StringBuilder out, String type, String code, int start, int end) {
+        out.append("<span class=\"token ").append(type).append("\">");
+        escape(out, code, start, end);
+        out.append("</span>");
+        return end;
+    }
+
+    private static void escape(StringBuilder out, String code, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = code.charAt(i);
+            switch (c) {
+                case '&': out.append("&amp;"); break;
+                case '<': out.append("&lt;"); break;
+                case '>': out.append("&gt;"); break;
+                default: out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.lambdanotes.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits a Markdown document into independent top-level blocks.
+ * Blocks are only cut at blank lines that really end a top-level container, so parsing
+ * the blocks one by one gives the same HTML as parsing the whole document. When in doubt
+ * (lists, indented continuations, fenced code, raw HTML) lines are kept together.
+ */
+public class MarkdownBlocks {
+
+    private static final Pattern FENCE_OPEN_PATTERN = Pattern.compile("^ {0,3}(`{3,}|~{3,})(.*)$");
+    private static final Pattern LIST_ITEM_PATTERN = Pattern.compile("^ {0,3}(?:[-+*]|\\d{1,9}[.)])(?:[ \\t]|$)");
+    private static final Pattern FOOTNOTE_DEFINITION_PATTERN = Pattern.compile("^ {0,3}(?:> ?)*\\[\\^[^\\]]+\\]:");
+    private static final Pattern HTML_BLOCK_PATTERN = Pattern.compile("^ {0,3}<(pre|script|style|textarea)(?:\\s|>|$)", Pattern.CASE_INSENSITIVE);
+
+    public static class Block {
+        private final int startLine;
+        private final int lineCount;
+        private final String text;
+        private final boolean code;
+
+        public Block(int startLine, int lineCount, String text, boolean code) {
+            this.startLine = startLine;
+            this.lineCount = lineCount;
+            this.text = text;
+            this.code = code;
+        }
+
+        /** Zero-based line of the first line of the block in the source document. */
+        public int getStartLine() { return startLine; }
+        public int getLineCount() { return lineCount; }
+        public String getText() { return text; }
+        /** True if the block starts with a fenced code block. */
+        public boolean isCode() { return code; }
+    }
+
+    /**
+     * Splits the document into top-level blocks. Blank lines between blocks are dropped,
+     * every returned block keeps its original line position.
+     */
+    public static List<Block> split(String markdown) {
+        List<Block> blocks = new ArrayList<>();
+        if (markdown == null || markdown.isEmpty()) return blocks;
+
+        int blockStartOffset = -1;
+        int blockStartLine = -1;
+        int lastContentEnd = -1;
+        int lastContentLine = -1;
+        boolean blankSeen = false;
+        boolean blockIsList = false;
+        boolean blockIsCode = false;
+
+        char fenceChar = 0;
+        int fenceLength = 0;
+        String htmlEnd = null;
+
+        int length = markdown.length();
+        int lineStart = 0;
+        int lineIndex = 0;
+        while (lineStart <= length) {
+            int lineEnd = markdown.indexOf('\n', lineStart);
+            if (lineEnd < 0) lineEnd = length;
+            String line = markdown.substring(lineStart, lineEnd);
+            if (line.endsWith("\r")) line = line.substring(0, line.length() - 1);
+
+            if (fenceChar != 0) {
+                // Everything up to the closing fence belongs to the code block, blank lines included
+                lastContentEnd = lineEnd;
+                lastContentLine = lineIndex;
+                if (isFenceClose(line, fenceChar, fenceLength)) {
+                    fenceChar = 0;
+                }
+            } else if (htmlEnd != null) {
+                lastContentEnd = lineEnd;
+                lastContentLine = lineIndex;
+                if (line.toLowerCase().contains(htmlEnd)) {
+                    htmlEnd = null;
+                }
+            } else if (isBlank(line)) {
+                if (blockStartOffset >= 0) blankSeen = true;
+            } else {
+                boolean listItem = LIST_ITEM_PATTERN.matcher(line).find();
+                if (blockStartOffset >= 0 && blankSeen) {
+                    boolean continues = startsWithIndent(line) || (blockIsList && listItem);
+                    if (!continues) {
+                        blocks.add(new Block(blockStartLine, lastContentLine - blockStartLine + 1,
+                                markdown.substring(blockStartOffset, lastContentEnd), blockIsCode));
+                        blockStartOffset = -1;
+                    }
+                }
+                if (blockStartOffset < 0) {
+                    blockStartOffset = lineStart;
+                    blockStartLine = lineIndex;
+                    blockIsList = false;
+                    blockIsCode = false;
+                }
+                if (listItem) blockIsList = true;
+                blankSeen = false;
+                lastContentEnd = lineEnd;
+                lastContentLine = lineIndex;
+
+                Matcher fence = FENCE_OPEN_PATTERN.matcher(line);
+                if (fence.matches() && !(fence.group(1).charAt(0) == '`' && fence.group(2).contains("`"))) {
+                    fenceChar = fence.group(1).charAt(0);
+                    fenceLength = fence.group(1).length();
+                    if (blockStartLine == lineIndex) blockIsCode = true;
+                } else {
+                    htmlEnd = openHtmlBlockEnd(line);
+                }
+            }
+
+            lineStart = lineEnd + 1;
+            lineIndex++;
+        }
+
+        if (blockStartOffset >= 0) {
+            blocks.add(new Block(blockStartLine, lastContentLine - blockStartLine + 1,
+                    markdown.substring(blockStartOffset, lastContentEnd), blockIsCode));
+        }
+        return blocks;
+    }
+
+    /**
+     * Whether the document defines footnotes ({@code [^id]: text}) outside fenced code.
+     * References without a definition stay plain text, so only definitions matter.
+     */
+    public static boolean hasFootnoteDefinitions(List<Block> blocks) {
+        for (Block block : blocks) {
+            String text = block.getText();
+            if (text.indexOf("[^") < 0) continue;
+            char fenceChar = 0;
+            int fenceLength = 0;
+            for (String line : text.split("\n")) {
+                if (fenceChar != 0) {
+                    if (isFenceClose(line, fenceChar, fenceLength)) fenceChar = 0;
+                    continue;
+                }
+                Matcher fence = FENCE_OPEN_PATTERN.matcher(line);
+                if (fence.matches() && !(fence.group(1).charAt(0) == '`' && fence.group(2).contains("`"))) {
+                    fenceChar = fence.group(1).charAt(0);
+                    fenceLength = fence.group(1).length();
+                } else if (FOOTNOTE_DEFINITION_PATTERN.matcher(line).find()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isFenceClose(String line, char fenceChar, int fenceLength) {
+        int i = 0;
+        while (i < line.length() && i < 3 && line.charAt(i) == ' ') i++;
+        int count = 0;
+        while (i < line.length() && line.charAt(i) == fenceChar) {
+            count++;
+            i++;
+        }
+        return count >= fenceLength && line.substring(i).trim().isEmpty();
+    }
+
+    private static String openHtmlBlockEnd(String line) {
+        String trimmed = line.trim();
+        if (trimmed.startsWith("<!--")) {
+            return trimmed.indexOf("-->", 4) >= 0 ? null : "-->";
+        }
+        Matcher html = HTML_BLOCK_PATTERN.matcher(line);
+        if (html.find()) {
+            String end = "</" + html.group(1).toLowerCase() + ">";
+            return line.toLowerCase().contains(end) ? null : end;
+        }
+        return null;
+    }
+
+    private static boolean isBlank(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (!Character.isWhitespace(line.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    private static boolean startsWithIndent(String line) {
+        return !line.isEmpty() && (line.charAt(0) == ' ' || line.charAt(0) == '\t');
+    }
+}
@@ -0,0 +1,94 @@
+package com.lambdanotes.utils;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Incremental {@link MarkdownLexer} over a {@link TextRope}. It keeps the lexer state at the
+ * start of every line; after an edit it lexes from the changed line until the state at the
+ * start of a line after the edit matches what it was before, so typing costs a line or two
+ * even in a large note. Spans are computed when a line is first asked for and kept until
+ * the line or its state changes.
+ */
+public final class MarkdownHighlighter {
+    private int[] states = new int[16]; // Lexer state at the start of each line
+    private Object[] spans = new Object[16]; // Cached List<Span> per line, null when stale
+    private int lines = 0;
+
+    /** Lexes the whole text, e.g. when a document is created. */
+    public void reset(TextRope text) {
+        lines = 0;
+        splice(0, 0, text.lineCount());
+        int state = MarkdownLexer.NORMAL;
+        for (int line = 0; line < lines; line++) {
+            states[line] = state;
+            state = MarkdownLexer.nextState(line(text, line), state);
+        }
+    }
+
+    /**
+     * Updates the states for a change that has already been applied to {@code text}.
+     * Returns the number of lines lexed.
+     */
+    public int apply(TextChange change, TextRope text) {
+        int first = text.lineOfOffset(change.getOffset());
+        int inserted = change.getInsertedLineBreaks();
+        splice(first + 1, change.getRemovedLineBreaks(), inserted);
+        spans[first] = null;
+        int last = first + inserted;
+
+        int state = states[first];
+        int lexed = 0;
+        for (int line = first; line < lines - 1; line++) {
+            int next = MarkdownLexer.nextState(line(text, line), state);
+            lexed++;
+            // Past the edit, the same state means the rest of the document lexes as before
+            if (line >= last && states[line + 1] == next) return lexed;
+            states[line + 1] = next;
+            spans[line + 1] = null;
+            state = next;
+        }
+        return lexed;
+    }
+
+    public int lineCount() {
+        return lines;
+    }
+
+    public int stateAt(int line) {
+        return states[line];
+    }
+
+    /** Styled spans of a line, from the cache when the line has not changed. */
+    @SuppressWarnings("unchecked")
+    public List<MarkdownLexer.Span> spans(int line, TextRope text) {
+        Object cached = spans[line];
+        if (cached == null) {
+            cached = MarkdownLexer.tokenize(line(text, line), states[line]);
+            spans[line] = cached;
+        }
+        return (List<MarkdownLexer.Span>) cached;
+    }
+
+    // Replaces {@code removed} line entries at {@code at} with {@code inserted} stale ones
+    private void splice(int at, int removed, int inserted) {
+        int count = lines - removed + inserted;
+        if (count > states.length) {
+            int capacity = Math.max(count, states.length + (states.length >> 1));
+            states = Arrays.copyOf(states, capacity);
+            spans = Arrays.copyOf(spans, capacity);
+        }
+        int tail = lines - at - removed;
+        if (tail > 0 && removed != inserted) {
+            System.arraycopy(states, at + removed, states, at + inserted, tail);
+            System.arraycopy(spans, at + removed, spans, at + inserted, tail);
+        }
+        Arrays.fill(spans, at, at + inserted, null);
+        if (count < lines) Arrays.fill(spans, count, lines, null);
+        lines = count;
+    }
+
+    private static String line(TextRope text, int line) {
+        return text.substring(text.lineStart(line), text.lineEnd(line));
+    }
+}
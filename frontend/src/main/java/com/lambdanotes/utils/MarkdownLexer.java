@@ -0,0 +1,256 @@
+package com.lambdanotes.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Line based Markdown lexer for editor highlighting. Everything it colors lies within one line
+ * except fenced code blocks, so the only state carried from line to line is the open fence:
+ * {@link #NORMAL} outside a block, otherwise the fence length times two plus one for '~' fences.
+ */
+public final class MarkdownLexer {
+    public static final int NORMAL = 0;
+
+    public static final String HEADING = "md-heading";
+    public static final String EMPHASIS = "md-emphasis";
+    public static final String STRONG = "md-strong";
+    public static final String CODE = "md-code";
+    public static final String LINK = "md-link";
+    public static final String FENCE = "md-fence";
+    public static final String CODE_BLOCK = "md-code-block";
+    public static final String LIST_MARKER = "md-list-marker";
+    public static final String TASK = "md-task";
+    public static final String TASK_DONE = "md-task-done";
+
+    /** Styled range {@code [start, end)} of a line; the text between spans is plain. */
+    public static final class Span {
+        private final int start;
+        private final int end;
+        private final String style;
+
+        public Span(int start, int end, String style) {
+            this.start = start;
+            this.end = end;
+            this.style = style;
+        }
+
+        public int getStart() { return start; }
+        public int getEnd() { return end; }
+        public String getStyle() { return style; }
+
+        @Override
+        public String toString() {
+            return style + "[" + start + ", " + end + ")";
+        }
+    }
+
+    private MarkdownLexer() {
+    }
+
+    /** State at the start of the line after {@code line}, given the state at its start. */
+    public static int nextState(CharSequence line, int state) {
+        if (state == NORMAL) return openingFence(line);
+        return isClosingFence(line, state) ? NORMAL : state;
+    }
+
+    /** Styled spans of a line, sorted and not overlapping. */
+    public static List<Span> tokenize(CharSequence line, int state) {
+        int length = line.length();
+        if (length == 0) return Collections.emptyList();
+        List<Span> spans = new ArrayList<>();
+        if (state != NORMAL) {
+            spans.add(new Span(0, length, isClosingFence(line, state) ? FENCE : CODE_BLOCK));
+            return spans;
+        }
+        if (openingFence(line) != NORMAL || isHeading(line)) {
+            spans.add(new Span(0, length, openingFence(line) != NORMAL ? FENCE : HEADING));
+            return spans;
+        }
+        tokenizeInline(line, listItem(line, spans), spans);
+        return spans;
+    }
+
+    // Encoded fence if the line opens a code block, NORMAL otherwise
+    private static int openingFence(CharSequence line) {
+        int i = indent(line);
+        if (i >= line.length()) return NORMAL;
+        char c = line.charAt(i);
+        if (c != '`' && c != '~') return NORMAL;
+        int run = run(line, i, c);
+        if (run < 3) return NORMAL;
+        if (c == '`') {
+            // A backtick fence's info string cannot contain backticks
+            for (int j = i + run; j < line.length(); j++) {
+                if (line.charAt(j) == '`') return NORMAL;
+            }
+        }
+        return run * 2 + (c == '~' ? 1 : 0);
+    }
+
+    private static boolean isClosingFence(CharSequence line, int state) {
+        int i = indent(line);
+        char c = (state & 1) == 1 ? '~' : '`';
+        int run = run(line, i, c);
+        if (run < state >> 1) return false;
+        for (int j = i + run; j < line.length(); j++) {
+            if (!Character.isWhitespace(line.charAt(j))) return false;
+        }
+        return true;
+    }
+
+    private static boolean isHeading(CharSequence line) {
+        int i = indent(line);
+        int level = run(line, i, '#');
+        if (level < 1 || level > 6) return false;
+        int next = i + level;
+        return next == line.length() || line.charAt(next) == ' ' || line.charAt(next) == '\t';
+    }
+
+    // Adds the marker and checkbox of a list item, returns where its text starts
+    private static int listItem(CharSequence line, List<Span> spans) {
+        int length = line.length();
+        int i = 0;
+        while (i < length && (line.charAt(i) == ' ' || line.charAt(i) == '\t')) i++;
+        int markerEnd;
+        if (i < length && (line.charAt(i) == '-' || line.charAt(i) == '*' || line.charAt(i) == '+')) {
+            markerEnd = i + 1;
+        } else {
+            int j = i;
+            while (j < length && j - i < 9 && Character.isDigit(line.charAt(j))) j++;
+            if (j == i || j >= length || (line.charAt(j) != '.' && line.charAt(j) != ')')) return 0;
+            markerEnd = j + 1;
+        }
+        if (markerEnd < length && line.charAt(markerEnd) != ' ' && line.charAt(markerEnd) != '\t') return 0;
+        spans.add(new Span(i, markerEnd, LIST_MARKER));
+
+        int box = markerEnd + 1;
+        if (box + 3 <= length && line.charAt(box) == '[' && line.charAt(box + 2) == ']'
+                && (box + 3 == length || line.charAt(box + 3) == ' ')) {
+            char mark = line.charAt(box + 1);
+            if (mark == ' ') {
+                spans.add(new Span(box, box + 3, TASK));
+                return box + 3;
+            }
+            if (mark == 'x' || mark == 'X') {
+                spans.add(new Span(box, box + 3, TASK_DONE));
+                return box + 3;
+            }
+        }
+        return Math.min(markerEnd, length);
+    }
+
+    private static void tokenizeInline(CharSequence line, int from, List<Span> spans) {
+        int length = line.length();
+        int i = from;
+        while (i < length) {
+            char c = line.charAt(i);
+            if (c == '\\') {
+                i += 2; // Escaped character
+            } else if (c == '`') {
+                int run = run(line, i, '`');
+                int close = findRun(line, i + run, '`', run);
+                if (close >= 0) {
+                    spans.add(new Span(i, close + run, CODE));
+                    i = close + run;
+                } else {
+                    i += run;
+                }
+            } else if (c == '*' || c == '_') {
+                int run = Math.min(3, run(line, i, c));
+                int close = canOpen(line, i, run, c) ? findClosing(line, i + run, c, run) : -1;
+                if (close >= 0) {
+                    spans.add(new Span(i, close + run, run >= 2 ? STRONG : EMPHASIS));
+                    i = close + run;
+                } else {
+                    i += run(line, i, c);
+                }
+            } else if (c == '[' || (c == '!' && i + 1 < length && line.charAt(i + 1) == '[')) {
+                int end = linkEnd(line, c == '!' ? i + 1 : i);
+                if (end > 0) {
+                    spans.add(new Span(i, end, LINK));
+                    i = end;
+                } else {
+                    i++;
+                }
+            } else {
+                i++;
+            }
+        }
+    }
+
+    private static boolean canOpen(CharSequence line, int i, int run, char c) {
+        int next = i + run;
+        if (next >= line.length() || Character.isWhitespace(line.charAt(next))) return false;
+        // Underscores inside words are not emphasis, e.g. snake_case
+        return c == '*' || i == 0 || !Character.isLetterOrDigit(line.charAt(i - 1));
+    }
+
+    // Start of the delimiter run that closes an emphasis opened before {@code from}, or -1
+    private static int findClosing(CharSequence line, int from, char c, int run) {
+        int length = line.length();
+        for (int i = from; i < length; i++) {
+            char ch = line.charAt(i);
+            if (ch == '\\') {
+                i++;
+            } else if (ch == c) {
+                int found = run(line, i, c);
+                boolean afterText = !Character.isWhitespace(line.charAt(i - 1));
+                int next = i + found;
+                boolean wordEnd = c == '*' || next >= length || !Character.isLetterOrDigit(line.charAt(next));
+                if (found >= run && afterText && wordEnd) return i;
+                i += found - 1;
+            }
+        }
+        return -1;
+    }
+
+    // End of a [text](target) link starting at the '[', or -1
+    private static int linkEnd(CharSequence line, int open) {
+        int length = line.length();
+        int depth = 0;
+        int i = open;
+        for (; i < length; i++) {
+            char c = line.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']' && --depth == 0) {
+                break;
+            }
+        }
+        if (i + 1 >= length || line.charAt(i + 1) != '(') return -1;
+        for (int j = i + 2; j < length; j++) {
+            if (line.charAt(j) == ')') return j + 1;
+        }
+        return -1;
+    }
+
+    private static int findRun(CharSequence line, int from, char c, int run) {
+        int i = from;
+        while (i < line.length()) {
+            if (line.charAt(i) == c) {
+                int found = run(line, i, c);
+                if (found == run) return i;
+                i += found;
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    private static int run(CharSequence line, int from, char c) {
+        int i = from;
+        while (i < line.length() && line.charAt(i) == c) i++;
+        return i - from;
+    }
+
+    // Up to three spaces of indentation, as allowed before fences and headings
+    private static int indent(CharSequence line) {
+        int i = 0;
+        while (i < 3 && i < line.length() && line.charAt(i) == ' ') i++;
+        return i;
+    }
+}
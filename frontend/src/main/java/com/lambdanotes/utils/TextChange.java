@@ -0,0 +1,40 @@
+package com.lambdanotes.utils;
+
+/**
+ * One edit of an editor document: {@code removed} was replaced by {@code inserted} at
+ * {@code offset}. Listeners get these instead of the whole text.
+ */
+public final class TextChange {
+    private final int offset;
+    private final String removed;
+    private final String inserted;
+
+    public TextChange(int offset, String removed, String inserted) {
+        this.offset = offset;
+        this.removed = removed;
+        this.inserted = inserted;
+    }
+
+    public int getOffset() { return offset; }
+    public String getRemoved() { return removed; }
+    public String getInserted() { return inserted; }
+
+    /** End of the replaced range in the text before the change. */
+    public int getRemovedEnd() { return offset + removed.length(); }
+
+    /** End of the new range in the text after the change. */
+    public int getInsertedEnd() { return offset + inserted.length(); }
+
+    public int getRemovedLineBreaks() { return TextRope.countBreaks(removed, 0, removed.length()); }
+    public int getInsertedLineBreaks() { return TextRope.countBreaks(inserted, 0, inserted.length()); }
+
+    /** The change that undoes this one. */
+    public TextChange inverse() {
+        return new TextChange(offset, inserted, removed);
+    }
+
+    @Override
+    public String toString() {
+        return "TextChange{offset=" + offset + ", removed=" + removed.length() + ", inserted=" + inserted.length() + "}";
+    }
+}
@@ -0,0 +1,74 @@
+package com.lambdanotes.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Packs a run of {@link TextChange}s into deflated bytes and back, for undo history that is
+ * kept compressed or on disk. Edits of one note repeat a lot of text, so a block of them
+ * usually shrinks to a fraction of its in-memory size.
+ */
+public final class TextChangeCodec {
+    private TextChangeCodec() {
+    }
+
+    public static byte[] encode(List<TextChange> changes) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+            out.writeInt(changes.size());
+            for (TextChange change : changes) {
+                out.writeInt(change.getOffset());
+                writeString(out, change.getRemoved());
+                writeString(out, change.getInserted());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Not thrown by in-memory streams
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    public static List<TextChange> decode(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data)))) {
+            int count = in.readInt();
+            List<TextChange> changes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int offset = in.readInt();
+                String removed = readString(in);
+                String inserted = readString(in);
+                changes.add(new TextChange(offset, removed, inserted));
+            }
+            return changes;
+        }
+    }
+
+    /** Rough heap size of a change, to keep history within a memory budget. */
+    public static long footprint(TextChange change) {
+        return 2L * (change.getRemoved().length() + change.getInserted().length()) + 64;
+    }
+
+    // UTF-16 units as they are, since an edit can split a surrogate pair
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeInt(value.length());
+        out.writeChars(value);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        char[] chars = new char[in.readInt()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = in.readChar();
+        }
+        return new String(chars);
+    }
+}
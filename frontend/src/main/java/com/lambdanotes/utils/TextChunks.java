@@ -0,0 +1,66 @@
+package com.lambdanotes.utils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Splits a UTF-8 file into chunks of about {@code chunkSize} bytes that can be read and decoded
+ * one at a time. Chunk k holds the lines that start in [k * chunkSize, (k + 1) * chunkSize);
+ * a line with no break within {@code overlap} bytes is cut at a character boundary instead.
+ * Decoded chunks put together give back the whole text.
+ */
+public final class TextChunks {
+    public static final int DEFAULT_OVERLAP = 4096;
+
+    private final long fileSize;
+    private final int chunkSize;
+    private final int overlap;
+
+    public TextChunks(long fileSize, int chunkSize) {
+        this(fileSize, chunkSize, DEFAULT_OVERLAP);
+    }
+
+    public TextChunks(long fileSize, int chunkSize, int overlap) {
+        if (overlap < 4 || overlap >= chunkSize) {
+            throw new IllegalArgumentException("overlap must be in [4, chunkSize)");
+        }
+        this.fileSize = fileSize;
+        this.chunkSize = chunkSize;
+        this.overlap = overlap;
+    }
+
+    public int count() {
+        return fileSize == 0 ? 1 : (int) ((fileSize + chunkSize - 1) / chunkSize);
+    }
+
+    /** First byte to read for the chunk; one before it, to see whether a line starts there. */
+    public long readStart(int index) {
+        return Math.max(0, (long) index * chunkSize - 1);
+    }
+
+    /** End (exclusive) of the bytes to read for the chunk, including where the next one starts. */
+    public long readEnd(int index) {
+        return Math.min(fileSize, (long) (index + 1) * chunkSize - 1 + overlap);
+    }
+
+    /** The text of the chunk, from the bytes in [readStart(index), readEnd(index)). */
+    public String decode(int index, byte[] data) {
+        long base = readStart(index);
+        int start = (int) (boundary(index, data, base) - base);
+        int end = (int) (boundary(index + 1, data, base) - base);
+        return new String(data, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    // Where chunk k starts: after the first line break from byte k * chunkSize - 1 on
+    private long boundary(int k, byte[] data, long base) {
+        if (k == 0) return 0;
+        long pos = (long) k * chunkSize;
+        if (pos >= fileSize) return fileSize;
+        long limit = Math.min(fileSize, pos - 1 + overlap);
+        for (long p = pos - 1; p < limit; p++) {
+            if (data[(int) (p - base)] == '\n') return p + 1;
+        }
+        // A very long line: don't split a multi-byte character
+        while (pos < limit && (data[(int) (pos - base)] & 0xC0) == 0x80) pos++;
+        return pos;
+    }
+}
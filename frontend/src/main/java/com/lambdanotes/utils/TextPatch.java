@@ -0,0 +1,70 @@
+package com.lambdanotes.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One step of a note patch: remove {@code delete} chars at {@code offset}, then insert
+ * {@code insert} there. Offsets count UTF-16 units, like Java strings, and each step applies
+ * to the text left by the previous one.
+ */
+public final class TextPatch {
+    private final int offset;
+    private final int delete;
+    private final String insert;
+
+    public TextPatch(int offset, int delete, String insert) {
+        this.offset = offset;
+        this.delete = delete;
+        this.insert = insert;
+    }
+
+    public int getOffset() { return offset; }
+    public int getDelete() { return delete; }
+    public String getInsert() { return insert; }
+
+    /**
+     * Patches equivalent to the changes. A change that touches the text inserted by the
+     * step before it is folded into that step, so typing or deleting a run of characters
+     * becomes a single step.
+     */
+    public static List<TextPatch> compact(List<TextChange> changes) {
+        List<TextPatch> patches = new ArrayList<>();
+        for (TextChange change : changes) {
+            int offset = change.getOffset();
+            int removed = change.getRemoved().length();
+            TextPatch last = patches.isEmpty() ? null : patches.get(patches.size() - 1);
+            if (last != null && offset <= last.offset + last.insert.length() && offset + removed >= last.offset) {
+                // Parts of the change outside the last insert remove more of the original text
+                int before = Math.max(0, last.offset - offset);
+                int after = Math.max(0, offset + removed - (last.offset + last.insert.length()));
+                int cutStart = Math.max(offset, last.offset) - last.offset;
+                int cutEnd = Math.min(offset + removed, last.offset + last.insert.length()) - last.offset;
+                String insert = last.insert.substring(0, cutStart) + change.getInserted() + last.insert.substring(cutEnd);
+                patches.set(patches.size() - 1, new TextPatch(Math.min(offset, last.offset), last.delete + before + after, insert));
+            } else {
+                patches.add(new TextPatch(offset, removed, change.getInserted()));
+            }
+        }
+        patches.removeIf(p -> p.delete == 0 && p.insert.isEmpty());
+        return patches;
+    }
+
+    /** Applies the patches in order. */
+    public static String apply(String text, List<TextPatch> patches) {
+        StringBuilder sb = new StringBuilder(text);
+        for (TextPatch patch : patches) {
+            sb.replace(patch.offset, patch.offset + patch.delete, patch.insert);
+        }
+        return sb.toString();
+    }
+
+    /** Rough request size of the patches, to fall back to a full save when they are not smaller. */
+    public static long size(List<TextPatch> patches) {
+        long size = 0;
+        for (TextPatch patch : patches) {
+            size += patch.insert.length() + 24;
+        }
+        return size;
+    }
+}
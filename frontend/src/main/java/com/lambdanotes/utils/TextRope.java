@@ -0,0 +1,314 @@
+package com.lambdanotes.utils;
+
+/**
+ * Mutable text stored as a balanced tree (treap) of small chunks. Every node knows the length
+ * and line break count of its subtree, so insert, delete, offset/line lookups and
+ * short substrings are O(log n) and never copy the whole document.
+ * {@link #toString()} builds the full string once and keeps it until the next edit.
+ */
+public final class TextRope implements CharSequence {
+    // Chunks are built at half size so typing can extend them in place for a while
+    private static final int MAX_CHUNK = 1024;
+    private static final int BUILD_CHUNK = MAX_CHUNK / 2;
+
+    private static final class Node {
+        String chunk;
+        int chunkBreaks;
+        final int priority;
+        Node left;
+        Node right;
+        int length;
+        int breaks;
+
+        Node(String chunk, int priority) {
+            this.priority = priority;
+            setChunk(chunk);
+            update();
+        }
+
+        void setChunk(String text) {
+            chunk = text;
+            chunkBreaks = countBreaks(text, 0, text.length());
+        }
+
+        void update() {
+            length = length(left) + chunk.length() + length(right);
+            breaks = breaks(left) + chunkBreaks + breaks(right);
+        }
+    }
+
+    private Node root;
+    private String text; // Materialized text, null after an edit
+    private int seed = 0x2545F491;
+
+    public TextRope() {
+    }
+
+    public TextRope(String initial) {
+        insert(0, initial);
+    }
+
+    @Override
+    public int length() {
+        return length(root);
+    }
+
+    /** Number of lines, one more than the number of line breaks. */
+    public int lineCount() {
+        return breaks(root) + 1;
+    }
+
+    @Override
+    public char charAt(int index) {
+        checkRange(index, index + 1);
+        Node node = root;
+        while (true) {
+            int leftLength = length(node.left);
+            if (index < leftLength) {
+                node = node.left;
+            } else if (index < leftLength + node.chunk.length()) {
+                return node.chunk.charAt(index - leftLength);
+            } else {
+                index -= leftLength + node.chunk.length();
+                node = node.right;
+            }
+        }
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return substring(start, end);
+    }
+
+    public String substring(int start, int end) {
+        checkRange(start, end);
+        if (start == end) return "";
+        if (text != null) return text.substring(start, end);
+        StringBuilder sb = new StringBuilder(end - start);
+        append(root, start, end, sb);
+        return sb.toString();
+    }
+
+    /** Offset of the first character of the zero-based line. */
+    public int lineStart(int line) {
+        if (line <= 0) return 0;
+        if (line >= lineCount()) return length();
+        // Offset just after the line-th line break
+        int remaining = line;
+        int offset = 0;
+        Node node = root;
+        while (true) {
+            int leftBreaks = breaks(node.left);
+            if (remaining <= leftBreaks) {
+                node = node.left;
+                continue;
+            }
+            remaining -= leftBreaks;
+            offset += length(node.left);
+            if (remaining <= node.chunkBreaks) {
+                String chunk = node.chunk;
+                for (int i = 0; i < chunk.length(); i++) {
+                    if (chunk.charAt(i) == '\n' && --remaining == 0) return offset + i + 1;
+                }
+            }
+            remaining -= node.chunkBreaks;
+            offset += node.chunk.length();
+            node = node.right;
+        }
+    }
+
+    /** Offset of the end of the zero-based line, before its line break. */
+    public int lineEnd(int line) {
+        if (line + 1 >= lineCount()) return length();
+        return lineStart(line + 1) - 1;
+    }
+
+    /** Zero-based line containing the offset. */
+    public int lineOfOffset(int offset) {
+        offset = Math.max(0, Math.min(offset, length()));
+        int line = 0;
+        Node node = root;
+        while (node != null) {
+            int leftLength = length(node.left);
+            if (offset <= leftLength) {
+                node = node.left;
+                continue;
+            }
+            line += breaks(node.left);
+            int inChunk = offset - leftLength;
+            if (inChunk <= node.chunk.length()) {
+                return line + countBreaks(node.chunk, 0, inChunk);
+            }
+            line += node.chunkBreaks;
+            offset = inChunk - node.chunk.length();
+            node = node.right;
+        }
+        return line;
+    }
+
+    public void insert(int offset, String value) {
+        checkRange(offset, offset);
+        if (value.isEmpty()) return;
+        text = null;
+        if (value.length() + 1 < MAX_CHUNK && root != null && insertInPlace(root, offset, value)) return;
+
+        Node[] parts = split(root, offset);
+        root = merge(merge(parts[0], build(value)), parts[1]);
+    }
+
+    public void delete(int start, int end) {
+        checkRange(start, end);
+        if (start == end) return;
+        text = null;
+        Node[] right = split(root, end);
+        Node[] left = split(right[0], start);
+        root = merge(left[0], right[1]);
+    }
+
+    public void replace(int start, int end, String value) {
+        delete(start, end);
+        insert(start, value);
+    }
+
+    /** Length of every line without its line break, in one pass over the chunks. */
+    public int[] lineLengths() {
+        int[] lengths = new int[lineCount()];
+        int[] state = new int[2]; // current line, length so far
+        collectLineLengths(root, lengths, state);
+        lengths[state[0]] = state[1];
+        return lengths;
+    }
+
+    @Override
+    public String toString() {
+        if (text == null) {
+            StringBuilder sb = new StringBuilder(length());
+            append(root, 0, length(), sb);
+            text = sb.toString();
+        }
+        return text;
+    }
+
+    // Typing mostly lands inside a chunk that still has room, which only touches one path
+    private boolean insertInPlace(Node node, int offset, String value) {
+        int leftLength = length(node.left);
+        boolean inserted;
+        if (offset < leftLength) {
+            inserted = node.left != null && insertInPlace(node.left, offset, value);
+        } else if (offset <= leftLength + node.chunk.length()) {
+            if (node.chunk.length() + value.length() > MAX_CHUNK) return false;
+            int at = offset - leftLength;
+            node.setChunk(node.chunk.substring(0, at) + value + node.chunk.substring(at));
+            inserted = true;
+        } else {
+            inserted = node.right != null && insertInPlace(node.right, offset - leftLength - node.chunk.length(), value);
+        }
+        if (inserted) node.update();
+        return inserted;
+    }
+
+    private Node build(String value) {
+        Node result = null;
+        for (int start = 0; start < value.length(); start += BUILD_CHUNK) {
+            result = merge(result, new Node(value.substring(start, Math.min(value.length(), start + BUILD_CHUNK)), nextPriority()));
+        }
+        return result;
+    }
+
+    // Splits into [0, offset) and [offset, length), cutting a chunk in two if needed
+    private Node[] split(Node node, int offset) {
+        if (node == null) return new Node[] {null, null};
+        int leftLength = length(node.left);
+        if (offset <= leftLength) {
+            Node[] parts = split(node.left, offset);
+            node.left = parts[1];
+            node.update();
+            return new Node[] {parts[0], node};
+        }
+        int chunkEnd = leftLength + node.chunk.length();
+        if (offset >= chunkEnd) {
+            Node[] parts = split(node.right, offset - chunkEnd);
+            node.right = parts[0];
+            node.update();
+            return new Node[] {node, parts[1]};
+        }
+        int at = offset - leftLength;
+        // The tail keeps the same priority, so both halves stay valid treaps
+        Node tail = new Node(node.chunk.substring(at), node.priority);
+        tail.right = node.right;
+        tail.update();
+        node.setChunk(node.chunk.substring(0, at));
+        node.right = null;
+        node.update();
+        return new Node[] {node, tail};
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        if (left.priority >= right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    private static void append(Node node, int start, int end, StringBuilder sb) {
+        if (node == null || start >= end) return;
+        int leftLength = length(node.left);
+        if (start < leftLength) append(node.left, start, Math.min(end, leftLength), sb);
+        int chunkEnd = leftLength + node.chunk.length();
+        if (end > leftLength && start < chunkEnd) {
+            sb.append(node.chunk, Math.max(0, start - leftLength), Math.min(node.chunk.length(), end - leftLength));
+        }
+        if (end > chunkEnd) append(node.right, Math.max(0, start - chunkEnd), end - chunkEnd, sb);
+    }
+
+    private static void collectLineLengths(Node node, int[] lengths, int[] state) {
+        if (node == null) return;
+        collectLineLengths(node.left, lengths, state);
+        String chunk = node.chunk;
+        for (int i = 0; i < chunk.length(); i++) {
+            if (chunk.charAt(i) == '\n') {
+                lengths[state[0]++] = state[1];
+                state[1] = 0;
+            } else {
+                state[1]++;
+            }
+        }
+        collectLineLengths(node.right, lengths, state);
+    }
+
+    private int nextPriority() {
+        // xorshift, good enough to keep the tree balanced
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+
+    private void checkRange(int start, int end) {
+        if (start < 0 || end > length() || start > end) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of bounds for length " + length());
+        }
+    }
+
+    private static int length(Node node) {
+        return node == null ? 0 : node.length;
+    }
+
+    private static int breaks(Node node) {
+        return node == null ? 0 : node.breaks;
+    }
+
+    static int countBreaks(CharSequence value, int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if (value.charAt(i) == '\n') count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,73 @@
+package com.lambdanotes.utils;
+
+/**
+ * Word, character and line counts of a document, kept up to date from each {@link TextChange}.
+ * A word is a run of non-whitespace characters, as with {@code split("\\s+")}. Whether a
+ * position starts a word depends only on it and the character before it, so an edit only
+ * re-checks the changed text and the characters on both sides of it.
+ */
+public final class TextStatistics {
+    /** Average silent reading speed used for the reading time. */
+    public static final int WORDS_PER_MINUTE = 200;
+
+    private int words = 0;
+    private int characters = 0;
+    private int lines = 1;
+
+    /** Counts the whole text, e.g. when a document is loaded. */
+    public void reset(CharSequence text) {
+        words = countWords(text, 0, text.length());
+        characters = text.length();
+        lines = 1 + TextRope.countBreaks(text, 0, text.length());
+    }
+
+    /** Updates the counts for a change that has already been applied to {@code text}. */
+    public void apply(TextChange change, CharSequence text) {
+        int offset = change.getOffset();
+        int next = change.getInsertedEnd() < text.length() ? text.charAt(change.getInsertedEnd()) : -1;
+        int previous = offset > 0 ? text.charAt(offset - 1) : -1;
+
+        words += wordStarts(previous, change.getInserted(), next) - wordStarts(previous, change.getRemoved(), next);
+        characters += change.getInserted().length() - change.getRemoved().length();
+        lines += change.getInsertedLineBreaks() - change.getRemovedLineBreaks();
+    }
+
+    public int getWords() { return words; }
+    public int getCharacters() { return characters; }
+    public int getLines() { return lines; }
+
+    /** Reading time in whole minutes, at least one for any non-empty text. */
+    public int getReadingMinutes() {
+        return words == 0 ? 0 : Math.max(1, (words + WORDS_PER_MINUTE - 1) / WORDS_PER_MINUTE);
+    }
+
+    /** Words in {@code [start, end)}; a word cut by the range counts once. */
+    public static int countWords(CharSequence text, int start, int end) {
+        int count = 0;
+        boolean inWord = false;
+        for (int i = start; i < end; i++) {
+            boolean space = isSpace(text.charAt(i));
+            if (!space && !inWord) count++;
+            inWord = !space;
+        }
+        return count;
+    }
+
+    // Word starts inside value and at the character following it, given the characters around it (-1 for none)
+    private static int wordStarts(int previous, CharSequence value, int next) {
+        int count = 0;
+        boolean inWord = previous >= 0 && !isSpace((char) previous);
+        for (int i = 0; i < value.length(); i++) {
+            boolean space = isSpace(value.charAt(i));
+            if (!space && !inWord) count++;
+            inWord = !space;
+        }
+        if (next >= 0 && !isSpace((char) next) && !inWord) count++;
+        return count;
+    }
+
+    // Same characters as the regex \s
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0B;
+    }
+}
@@ -0,0 +1,101 @@
+package com.lambdanotes.utils;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Number of visual rows of every line of a soft-wrapped document, kept in a Fenwick tree so
+ * "rows above line n" and "line at row r" are O(log n). Edits inside one line are point
+ * updates; only edits that add or remove lines shift the array.
+ */
+public class WrappedLineIndex {
+    private int[] rows = new int[0];
+    private long[] tree = new long[1];
+    private int size = 0;
+
+    /** Replaces every line, asking {@code rowsOfLine} for the rows of each. */
+    public void reset(int lineCount, IntUnaryOperator rowsOfLine) {
+        size = lineCount;
+        rows = new int[Math.max(16, lineCount)];
+        for (int i = 0; i < lineCount; i++) {
+            rows[i] = Math.max(1, rowsOfLine.applyAsInt(i));
+        }
+        rebuild();
+    }
+
+    /**
+     * Replaces {@code removed} lines starting at {@code from} with {@code inserted} new lines
+     * whose rows come from {@code rowsOfLine} (called with the new line numbers).
+     */
+    public void replaceLines(int from, int removed, int inserted, IntUnaryOperator rowsOfLine) {
+        if (removed == inserted) {
+            for (int i = 0; i < inserted; i++) {
+                setRows(from + i, rowsOfLine.applyAsInt(from + i));
+            }
+            return;
+        }
+        int newSize = size - removed + inserted;
+        if (newSize > rows.length) {
+            rows = Arrays.copyOf(rows, Math.max(newSize, rows.length * 2));
+        }
+        System.arraycopy(rows, from + removed, rows, from + inserted, size - from - removed);
+        size = newSize;
+        for (int i = 0; i < inserted; i++) {
+            rows[from + i] = Math.max(1, rowsOfLine.applyAsInt(from + i));
+        }
+        rebuild();
+    }
+
+    public int size() { return size; }
+
+    public int getRows(int line) {
+        return rows[line];
+    }
+
+    public void setRows(int line, int value) {
+        value = Math.max(1, value);
+        int delta = value - rows[line];
+        if (delta == 0) return;
+        rows[line] = value;
+        for (int i = line + 1; i <= size; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /** Rows of all lines before the given line. */
+    public long rowsBefore(int line) {
+        long sum = 0;
+        for (int i = Math.min(line, size); i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    public long totalRows() {
+        return rowsBefore(size);
+    }
+
+    /** Line containing the zero-based visual row, clamped to the document. */
+    public int lineAtRow(long row) {
+        if (size == 0 || row < 0) return 0;
+        int position = 0;
+        long remaining = row;
+        for (int step = Integer.highestOneBit(size); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= size && tree[next] <= remaining) {
+                position = next;
+                remaining -= tree[next];
+            }
+        }
+        return Math.min(position, size - 1);
+    }
+
+    private void rebuild() {
+        tree = new long[size + 1];
+        for (int i = 1; i <= size; i++) {
+            tree[i] += rows[i - 1];
+            int parent = i + (i & -i);
+            if (parent <= size) tree[parent] += tree[i];
+        }
+    }
+}
@@ -0,0 +1,242 @@
+// Preview page script, loaded once per preview shell.
+// window.lnStrings is set by the shell before this file runs.
+
+function copyToClipboard(text, button) {
+  var textArea = document.createElement('textarea');
+  textArea.value = text;
+  document.body.appendChild(textArea);
+  textArea.select();
+  document.execCommand('copy');
+  document.body.removeChild(textArea);
+  var originalText = button.innerText;
+  button.innerText = window.lnStrings.copied;
+  setTimeout(function() { button.innerText = originalText; }, 2000);
+}
+
+document.addEventListener('click', function(e) {
+  var target = e.target;
+  while (target && target.tagName !== 'A') {
+    target = target.parentNode;
+  }
+  if (target && target.href) {
+    e.preventDefault();
+    if (window.javaApp) {
+       window.javaApp.openLink(target.getAttribute('href'));
+    }
+  }
+});
+
+function decorateBlock(root) {
+  Array.prototype.slice.call(root.querySelectorAll('pre')).forEach(function(block) {
+    var wrapper = document.createElement('div');
+    wrapper.className = 'code-wrapper';
+    block.parentNode.insertBefore(wrapper, block);
+    wrapper.appendChild(block);
+    var button = document.createElement('button');
+    button.className = 'copy-button';
+    button.innerText = window.lnStrings.copy;
+    button.onclick = function() {
+      var code = block.querySelector('code').innerText;
+      copyToClipboard(code, button);
+    };
+    wrapper.appendChild(button);
+  });
+  Array.prototype.slice.call(root.querySelectorAll('blockquote')).forEach(function(bq) {
+    var p = bq.querySelector('p');
+    if (!p) return;
+    var text = p.textContent.trim();
+    var match = text.match(/^\[!(NOTE|TIP|WARNING|CAUTION)\]/i);
+    if (match) {
+      var type = match[1].toLowerCase();
+      bq.classList.add('markdown-alert', 'markdown-alert-' + type);
+      var content = p.innerHTML;
+      var newContent = content.replace(/^\s*\[!(NOTE|TIP|WARNING|CAUTION)\]\s*(<br\s*\/?>)?/i, '');
+      p.innerHTML = newContent;
+      var title = document.createElement('div');
+      title.className = 'markdown-alert-title';
+      title.innerText = type.charAt(0).toUpperCase() + type.slice(1);
+      bq.insertBefore(title, p);
+    }
+  });
+  if (window.Prism) {
+    // Code highlighted while rendering in Java carries data-highlighted
+    Array.prototype.slice.call(root.querySelectorAll('code[class*="language-"]:not([data-highlighted])')).forEach(function(code) {
+      Prism.highlightElement(code);
+    });
+  }
+}
+
+// Source line range of every block wrapper, sent by Java with each patch
+var lnLines = { starts: [], counts: [] };
+// Scroll events caused by Java are not echoed back to the editor
+var lnIgnoreScrollUntil = 0;
+
+function blockIndexForLine(line) {
+  var starts = lnLines.starts;
+  var low = 0, high = starts.length - 1, found = 0;
+  while (low <= high) {
+    var mid = (low + high) >> 1;
+    if (starts[mid] <= line) { found = mid; low = mid + 1; } else { high = mid - 1; }
+  }
+  return found;
+}
+
+function lineAtY(y) {
+  var blocks = document.getElementById('ln-content').children;
+  if (!blocks.length || blocks.length !== lnLines.starts.length) return -1;
+  var low = 0, high = blocks.length - 1, found = 0;
+  while (low <= high) {
+    var mid = (low + high) >> 1;
+    if (blocks[mid].offsetTop <= y) { found = mid; low = mid + 1; } else { high = mid - 1; }
+  }
+  var block = blocks[found];
+  var fraction = block.offsetHeight > 0 ? (y - block.offsetTop) / block.offsetHeight : 0;
+  fraction = Math.min(1, Math.max(0, fraction));
+  return lnLines.starts[found] + fraction * lnLines.counts[found];
+}
+
+function yForLine(line) {
+  var blocks = document.getElementById('ln-content').children;
+  if (!blocks.length || blocks.length !== lnLines.starts.length) return -1;
+  var i = blockIndexForLine(line);
+  var block = blocks[i];
+  var fraction = (line - lnLines.starts[i]) / Math.max(1, lnLines.counts[i]);
+  fraction = Math.min(1, Math.max(0, fraction));
+  return block.offsetTop + fraction * block.offsetHeight;
+}
+
+// Large notes: only blocks near the viewport are in the DOM, the rest are spacers.
+// lnBlockHtml keeps the HTML of every block so spacers can be filled without asking Java.
+var lnWindowed = false;
+var lnBlockHtml = [];
+var lnLiveBlocks = []; // Materialized wrappers in windowed mode
+var lnWindowScheduled = false;
+
+function estimatedBlockHeight(lineCount) {
+  var fontSize = parseFloat(window.getComputedStyle(document.body).fontSize) || 16;
+  return Math.max(1, lineCount) * fontSize * 1.6 + fontSize;
+}
+
+function materializeWindow() {
+  lnWindowScheduled = false;
+  if (!lnWindowed) return;
+  var blocks = document.getElementById('ln-content').children;
+  var margin = window.innerHeight * 1.5;
+  var top = window.pageYOffset - margin;
+  var bottom = window.pageYOffset + window.innerHeight + margin;
+
+  var low = 0, high = blocks.length - 1, first = blocks.length;
+  while (low <= high) {
+    var mid = (low + high) >> 1;
+    if (blocks[mid].offsetTop + blocks[mid].offsetHeight >= top) { first = mid; high = mid - 1; } else { low = mid + 1; }
+  }
+
+  var shift = 0;
+  for (var i = first; i < blocks.length && blocks[i].offsetTop <= bottom; i++) {
+    var block = blocks[i];
+    if (!block.lnPending) continue;
+    var above = block.offsetTop < window.pageYOffset;
+    var before = block.offsetHeight;
+    block.style.height = '';
+    block.innerHTML = lnBlockHtml[i];
+    block.lnPending = false;
+    decorateBlock(block);
+    lnLiveBlocks.push(block);
+    // Keep the visible content still when a block above it changes height
+    if (above) shift += block.offsetHeight - before;
+  }
+  if (shift !== 0) {
+    lnIgnoreScrollUntil = Date.now() + 150;
+    window.scrollBy(0, shift);
+  }
+
+  // Far away blocks go back to spacers of their real height to keep the DOM small
+  var farTop = window.pageYOffset - margin * 3;
+  var farBottom = window.pageYOffset + window.innerHeight + margin * 3;
+  lnLiveBlocks = lnLiveBlocks.filter(function(far) {
+    if (!far.parentNode) return false; // Removed by a patch
+    if (far.offsetTop + far.offsetHeight < farTop || far.offsetTop > farBottom) {
+      far.style.height = far.offsetHeight + 'px';
+      far.innerHTML = '';
+      far.lnPending = true;
+      return false;
+    }
+    return true;
+  });
+}
+
+function scheduleWindow() {
+  if (lnWindowed && !lnWindowScheduled) {
+    lnWindowScheduled = true;
+    window.requestAnimationFrame(materializeWindow);
+  }
+}
+
+window.addEventListener('scroll', function() {
+  scheduleWindow();
+  if (Date.now() < lnIgnoreScrollUntil || !window.javaApp) return;
+  var line = lineAtY(window.pageYOffset);
+  if (line >= 0) window.javaApp.previewScrolled(line);
+});
+window.addEventListener('resize', scheduleWindow);
+
+document.addEventListener('dblclick', function(e) {
+  var line = lineAtY(e.pageY);
+  if (line >= 0 && window.javaApp) window.javaApp.jumpToLine(Math.floor(line));
+});
+
+// Each Markdown block lives in its own wrapper, Java sends only the changed run of blocks
+window.lambdaPreview = {
+  patch: function(titleHtml, start, removeCount, blocksJson, startsJson, countsJson, windowed) {
+    var title = document.getElementById('ln-title');
+    if (title.lnSource !== titleHtml) { title.innerHTML = titleHtml; title.lnSource = titleHtml; }
+    var content = document.getElementById('ln-content');
+    var anchor = content.children[start + removeCount] || null;
+    for (var i = 0; i < removeCount; i++) content.removeChild(content.children[start]);
+    var blocks = JSON.parse(blocksJson);
+    lnLines = { starts: JSON.parse(startsJson), counts: JSON.parse(countsJson) };
+    // Java replaces every block when the mode changes
+    lnWindowed = !!windowed;
+    lnBlockHtml = lnWindowed ? lnBlockHtml.slice(0, start).concat(blocks, lnBlockHtml.slice(start + removeCount)) : [];
+    if (!lnWindowed) lnLiveBlocks = [];
+    for (var j = 0; j < blocks.length; j++) {
+      var block = document.createElement('div');
+      block.className = 'md-block';
+      if (lnWindowed) {
+        block.lnPending = true;
+        block.style.height = estimatedBlockHeight(lnLines.counts[start + j]) + 'px';
+        content.insertBefore(block, anchor);
+      } else {
+        block.innerHTML = blocks[j];
+        content.insertBefore(block, anchor);
+        decorateBlock(block);
+      }
+    }
+    if (lnWindowed) materializeWindow();
+  },
+  scrollToLine: function(line) {
+    var y = yForLine(line);
+    if (y < 0) return;
+    lnIgnoreScrollUntil = Date.now() + 150;
+    window.scrollTo(0, y);
+    if (lnWindowed) materializeWindow();
+  },
+  revealLine: function(line) {
+    var y = yForLine(line);
+    if (y < 0) return;
+    var top = window.pageYOffset, height = window.innerHeight;
+    if (y < top || y > top + height - 40) {
+      lnIgnoreScrollUntil = Date.now() + 150;
+      window.scrollTo(0, Math.max(0, y - height / 3));
+    }
+  }
+};
+
+if (window.Prism) {
+  Prism.languages['diff'] = {
+    'diff-remove': { pattern: /^-.*/m, alias: 'deleted' },
+    'diff-add': { pattern: /^\\+.*/m, alias: 'inserted' },
+    'diff-orange': { pattern: /^!.*/m, alias: 'important' },
+    'diff-gray': { pattern: /^#.*/m, alias: 'comment' }
+  };
+}
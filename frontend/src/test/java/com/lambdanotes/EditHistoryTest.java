@@ -0,0 +1,106 @@
+package com.lambdanotes;
+
+import com.lambdanotes.utils.TextChange;
+import com.lambdanotes.utils.TextChangeCodec;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EditHistoryTest {
+
+    @Test
+    public void testCodecRoundTrip() throws Exception {
+        List<TextChange> changes = new ArrayList<>();
+        changes.add(new TextChange(0, "", "héllo 😀"));
+        changes.add(new TextChange(3, "\uD83D", "")); // Half a surrogate pair
+        changes.add(new TextChange(7, "old", "new\n"));
+
+        List<TextChange> decoded = TextChangeCodec.decode(TextChangeCodec.encode(changes));
+        assertEquals(changes.size(), decoded.size());
+        for (int i = 0; i < changes.size(); i++) {
+            assertEquals(changes.get(i).getOffset(), decoded.get(i).getOffset());
+            assertEquals(changes.get(i).getRemoved(), decoded.get(i).getRemoved());
+            assertEquals(changes.get(i).getInserted(), decoded.get(i).getInserted());
+        }
+    }
+
+    @Test
+    public void testUndoThroughPackedAndSpilledSteps() {
+        Random random = new Random(3);
+        EditHistory history = new EditHistory();
+        history.setLimits(100000, 64); // Small budget so most steps are packed and spilled
+        StringBuilder text = new StringBuilder();
+        List<String> versions = new ArrayList<>();
+
+        for (int step = 0; step < 3000; step++) {
+            versions.add(text.toString());
+            int start = random.nextInt(text.length() + 1);
+            int end = Math.min(text.length(), start + random.nextInt(40));
+            StringBuilder inserted = new StringBuilder();
+            for (int i = random.nextInt(60); i > 0; i--) inserted.append((char) ('a' + random.nextInt(26)));
+            TextChange change = new TextChange(start, text.substring(start, end), inserted.toString());
+            text.replace(start, end, change.getInserted());
+            history.record(change);
+            history.breakMerge();
+        }
+        assertEquals(3000, history.size());
+
+        for (int step = versions.size() - 1; step >= 0; step--) {
+            TextChange change = history.undo();
+            TextChange inverse = change.inverse();
+            text.replace(inverse.getOffset(), inverse.getRemovedEnd(), inverse.getInserted());
+            assertEquals(versions.get(step), text.toString());
+        }
+        assertNull(history.undo());
+        history.clear();
+    }
+
+    @Test
+    public void testStepLimitDropsOldest() {
+        EditHistory history = new EditHistory();
+        history.setLimits(1000, 64);
+        for (int i = 0; i < 5000; i++) {
+            history.record(new TextChange(0, "", "line " + i + "\n"));
+        }
+        assertTrue(history.size() <= 1000);
+        assertTrue(history.size() > 700);
+        assertEquals("line 4999\n", history.undo().getInserted());
+        history.clear();
+    }
+
+    @Test
+    public void testRedoStackStaysWithinBudget() {
+        EditHistory history = new EditHistory();
+        history.setLimits(100000, 64);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            TextChange change = new TextChange(text.length(), "", "step " + i + " of the history\n");
+            text.append(change.getInserted());
+            history.record(change);
+            history.breakMerge();
+        }
+        String full = text.toString();
+
+        for (TextChange change = history.undo(); change != null; change = history.undo()) {
+            text.setLength(change.getOffset());
+        }
+        assertEquals("", text.toString());
+        int kept = history.redoSize();
+        assertTrue(kept > 0 && kept < 2000);
+
+        // Redo replays the steps closest to the current text, in order
+        for (TextChange change = history.redo(); change != null; change = history.redo()) {
+            text.replace(change.getOffset(), change.getRemovedEnd(), change.getInserted());
+        }
+        assertTrue(full.startsWith(text.toString()));
+        assertEquals(kept, history.size());
+        assertEquals(0, history.redoSize());
+        history.clear();
+    }
+}
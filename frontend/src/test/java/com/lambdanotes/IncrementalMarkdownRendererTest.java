@@ -0,0 +1,53 @@
+package com.lambdanotes;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IncrementalMarkdownRendererTest {
+
+    @Test
+    public void testMatchesFullRender() {
+        MarkdownEngine engine = new MarkdownEngine(MarkdownEngine.Options.NOTES);
+        IncrementalMarkdownRenderer renderer = new IncrementalMarkdownRenderer(engine, new PreviewMetrics());
+        String[] notes = {
+                "# Intro\n\nText with [a link][ref].\n\n## Intro\n\n- item\n- item\n\n# Intro\n\n[ref]: https://example.com",
+                "# Intro\n\nSetup\n-----\n\n# Intro 1\n\n# Intro\n\n> # Setup",
+                "Inline `[^1]` code\n\n```\n[^1]: not a footnote\n```\n\n# Intro",
+                "A note[^1] with a footnote\n\n# Intro\n\n# Intro\n\n[^1]: The footnote",
+                // A lazy continuation line is no definition
+                "Links:\n[docs]: https://a.example\n\nSee [docs].",
+                // Definitions must not end up inside a fence or raw HTML that is still open
+                "Intro [docs]\n```java\nint x;\n\n[docs]: https://a.example",
+                "See [docs].\n\n<pre>\nraw\n\n[docs]: https://a.example",
+                // The first definition of a label wins, titles and angle brackets are kept
+                "[docs]: <https://a.example> \"First\"\n\nSee [Docs] and [docs][].\n\n> [docs]: https://b.example\n> [q]: https://q.example 'Q'\n\n```\ncode\n```\nUse [q].",
+        };
+        for (String markdown : notes) {
+            assertEquals(engine.toHtml(markdown), join(renderer.render(markdown)));
+            // The second render comes from the block cache and has to agree as well
+            assertEquals(engine.toHtml(markdown), join(renderer.render(markdown)));
+        }
+    }
+
+    @Test
+    public void testOnlyFootnoteDefinitionsRenderInOnePiece() {
+        IncrementalMarkdownRenderer renderer = new IncrementalMarkdownRenderer(
+                new MarkdownEngine(MarkdownEngine.Options.NOTES), new PreviewMetrics());
+        assertEquals(3, renderer.render("Inline `[^1]` code\n\n```\n[^1]: x\n```\n\nEnd").size());
+        List<RenderedBlock> blocks = renderer.render("Text[^1]\n\nMore\n\n[^1]: Note");
+        assertEquals(1, blocks.size());
+        assertTrue(blocks.get(0).getHtml().contains("footnote-ref"));
+    }
+
+    private static String join(List<RenderedBlock> blocks) {
+        StringBuilder html = new StringBuilder();
+        for (RenderedBlock block : blocks) {
+            html.append(block.getHtml());
+        }
+        return html.toString();
+    }
+}
@@ -0,0 +1,43 @@
+package com.lambdanotes;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MarkdownEngineTest {
+
+    @Test
+    public void testSharedEngineIsKeyedByOptions() {
+        MarkdownEngine.Options highlighted = MarkdownEngine.Options.NOTES.withCodeHighlighting(true);
+        MarkdownEngine notes = MarkdownEngine.shared();
+        MarkdownEngine engine = MarkdownEngine.shared(highlighted);
+
+        assertSame(engine, MarkdownEngine.shared(MarkdownEngine.Options.NOTES.withCodeHighlighting(true)));
+        assertSame(notes, MarkdownEngine.shared(MarkdownEngine.Options.NOTES));
+        assertNotSame(notes, engine);
+        assertTrue(engine.getOptions().isCodeHighlighting());
+    }
+
+    @Test
+    public void testOptionsKeyFollowsFeatures() {
+        String notesKey = MarkdownEngine.Options.NOTES.key();
+        assertEquals("flexmark-0.64.8;tables,strikethrough,tasklist,autolink,footnotes,anchorlink;softbreak=br", notesKey);
+        assertNotEquals(notesKey, MarkdownEngine.Options.COMMONMARK.key());
+    }
+
+    @Test
+    public void testCodeHighlightingOnlyForKnownLanguages() {
+        MarkdownEngine engine = new MarkdownEngine(MarkdownEngine.Options.NOTES.withCodeHighlighting(true));
+
+        String java = engine.toHtml("```java\nreturn 1;\n```");
+        assertTrue(java.contains("<pre class=\"language-java\"><code class=\"language-java\" data-highlighted>"));
+        assertTrue(java.contains("<span class=\"token keyword\">return</span>"));
+
+        String html = engine.toHtml("```html\n<b>x</b>\n```");
+        assertEquals(new MarkdownEngine(MarkdownEngine.Options.NOTES).toHtml("```html\n<b>x</b>\n```"), html);
+    }
+}
@@ -0,0 +1,147 @@
+package com.lambdanotes;
+
+import javafx.scene.control.TreeItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NoteTreeModelTest {
+
+    @Test
+    public void testUpdateKeepsItemsAndExpansion() {
+        NoteTreeModel tree = new NoteTreeModel();
+        assertEquals(4, tree.update(Arrays.asList("work/plan.md", "work/todo.md", "inbox.md")));
+        TreeItem<String> work = tree.find("work");
+        TreeItem<String> plan = tree.find("work/plan.md");
+        work.setExpanded(false);
+
+        assertEquals(2, tree.update(Arrays.asList("work/plan.md", "inbox.md", "work/ideas.md")));
+        assertSame(work, tree.find("work"));
+        assertSame(plan, tree.find("work/plan.md"));
+        assertFalse(work.isExpanded());
+        assertNull(tree.find("work/todo.md"));
+        assertEquals("[plan.md, ideas.md]", values(work));
+
+        assertEquals(0, tree.update(Arrays.asList("work/plan.md", "inbox.md", "work/ideas.md")));
+    }
+
+    @Test
+    public void testEmptyFoldersAreRemoved() {
+        NoteTreeModel tree = new NoteTreeModel();
+        tree.update(Arrays.asList("a/b/c.md", "d.md"));
+        tree.update(Arrays.asList("d.md"));
+        assertNull(tree.find("a"));
+        assertEquals("[d.md]", values(tree.getRoot()));
+    }
+
+    @Test
+    public void testMoveKeepsSubtree() {
+        NoteTreeModel tree = new NoteTreeModel();
+        tree.update(Arrays.asList("old/sub/note.md", "old/other.md", "target/x.md"));
+        TreeItem<String> sub = tree.reveal("old/sub/note.md").getParent();
+        tree.reveal("target/x.md");
+        sub.setExpanded(false);
+
+        tree.move("old/sub", "target/sub");
+        assertSame(sub, tree.find("target/sub"));
+        assertSame(sub.getParent(), tree.find("target"));
+        assertEquals("[other.md]", values(tree.find("old")));
+
+        // The refresh after the move finds nothing to change
+        assertEquals(0, tree.update(Arrays.asList("target/sub/note.md", "old/other.md", "target/x.md")));
+        assertFalse(sub.isExpanded());
+
+        tree.move("old/other.md", "new/other.md");
+        assertNull(tree.find("old"));
+        assertFalse(tree.find("new").isLeaf());
+        assertEquals("other.md", tree.find("new/other.md").getValue());
+    }
+
+    @Test
+    public void testAddAndRemoveSinglePaths() {
+        NoteTreeModel tree = new NoteTreeModel();
+        tree.update(Arrays.asList("work/plan.md", "inbox.md"));
+        TreeItem<String> work = tree.reveal("work/plan.md").getParent();
+
+        assertTrue(tree.add("work/new.md"));
+        assertFalse(tree.add("work/new.md"));
+        assertTrue(tree.add("later/sub/x.md"));
+        assertEquals("[plan.md, new.md]", values(work));
+        assertEquals("[work, inbox.md, later]", values(tree.getRoot()));
+
+        assertTrue(tree.remove("later/sub"));
+        assertNull(tree.find("later"));
+        assertTrue(tree.remove("work/plan.md"));
+        assertFalse(tree.remove("work/plan.md"));
+        assertSame(work, tree.find("work"));
+        assertEquals("[new.md]", values(work));
+
+        // A full update afterwards agrees with the single changes
+        assertEquals(0, tree.update(Arrays.asList("inbox.md", "work/new.md")));
+    }
+
+    @Test
+    public void testItemsAreCreatedOnExpand() {
+        List<String> notes = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            notes.add("folder" + (i % 10) + "/sub/note" + i + ".md");
+        }
+        NoteTreeModel tree = new NoteTreeModel();
+        tree.update(notes);
+        assertEquals(10, tree.getRoot().getChildren().size());
+        TreeItem<String> folder = tree.getRoot().getChildren().get(3);
+        assertFalse(folder.isLeaf());
+        assertTrue(folder.getChildren().isEmpty());
+
+        folder.setExpanded(true);
+        assertEquals("[sub]", values(folder));
+        assertTrue(folder.getChildren().get(0).getChildren().isEmpty());
+
+        // Revealing a note opens just the folders above it
+        TreeItem<String> note = tree.reveal("folder5/sub/note15.md");
+        assertEquals("note15.md", note.getValue());
+        assertTrue(note.getParent().isExpanded());
+        assertTrue(note.getParent().getParent().isExpanded());
+        assertFalse(tree.getRoot().getChildren().get(4).isExpanded());
+        assertTrue(tree.getRoot().getChildren().get(4).getChildren().isEmpty());
+
+        // Later notes of an expanded folder get items right away
+        notes.add("folder5/sub/late.md");
+        tree.update(notes);
+        assertEquals("late.md", note.getParent().getChildren().get(100).getValue());
+    }
+
+    @Test
+    public void testManyNotes() {
+        List<String> notes = new ArrayList<>();
+        for (int i = 0; i < 40000; i++) {
+            notes.add("wide/note" + i + ".md");
+        }
+        NoteTreeModel tree = new NoteTreeModel();
+        assertEquals(40001, tree.update(notes));
+        notes.remove(20000);
+        notes.add("wide/new.md");
+        assertEquals(2, tree.update(notes));
+        TreeItem<String> wide = tree.find("wide");
+        assertTrue(wide.getChildren().isEmpty());
+        wide.setExpanded(true);
+        assertEquals(40000, wide.getChildren().size());
+        assertEquals("new.md", wide.getChildren().get(39999).getValue());
+    }
+
+    private static String values(TreeItem<String> item) {
+        List<String> values = new ArrayList<>();
+        for (TreeItem<String> child : item.getChildren()) {
+            values.add(child.getValue());
+        }
+        return values.toString();
+    }
+}
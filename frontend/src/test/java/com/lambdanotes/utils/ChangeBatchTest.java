@@ -0,0 +1,36 @@
+package com.lambdanotes.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ChangeBatchTest {
+
+    @Test
+    public void testTypingBurstCoversTypedRange() {
+        ChangeBatch batch = ChangeBatch.of(Arrays.asList(
+                new TextChange(10, "", "a"),
+                new TextChange(11, "", "b"),
+                new TextChange(12, "", "\n")));
+
+        assertEquals(10, batch.getStart());
+        assertEquals(13, batch.getEnd());
+        assertEquals(3, batch.getCharacterDelta());
+        assertEquals(1, batch.getLineDelta());
+        assertEquals(3, batch.size());
+    }
+
+    @Test
+    public void testRangeIsMappedThroughLaterChanges() {
+        ChangeBatch batch = ChangeBatch.of(Arrays.asList(
+                new TextChange(20, "", "xyz"),     // touched [20, 23)
+                new TextChange(5, "abcd", ""),     // removal before it, touched range becomes [5, 19)
+                new TextChange(30, "", "!")));     // after it, range grows to [5, 31)
+
+        assertEquals(5, batch.getStart());
+        assertEquals(31, batch.getEnd());
+        assertEquals(0, batch.getCharacterDelta());
+    }
+}
@@ -0,0 +1,56 @@
+package com.lambdanotes.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CodeHighlighterTest {
+
+    @Test
+    public void testHighlightsJavaTokens() {
+        String html = new CodeHighlighter().highlight("java", "int x = foo(\"a<b\"); // done\n");
+
+        assertEquals("<span class=\"token keyword\">int</span> x <span class=\"token operator\">=</span> "
+                + "<span class=\"token function\">foo</span><span class=\"token punctuation\">(</span>"
+                + "<span class=\"token string\">\"a&lt;b\"</span><span class=\"token punctuation\">)</span>"
+                + "<span class=\"token punctuation\">;</span> <span class=\"token comment\">// done</span>\n", html);
+    }
+
+    @Test
+    public void testAbapCommentsAndCaseInsensitiveKeywords() {
+        String html = new CodeHighlighter().highlight("ABAP", "* header\nDATA lv TYPE i. \" note\n");
+
+        assertTrue(html.startsWith("<span class=\"token comment\">* header</span>"));
+        assertTrue(html.contains("<span class=\"token keyword\">DATA</span>"));
+        assertTrue(html.contains("<span class=\"token keyword\">TYPE</span>"));
+        assertTrue(html.contains("<span class=\"token comment\">\" note</span>"));
+    }
+
+    @Test
+    public void testCachesPerLanguageAndCode() {
+        CodeHighlighter highlighter = new CodeHighlighter();
+        String first = highlighter.highlight("sql", "SELECT * FROM notes");
+
+        assertSame(first, highlighter.highlight("sql", "SELECT * FROM notes"));
+        assertNull(highlighter.highlight("cobol", "DISPLAY X."));
+    }
+
+    @Test
+    public void testCacheIsBoundedBySize() {
+        CodeHighlighter highlighter = new CodeHighlighter();
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 2000; i++) line.append("int x").append(i).append(" = ").append(i).append(";\n");
+        String first = highlighter.highlight("java", "// 0\n" + line);
+        for (int i = 1; i < 100; i++) {
+            highlighter.highlight("java", "// " + i + "\n" + line);
+        }
+
+        assertTrue(highlighter.cachedChars() <= 4L * 1024 * 1024);
+        assertNotSame(first, highlighter.highlight("java", "// 0\n" + line)); // Evicted, tokenized again
+        assertEquals(first, highlighter.highlight("java", "// 0\n" + line));
+    }
+}
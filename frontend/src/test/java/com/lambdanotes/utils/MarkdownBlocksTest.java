@@ -0,0 +1,45 @@
+package com.lambdanotes.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MarkdownBlocksTest {
+
+    @Test
+    public void testSplitsParagraphsAtBlankLines() {
+        List<MarkdownBlocks.Block> blocks = MarkdownBlocks.split("# Title\n\nFirst paragraph\nstill first\n\n\nSecond");
+
+        assertEquals(3, blocks.size());
+        assertEquals("# Title", blocks.get(0).getText());
+        assertEquals("First paragraph\nstill first", blocks.get(1).getText());
+        assertEquals(2, blocks.get(1).getStartLine());
+        assertEquals(2, blocks.get(1).getLineCount());
+        assertEquals("Second", blocks.get(2).getText());
+        assertEquals(6, blocks.get(2).getStartLine());
+    }
+
+    @Test
+    public void testKeepsFencedCodeWithBlankLinesTogether() {
+        String markdown = "```java\nint a;\n\nint b;\n```\n\nAfter";
+        List<MarkdownBlocks.Block> blocks = MarkdownBlocks.split(markdown);
+
+        assertEquals(2, blocks.size());
+        assertEquals("```java\nint a;\n\nint b;\n```", blocks.get(0).getText());
+        assertTrue(blocks.get(0).isCode());
+        assertEquals("After", blocks.get(1).getText());
+    }
+
+    @Test
+    public void testKeepsLooseListsAndContinuationsTogether() {
+        String markdown = "- one\n\n- two\n\n  continued\n\nParagraph";
+        List<MarkdownBlocks.Block> blocks = MarkdownBlocks.split(markdown);
+
+        assertEquals(2, blocks.size());
+        assertEquals("- one\n\n- two\n\n  continued", blocks.get(0).getText());
+        assertEquals("Paragraph", blocks.get(1).getText());
+    }
+}
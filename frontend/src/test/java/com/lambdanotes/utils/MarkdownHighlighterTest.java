@@ -0,0 +1,92 @@
+package com.lambdanotes.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MarkdownHighlighterTest {
+
+    @Test
+    public void testTokenizeLine() {
+        assertEquals("[md-heading[0, 7)]", MarkdownLexer.tokenize("## Plan", MarkdownLexer.NORMAL).toString());
+        assertEquals("[md-list-marker[0, 1), md-task-done[2, 5), md-strong[6, 14), md-link[15, 24)]",
+                MarkdownLexer.tokenize("- [x] **done** [a](b.md)", MarkdownLexer.NORMAL).toString());
+        assertEquals("[md-emphasis[4, 10), md-code[11, 18)]",
+                MarkdownLexer.tokenize("say *this* `x * y` snake_case_name", MarkdownLexer.NORMAL).toString());
+        assertEquals("[]", MarkdownLexer.tokenize("#hashtag and 2 * 3 * 4", MarkdownLexer.NORMAL).toString());
+    }
+
+    @Test
+    public void testFenceStates() {
+        int open = MarkdownLexer.nextState("```java", MarkdownLexer.NORMAL);
+        assertTrue(open != MarkdownLexer.NORMAL);
+        assertEquals(open, MarkdownLexer.nextState("~~~", open));
+        assertEquals(open, MarkdownLexer.nextState("``", open));
+        assertEquals(MarkdownLexer.NORMAL, MarkdownLexer.nextState("````  ", open));
+        assertEquals("[md-code-block[0, 8)]", MarkdownLexer.tokenize("# not h1", open).toString());
+        assertEquals(MarkdownLexer.NORMAL, MarkdownLexer.nextState("``` has ` inside", MarkdownLexer.NORMAL));
+    }
+
+    @Test
+    public void testEditStopsAtResync() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            text.append(i % 50 == 0 ? "```\n" : "line *" + i + "*\n");
+        }
+        TextRope rope = new TextRope(text.toString());
+        MarkdownHighlighter highlighter = new MarkdownHighlighter();
+        highlighter.reset(rope);
+
+        int offset = rope.lineStart(10000) + 3;
+        TextChange typed = new TextChange(offset, "", "x");
+        rope.replace(offset, offset, "x");
+        assertTrue(highlighter.apply(typed, rope) <= 2);
+
+        // A closed code block only changes its own lines
+        int start = rope.lineStart(10060);
+        TextChange block = new TextChange(start, "", "```\n~~~\n```\n");
+        rope.replace(start, start, "```\n~~~\n```\n");
+        assertTrue(highlighter.apply(block, rope) <= 5);
+        assertMatchesReset(highlighter, rope);
+
+        // An unclosed fence flips every fence after it
+        TextChange fence = new TextChange(start, "", "```\n");
+        rope.replace(start, start, "```\n");
+        assertTrue(highlighter.apply(fence, rope) > 9000);
+        assertMatchesReset(highlighter, rope);
+    }
+
+    @Test
+    public void testIncrementalMatchesReset() {
+        Random random = new Random(17);
+        String[] pieces = {"```", "~~~~", "\n", "# ", "text", "*", "`", " ", "- [ ] "};
+        TextRope rope = new TextRope();
+        MarkdownHighlighter highlighter = new MarkdownHighlighter();
+        highlighter.reset(rope);
+
+        for (int step = 0; step < 2000; step++) {
+            int start = random.nextInt(rope.length() + 1);
+            int end = Math.min(rope.length(), start + (random.nextInt(4) == 0 ? random.nextInt(30) : 0));
+            String inserted = random.nextInt(5) == 0 ? "" : pieces[random.nextInt(pieces.length)];
+            TextChange change = new TextChange(start, rope.substring(start, end), inserted);
+            rope.replace(start, end, inserted);
+            highlighter.apply(change, rope);
+            // Read some spans so the cache is exercised too
+            highlighter.spans(random.nextInt(rope.lineCount()), rope);
+        }
+        assertMatchesReset(highlighter, rope);
+    }
+
+    private static void assertMatchesReset(MarkdownHighlighter highlighter, TextRope rope) {
+        MarkdownHighlighter fresh = new MarkdownHighlighter();
+        fresh.reset(rope);
+        assertEquals(fresh.lineCount(), highlighter.lineCount());
+        for (int line = 0; line < rope.lineCount(); line++) {
+            assertEquals(fresh.stateAt(line), highlighter.stateAt(line));
+            assertEquals(fresh.spans(line, rope).toString(), highlighter.spans(line, rope).toString());
+        }
+    }
+}
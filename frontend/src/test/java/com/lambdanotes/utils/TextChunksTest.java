@@ -0,0 +1,52 @@
+package com.lambdanotes.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TextChunksTest {
+
+    @Test
+    public void testChunksEndAtLineBreaks() {
+        String text = "first line\nsecond line\nthird line\nfourth line\n";
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        TextChunks chunks = new TextChunks(bytes.length, 16, 8);
+
+        assertEquals(3, chunks.count());
+        assertEquals("first line\nsecond line\n", decode(chunks, bytes, 0));
+        assertEquals("third line\n", decode(chunks, bytes, 1));
+        assertEquals("fourth line\n", decode(chunks, bytes, 2));
+    }
+
+    @Test
+    public void testChunksJoinToWholeText() {
+        Random random = new Random(5);
+        String[] pieces = {"word ", "ğüşıöç ", "😀", "\n", "\n\n", "x"};
+        for (int round = 0; round < 50; round++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = random.nextInt(400); i > 0; i--) {
+                text.append(pieces[random.nextInt(pieces.length)]);
+            }
+            byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+            TextChunks chunks = new TextChunks(bytes.length, 64, 16);
+
+            StringBuilder joined = new StringBuilder();
+            for (int i = 0; i < chunks.count(); i++) {
+                String chunk = decode(chunks, bytes, i);
+                assertTrue(chunk.indexOf('�') < 0, "split a character");
+                joined.append(chunk);
+            }
+            assertEquals(text.toString(), joined.toString());
+        }
+    }
+
+    private static String decode(TextChunks chunks, byte[] bytes, int index) {
+        byte[] data = Arrays.copyOfRange(bytes, (int) chunks.readStart(index), (int) chunks.readEnd(index));
+        return chunks.decode(index, data);
+    }
+}
@@ -0,0 +1,54 @@
+package com.lambdanotes.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TextPatchTest {
+
+    @Test
+    public void testTypingAndBackspaceBecomeOneStep() {
+        List<TextPatch> patches = TextPatch.compact(Arrays.asList(
+                new TextChange(4, "", "h"),
+                new TextChange(5, "", "e"),
+                new TextChange(6, "", "y"),
+                new TextChange(6, "y", ""),     // backspace
+                new TextChange(3, "xh", "")));  // delete across the start of the typed text
+
+        assertEquals(1, patches.size());
+        assertEquals(3, patches.get(0).getOffset());
+        assertEquals(1, patches.get(0).getDelete());
+        assertEquals("e", patches.get(0).getInsert());
+        assertEquals("abce", TextPatch.apply("abcx", patches));
+    }
+
+    @Test
+    public void testCompactedPatchesProduceSameText() {
+        Random random = new Random(11);
+        StringBuilder text = new StringBuilder("The quick brown fox\njumps over the lazy dog\n");
+        String base = text.toString();
+        List<TextChange> changes = new ArrayList<>();
+
+        for (int step = 0; step < 500; step++) {
+            int offset = random.nextInt(text.length() + 1);
+            if (random.nextInt(4) == 0) offset = changes.isEmpty() ? offset : Math.min(text.length(), changes.get(changes.size() - 1).getInsertedEnd());
+            int end = Math.min(text.length(), offset + (random.nextBoolean() ? 0 : random.nextInt(4)));
+            String inserted = random.nextBoolean() ? "" : String.valueOf((char) ('a' + random.nextInt(26)));
+            changes.add(new TextChange(offset, text.substring(offset, end), inserted));
+            text.replace(offset, end, inserted);
+        }
+
+        List<TextPatch> patches = TextPatch.compact(changes);
+        assertEquals(text.toString(), TextPatch.apply(base, patches));
+    }
+
+    @Test
+    public void testContentHashMatchesSha256() {
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", ContentHash.of("abc"));
+    }
+}
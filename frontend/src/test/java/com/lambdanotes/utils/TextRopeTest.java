@@ -0,0 +1,68 @@
+package com.lambdanotes.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TextRopeTest {
+
+    @Test
+    public void testLineLookups() {
+        TextRope rope = new TextRope("# Title\n\nfirst\nsecond");
+
+        assertEquals(4, rope.lineCount());
+        assertEquals(9, rope.lineStart(2));
+        assertEquals(14, rope.lineEnd(2));
+        assertEquals(2, rope.lineOfOffset(9));
+        assertEquals(1, rope.lineOfOffset(8));
+        assertEquals(3, rope.lineOfOffset(rope.length()));
+        assertArrayEquals(new int[] {7, 0, 5, 6}, rope.lineLengths());
+    }
+
+    @Test
+    public void testRandomEditsMatchStringBuilder() {
+        Random random = new Random(42);
+        TextRope rope = new TextRope();
+        StringBuilder expected = new StringBuilder();
+
+        for (int step = 0; step < 2000; step++) {
+            int offset = random.nextInt(expected.length() + 1);
+            if (expected.length() > 0 && random.nextInt(3) == 0) {
+                int end = Math.min(expected.length(), offset + random.nextInt(1500));
+                rope.delete(offset, end);
+                expected.delete(offset, end);
+            } else {
+                String value = randomText(random, random.nextInt(8) == 0 ? 3000 : 12);
+                rope.insert(offset, value);
+                expected.insert(offset, value);
+            }
+
+            if (step % 100 == 0) {
+                assertEquals(expected.toString(), rope.toString());
+            }
+        }
+
+        String text = expected.toString();
+        assertEquals(text, rope.toString());
+        assertEquals(text.split("\n", -1).length, rope.lineCount());
+        int line = 0;
+        for (int i = 0; i <= text.length(); i++) {
+            assertEquals(line, rope.lineOfOffset(i));
+            if (i < text.length() && text.charAt(i) == '\n') {
+                line++;
+                assertEquals(i + 1, rope.lineStart(line));
+            }
+        }
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(random.nextInt(10) == 0 ? '\n' : (char) ('a' + random.nextInt(26)));
+        }
+        return sb.toString();
+    }
+}
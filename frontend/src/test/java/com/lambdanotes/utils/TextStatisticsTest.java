@@ -0,0 +1,54 @@
+package com.lambdanotes.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TextStatisticsTest {
+
+    @Test
+    public void testCountsAfterReset() {
+        TextStatistics stats = new TextStatistics();
+        stats.reset("  # Title\n\nSome  words here.\n");
+
+        assertEquals(5, stats.getWords());
+        assertEquals(29, stats.getCharacters());
+        assertEquals(4, stats.getLines());
+        assertEquals(1, stats.getReadingMinutes());
+        assertEquals(2, TextStatistics.countWords("Some  words here.", 2, 10));
+    }
+
+    @Test
+    public void testDeltasMatchFullCount() {
+        Random random = new Random(7);
+        TextRope rope = new TextRope();
+        TextStatistics stats = new TextStatistics();
+        stats.reset(rope);
+
+        for (int step = 0; step < 3000; step++) {
+            int start = random.nextInt(rope.length() + 1);
+            int end = Math.min(rope.length(), start + (random.nextInt(3) == 0 ? random.nextInt(20) : 0));
+            String inserted = randomText(random, random.nextInt(6));
+            TextChange change = new TextChange(start, rope.substring(start, end), inserted);
+            rope.replace(start, end, inserted);
+            stats.apply(change, rope);
+
+            String text = rope.toString();
+            String trimmed = text.trim();
+            assertEquals(trimmed.isEmpty() ? 0 : trimmed.split("\\s+").length, stats.getWords());
+            assertEquals(text.length(), stats.getCharacters());
+            assertEquals(rope.lineCount(), stats.getLines());
+        }
+    }
+
+    private static String randomText(Random random, int length) {
+        String alphabet = "ab \n\t.";
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
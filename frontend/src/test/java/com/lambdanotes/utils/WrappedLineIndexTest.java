@@ -0,0 +1,44 @@
+package com.lambdanotes.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class WrappedLineIndexTest {
+
+    @Test
+    public void testRowsAndLineLookup() {
+        WrappedLineIndex index = new WrappedLineIndex();
+        int[] rows = {1, 3, 1, 2};
+        index.reset(rows.length, line -> rows[line]);
+
+        assertEquals(7, index.totalRows());
+        assertEquals(4, index.rowsBefore(2));
+        assertEquals(1, index.lineAtRow(1));
+        assertEquals(1, index.lineAtRow(3));
+        assertEquals(2, index.lineAtRow(4));
+        assertEquals(3, index.lineAtRow(100));
+
+        index.setRows(0, 2);
+        assertEquals(8, index.totalRows());
+        assertEquals(0, index.lineAtRow(1));
+    }
+
+    @Test
+    public void testReplaceLinesShiftsFollowingLines() {
+        WrappedLineIndex index = new WrappedLineIndex();
+        index.reset(3, line -> line + 1); // 1, 2, 3
+
+        // Line 1 split into three lines of one row each
+        index.replaceLines(1, 1, 3, line -> 1);
+        assertEquals(5, index.size());
+        assertEquals(3, index.getRows(4));
+        assertEquals(7, index.totalRows());
+
+        // Joined back into one line
+        index.replaceLines(1, 3, 1, line -> 2);
+        assertEquals(3, index.size());
+        assertEquals(6, index.totalRows());
+        assertEquals(2, index.lineAtRow(3));
+    }
+}